@@ -0,0 +1,64 @@
+package com.laowang.concurrent.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用 {@link AdaptiveSpinLock} 的命名锁，用法与 {@link ReentrantLockUtils} 相同
+ * <p>
+ * 只适合临界区很短（微秒级）的锁名；与 ReentrantLockUtils 的同名锁互不相关。
+ */
+public class AdaptiveLockUtils {
+
+    private static final Map<String, AdaptiveSpinLock> LOCKS = new ConcurrentHashMap<>();
+
+    static AdaptiveSpinLock getLock(String key) {
+        return LOCKS.computeIfAbsent(key, k -> new AdaptiveSpinLock());
+    }
+
+    public static LockStat tryLock(String lockName, long timeout, TimeUnit timeUnit) {
+        return LockUtils.tryLock(getLock(lockName), timeout, timeUnit);
+    }
+
+    public static LockStat tryLock(String lockName) {
+        return LockUtils.tryLock(getLock(lockName));
+    }
+
+    public static LockStat lock(String lockName) {
+        return LockUtils.lock(getLock(lockName));
+    }
+
+    static int lockCount() {
+        return LOCKS.size();
+    }
+
+    /**
+     * 当前被持有的命名锁数量，遍历整个注册表，只用于指标采集
+     */
+    static int heldCount() {
+        int held = 0;
+        for (AdaptiveSpinLock lock : LOCKS.values()) {
+            if (lock.isLocked()) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    static long spinAcquired() {
+        long total = 0;
+        for (AdaptiveSpinLock lock : LOCKS.values()) {
+            total += lock.getSpinAcquired();
+        }
+        return total;
+    }
+
+    static long parked() {
+        long total = 0;
+        for (AdaptiveSpinLock lock : LOCKS.values()) {
+            total += lock.getParked();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,280 @@
+package com.laowang.concurrent.util;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 先自旋后挂起的可重入锁，适用于持有时间通常在微秒以内的临界区
+ * <p>
+ * 锁被占用时先用 {@link Thread#onSpinWait()} 自旋等待，自旋时长取最近持有时间的指数滑动平均的两倍，
+ * 上限 {@link #MAX_SPIN_NANOS}；平均持有时间超过上限、已有线程挂起排队或单核机器上不自旋，直接按 ReentrantLock 挂起。
+ * 自旋中发现有线程排队也立即停止自旋转为排队，自旋线程不会在持续竞争下反复抢在已挂起的线程之前；
+ * 入口处仍会尝试一次非公平的 tryLock，与默认的 ReentrantLock 相同，不保证先来先得。
+ * 持有时间只在最外层加锁/解锁时各取一次 System.nanoTime()；在 {@link #newCondition()} 的条件上等待期间锁已释放，
+ * 等待前的持有时间计入平均值，重新获得锁后重新计时。
+ * <p>
+ * 仍是 {@link ReentrantLock}，可直接交给 {@link LockUtils} 并在 {@link LockStat} 中使用。
+ */
+public class AdaptiveSpinLock extends ReentrantLock {
+
+    static final long MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long INITIAL_HOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 持有时间的指数滑动平均（权重1/8），只由持锁线程在解锁时更新
+     */
+    private volatile long avgHoldNanos = INITIAL_HOLD_NANOS;
+    private long acquiredAt;
+    private final LongAdder spinAcquired = new LongAdder();
+    private final LongAdder parked = new LongAdder();
+
+    @Override
+    public void lock() {
+        if (!spinUninterruptibly()) {
+            parked.increment();
+            super.lock();
+        }
+        acquired();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (!spin(spinBudgetNanos(), true)) {
+            parked.increment();
+            super.lockInterruptibly();
+        }
+        acquired();
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (super.tryLock()) {
+            acquired();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 自旋时长不超过 timeout，timeout 不大于0时只尝试一次不自旋；自旋期间响应中断
+     */
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        long timeoutNanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        if (spin(Math.min(spinBudgetNanos(), Math.max(0, timeoutNanos)), true)
+                || super.tryLock(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS)) {
+            acquired();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        if (getHoldCount() == 1) {
+            recordHold();
+        }
+        super.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return new HoldTimedCondition(super.newCondition());
+    }
+
+    @Override
+    public boolean hasWaiters(Condition condition) {
+        return super.hasWaiters(unwrap(condition));
+    }
+
+    @Override
+    public int getWaitQueueLength(Condition condition) {
+        return super.getWaitQueueLength(unwrap(condition));
+    }
+
+    @Override
+    protected Collection<Thread> getWaitingThreads(Condition condition) {
+        return super.getWaitingThreads(unwrap(condition));
+    }
+
+    /**
+     * 当前自旋时长预算，0 表示不自旋
+     */
+    public long spinBudgetNanos() {
+        long avg = avgHoldNanos;
+        if (CPUS < 2 || avg > MAX_SPIN_NANOS) {
+            return 0;
+        }
+        return Math.min(MAX_SPIN_NANOS, avg << 1);
+    }
+
+    public long getAverageHoldNanos() {
+        return avgHoldNanos;
+    }
+
+    /**
+     * 自旋阶段获得锁的次数
+     */
+    public long getSpinAcquired() {
+        return spinAcquired.sum();
+    }
+
+    /**
+     * 自旋未果转为挂起等待的次数
+     */
+    public long getParked() {
+        return parked.sum();
+    }
+
+    private boolean spinUninterruptibly() {
+        try {
+            return spin(spinBudgetNanos(), false);
+        } catch (InterruptedException e) {
+            // 不响应中断时不会抛出
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param budget        自旋时长上限，0 表示只尝试一次
+     * @param interruptible 为true时进入前和自旋期间检查中断标记
+     */
+    private boolean spin(long budget, boolean interruptible) throws InterruptedException {
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (super.tryLock()) {
+            return true;
+        }
+        if (budget == 0 || hasQueuedThreads()) {
+            return false;
+        }
+        long deadline = System.nanoTime() + budget;
+        do {
+            Thread.onSpinWait();
+            if (interruptible && Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (hasQueuedThreads()) {
+                // 锁释放时由排队的线程接手，不与它争抢
+                return false;
+            }
+            if (!isLocked() && super.tryLock()) {
+                spinAcquired.increment();
+                return true;
+            }
+        } while (System.nanoTime() - deadline < 0);
+        return false;
+    }
+
+    private void acquired() {
+        if (getHoldCount() == 1) {
+            acquiredAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * 只由持锁线程在释放锁前调用
+     */
+    private void recordHold() {
+        long held = System.nanoTime() - acquiredAt;
+        long avg = avgHoldNanos;
+        avgHoldNanos = avg + ((held - avg) >> 3);
+    }
+
+    private static Condition unwrap(Condition condition) {
+        return condition instanceof HoldTimedCondition ? ((HoldTimedCondition) condition).condition : condition;
+    }
+
+    /**
+     * 等待会完全释放锁：等待前记录一次持有时间，重新获得锁后重新计时，等待时长不计入平均持有时间
+     */
+    private final class HoldTimedCondition implements Condition {
+        private final Condition condition;
+
+        HoldTimedCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            beforeWait();
+            try {
+                condition.await();
+            } finally {
+                afterWait();
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            beforeWait();
+            try {
+                condition.awaitUninterruptibly();
+            } finally {
+                afterWait();
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            beforeWait();
+            try {
+                return condition.awaitNanos(nanosTimeout);
+            } finally {
+                afterWait();
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            beforeWait();
+            try {
+                return condition.await(time, unit);
+            } finally {
+                afterWait();
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            beforeWait();
+            try {
+                return condition.awaitUntil(deadline);
+            } finally {
+                afterWait();
+            }
+        }
+
+        @Override
+        public void signal() {
+            condition.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            condition.signalAll();
+        }
+
+        /**
+         * 未持有锁时不记录，交给 await 抛出 IllegalMonitorStateException
+         */
+        private void beforeWait() {
+            if (isHeldByCurrentThread()) {
+                recordHold();
+            }
+        }
+
+        private void afterWait() {
+            if (isHeldByCurrentThread()) {
+                acquiredAt = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.laowang.concurrent.util;
+
+/**
+ * 可感知取消的任务，见 {@link TaskGroup#waitForOrCancel(long, java.util.concurrent.TimeUnit)}
+ */
+@FunctionalInterface
+public interface CancellableTask {
+
+    void run(CancellationToken token);
+}
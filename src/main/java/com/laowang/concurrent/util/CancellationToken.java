@@ -0,0 +1,77 @@
+package com.laowang.concurrent.util;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 协作式取消标记，由 {@link TaskGroup} 在等待超时后置位
+ * <p>
+ * 阻塞在可中断操作上的任务会同时收到中断；不响应中断的长循环应定期检查 {@link #isCancelled()}；
+ * 不响应中断的阻塞调用（如 JDBC 查询）用 {@link #onCancel} 登记取消动作，如 Statement.cancel()。
+ */
+public final class CancellationToken {
+
+    private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 已取消时抛出 CancellationException，便于在循环中直接退出
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("任务已取消");
+        }
+    }
+
+    /**
+     * 登记取消时执行的动作，已取消时立即执行；动作在取消方线程上执行，每个动作最多执行一次。
+     * 受保护的操作结束后应关闭返回的登记，通常放在 try-with-resources 中
+     */
+    public Registration onCancel(Runnable action) {
+        Registration registration = new Registration(action);
+        registrations.add(registration);
+        if (cancelled) {
+            registration.fire();
+        }
+        return registration;
+    }
+
+    void cancel() {
+        cancelled = true;
+        for (Registration registration : registrations) {
+            registration.fire();
+        }
+    }
+
+    public final class Registration implements AutoCloseable {
+
+        private final Runnable action;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Registration(Runnable action) {
+            this.action = action;
+        }
+
+        private void fire() {
+            if (done.compareAndSet(false, true)) {
+                registrations.remove(this);
+                action.run();
+            }
+        }
+
+        /**
+         * 撤销登记，之后取消不再执行该动作
+         */
+        @Override
+        public void close() {
+            done.set(true);
+            registrations.remove(this);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.laowang.concurrent.util;
+
+import com.laowang.concurrent.util.redis.RLockProfiler;
+import com.laowang.concurrent.util.redis.RedissonLockUtils;
+
+/**
+ * 导出本库锁、Latch、Semaphore 工具的运行指标
+ * <p>
+ * 计数类指标为进程内累计值；命名锁的持有/等待数需要遍历锁注册表，只在快照刷新时计算。
+ */
+public class ConcurrencyMetricsCollector implements MetricsCollector {
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.counter("concurrent_lock_acquired_total", "LockUtils成功获取锁次数", null, LockUtils.ACQUIRED.sum())
+                .counter("concurrent_lock_try_failed_total", "LockUtils tryLock失败次数", null, LockUtils.TRY_FAILED.sum())
+                .counter("concurrent_lock_interrupted_total", "LockUtils等待锁时被中断次数", null, LockUtils.INTERRUPTED.sum());
+
+        writer.gauge("concurrent_named_locks", "命名锁注册表大小", "type=\"reentrant\"", ReentrantLockUtils.lockCount())
+                .gauge("concurrent_named_locks", null, "type=\"read_write\"", ReadWriteLockUtils.lockCount())
+                .gauge("concurrent_named_locks_held", "当前被持有的命名锁数量", "type=\"reentrant\"", ReentrantLockUtils.heldCount())
+                .gauge("concurrent_named_locks_held", null, "type=\"write\"", ReadWriteLockUtils.writeHeldCount())
+                .gauge("concurrent_named_read_holds", "命名读写锁上的读锁持有次数（含重入）", null, ReadWriteLockUtils.readHolds())
+                .gauge("concurrent_named_lock_queued_threads", "等待命名锁的线程数（估计值）", "type=\"reentrant\"", ReentrantLockUtils.queuedThreads())
+                .gauge("concurrent_named_lock_queued_threads", null, "type=\"read_write\"", ReadWriteLockUtils.queuedThreads());
+
+        writer.gauge("concurrent_named_locks", null, "type=\"adaptive\"", AdaptiveLockUtils.lockCount())
+                .gauge("concurrent_named_locks_held", null, "type=\"adaptive\"", AdaptiveLockUtils.heldCount())
+                .counter("concurrent_adaptive_lock_spin_acquired_total", "自适应锁在自旋阶段获得锁的次数", null, AdaptiveLockUtils.spinAcquired())
+                .counter("concurrent_adaptive_lock_parked_total", "自适应锁自旋未果转为挂起的次数", null, AdaptiveLockUtils.parked());
+
+        writer.counter("concurrent_latch_waits_total", "LatchUtils.waitFor调用次数", null, LatchUtils.WAITS.sum())
+                .counter("concurrent_latch_timeouts_total", "LatchUtils.waitFor超时次数", null, LatchUtils.TIMEOUTS.sum())
+                .counter("concurrent_latch_tasks_total", "LatchUtils派发的任务数", null, LatchUtils.TASKS.sum())
+                .counter("concurrent_latch_cancelled_total", "等待超时后被取消的任务数", null, LatchUtils.CANCELLED.sum());
+
+        writer.counter("concurrent_semaphore_tasks_total", "SemaphoreUtils派发的任务数", null, SemaphoreUtils.TASKS.sum())
+                .gauge("concurrent_semaphore_running", "SemaphoreUtils中已获得许可正在执行的任务数", null, SemaphoreUtils.RUNNING.sum());
+
+        RLockProfiler.stats().forEach((prefix, stats) -> {
+            String labels = "prefix=\"" + PrometheusWriter.escapeLabelValue(prefix) + "\"";
+            writer.counter("redis_lock_acquired_total", "分布式锁获取成功次数", labels, stats.getAcquired().sum())
+                    .counter("redis_lock_failed_total", "分布式锁获取失败次数", labels, stats.getFailed().sum())
+                    .counter("redis_lock_slow_total", "持有时间超过慢锁阈值的次数", labels, stats.getSlow().sum())
+                    .counter("redis_lock_lease_overrun_total", "持有时间达到租期告警比例或已过期的次数", labels, stats.getLeaseOverruns().sum())
+                    .gauge("redis_lock_wait_p99_micros", "加锁等待时间p99（微秒，近似）", labels, stats.getWait().percentileMicros(0.99))
+                    .gauge("redis_lock_hold_p50_micros", "持有时间p50（微秒，近似）", labels, stats.getHold().percentileMicros(0.5))
+                    .gauge("redis_lock_hold_p99_micros", "持有时间p99（微秒，近似）", labels, stats.getHold().percentileMicros(0.99))
+                    .gauge("redis_lock_headroom_p01_micros", "租期余量p1（微秒，近似）", labels, stats.getHeadroom().percentileMicros(0.01));
+        });
+
+        RedissonLockUtils.getCircuitBreakers().forEach((client, breaker) -> {
+            String labels = "client=\"" + PrometheusWriter.escapeLabelValue(client) + "\"";
+            writer.gauge("redis_lock_circuit_open", "Redis加锁熔断状态，0关闭 1熔断 2探测中", labels, breaker.getState().ordinal())
+                    .counter("redis_lock_circuit_trips_total", "Redis加锁熔断次数", labels, breaker.getTrips())
+                    .counter("redis_lock_circuit_rejected_total", "熔断期间直接失败的加锁次数", labels, breaker.getRejected())
+                    .counter("redis_lock_circuit_degraded_total", "降级为进程内锁的次数", labels, breaker.getDegraded());
+        });
+    }
+}
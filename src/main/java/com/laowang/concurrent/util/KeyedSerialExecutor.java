@@ -0,0 +1,155 @@
+package com.laowang.concurrent.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按key串行执行任务的执行器，替代只为按实体串行化而使用的命名锁
+ * <p>
+ * 同一个key的任务按提交顺序依次执行，不同key的任务并行执行。每个key有一个无锁队列，
+ * 提交时若队列原本为空，则向底层线程池派发一次排空任务，由该工作线程连续执行最多 batchSize 个任务，
+ * 之后若仍有剩余则重新派发，让其他key有机会执行。没有任何线程会阻塞在锁上等待。
+ * <p>
+ * 队列排空后立即退役并从映射中移除，空闲key不占用内存；退役与新任务提交通过计数的 CAS 决定先后，
+ * 提交方看到已退役的队列时会创建新队列重试。
+ * <pre>
+ * KeyedSerialExecutor&lt;Long&gt; accounts = new KeyedSerialExecutor&lt;&gt;(executorService, 64);
+ * accounts.execute(accountId, () -> applyTransfer(accountId, amount));
+ * </pre>
+ */
+@Slf4j
+public class KeyedSerialExecutor<K> {
+
+    private final Executor executor;
+    private final int batchSize;
+    private final Map<K, KeyQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor  实际执行任务的线程池
+     * @param batchSize 单次派发最多连续执行的任务数
+     */
+    public KeyedSerialExecutor(Executor executor, int batchSize) {
+        this.executor = executor;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * 提交到 key 对应的串行队列；底层线程池拒绝派发时由提交线程直接执行
+     */
+    public void execute(K key, Runnable task) {
+        while (true) {
+            KeyQueue queue = queues.computeIfAbsent(key, KeyQueue::new);
+            if (queue.offer(task)) {
+                return;
+            }
+            // 队列已退役但尚未从映射中移除
+            queues.remove(key, queue);
+        }
+    }
+
+    /**
+     * 当前有待执行任务的key数量
+     */
+    public int activeKeys() {
+        return queues.size();
+    }
+
+    /**
+     * key 对应的待执行任务数（含正在执行的任务）
+     */
+    public int pendingTasks(K key) {
+        KeyQueue queue = queues.get(key);
+        return queue == null ? 0 : Math.max(0, queue.count.get());
+    }
+
+    private final class KeyQueue implements Runnable {
+
+        private final K key;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        /**
+         * 已提交未完成的任务数；-1 表示已退役，不再接受任务
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        KeyQueue(K key) {
+            this.key = key;
+        }
+
+        boolean offer(Runnable task) {
+            int current;
+            do {
+                current = count.get();
+                if (current < 0) {
+                    return false;
+                }
+            } while (!count.compareAndSet(current, current + 1));
+            tasks.offer(task);
+            if (current == 0) {
+                schedule();
+            }
+            return true;
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                log.warn("线程池拒绝派发，key {} 的任务由当前线程执行", key);
+                run();
+            }
+        }
+
+        /**
+         * 同一时刻只有一个线程执行：只有计数从0变为1的提交方或上一批的执行线程会派发
+         */
+        @Override
+        public void run() {
+            while (true) {
+                for (int i = 0; i < batchSize; i++) {
+                    Runnable task;
+                    // 计数已递增但任务还未入队的短暂窗口
+                    while ((task = tasks.poll()) == null) {
+                        Thread.onSpinWait();
+                    }
+                    Error fatal = null;
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.error("key {} 的任务执行失败", key, e);
+                    } catch (Error e) {
+                        log.error("key {} 的任务执行出错", key, e);
+                        fatal = e;
+                    }
+                    if (count.decrementAndGet() == 0) {
+                        // 与新提交竞争：退役成功则移除；失败说明新提交已把计数从0变为1并负责派发
+                        if (count.compareAndSet(0, -1)) {
+                            queues.remove(key, this);
+                        }
+                        if (fatal != null) {
+                            throw fatal;
+                        }
+                        return;
+                    }
+                    if (fatal != null) {
+                        // Error 交给线程池处理（可能终止当前工作线程），剩余任务先重新派发，否则该key永远不再执行
+                        schedule();
+                        throw fatal;
+                    }
+                }
+                try {
+                    executor.execute(this);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // 线程池已满，继续在当前线程执行下一批
+                }
+            }
+        }
+    }
+}
@@ -1,57 +1,103 @@
 package com.laowang.concurrent.util;
 
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 基于当前线程的 {@link TaskGroup}：submitTask 提交到线程绑定的任务组，waitFor 派发并等待。
+ * <p>
+ * waitFor 在派发前取出并清空当前线程的任务，任务在调用线程上执行时（CallerRunsPolicy、同步执行器）嵌套使用 LatchUtils 也不会互相干扰。
+ * 每次 waitFor 结束（包括抛出异常）后解除线程绑定，线程池线程上不会残留任务组和未派发的任务；
+ * 代价是每批任务新建一个任务组，热点路径上应直接复用 TaskGroup。
+ */
 public class LatchUtils {
 
-    private static final ThreadLocal<List<TaskInfo>> THREADLOCAL = ThreadLocal.withInitial(LinkedList::new);
+    private static final ThreadLocal<TaskGroup> THREADLOCAL = ThreadLocal.withInitial(TaskGroup::new);
+    /**
+     * 最近一次等待中被取消的任务下标，只在有任务被取消时绑定，下一次等待时解除
+     */
+    private static final ThreadLocal<List<Integer>> CANCELLED_TASKS = new ThreadLocal<>();
+
+    // 全局计数，供 ConcurrencyMetricsCollector 导出
+    static final LongAdder TASKS = new LongAdder();
+    static final LongAdder WAITS = new LongAdder();
+    static final LongAdder TIMEOUTS = new LongAdder();
+    static final LongAdder CANCELLED = new LongAdder();
 
     public static void submitTask(Executor executor, Runnable runnable) {
-        THREADLOCAL.get().add(new TaskInfo(executor, runnable));
+        THREADLOCAL.get().submitTask(executor, runnable);
     }
 
-    private static List<TaskInfo> popTask() {
-        List<TaskInfo> taskInfos = THREADLOCAL.get();
-        THREADLOCAL.remove();
-        return taskInfos;
+    public static void submitTask(Executor executor, CancellableTask task) {
+        THREADLOCAL.get().submitTask(executor, task);
     }
 
     public static boolean waitFor(long timeout, TimeUnit timeUnit) {
-        List<TaskInfo> taskInfos = popTask();
-        if (taskInfos.isEmpty()) {
-            return true;
+        TaskGroup group = detach();
+        try {
+            return group.waitFor(timeout, timeUnit);
+        } finally {
+            CANCELLED_TASKS.remove();
         }
-        CountDownLatch latch = new CountDownLatch(taskInfos.size());
-        for (TaskInfo taskInfo : taskInfos) {
-            Executor executor = taskInfo.executor;
-            Runnable runnable = taskInfo.runnable;
-            executor.execute(() -> {
-                try {
-                    runnable.run();
-                } finally {
-                    latch.countDown();
-                }
-            });
+    }
+
+    /**
+     * 超时后取消未完成的任务，见 {@link TaskGroup#waitForOrCancel}
+     */
+    public static boolean waitForOrCancel(long timeout, TimeUnit timeUnit) {
+        TaskGroup group = detach();
+        try {
+            return group.waitForOrCancel(timeout, timeUnit);
+        } finally {
+            keepCancelled(group);
         }
-        boolean await = false;
+    }
+
+    /**
+     * 任一任务失败即结束等待并抛出 {@link TaskGroupException}，见 {@link TaskGroup#waitForFailFast}
+     */
+    public static boolean waitForFailFast(long timeout, TimeUnit timeUnit) {
+        TaskGroup group = detach();
         try {
-            await = latch.await(timeout, timeUnit);
-        } catch (Exception ignored) {
+            return group.waitForFailFast(timeout, timeUnit);
+        } finally {
+            keepCancelled(group);
         }
-        return await;
     }
 
-    private static final class TaskInfo {
-        private final Executor executor;
-        private final Runnable runnable;
+    /**
+     * 当前线程最近一次 waitForOrCancel / waitForFailFast 中被取消的任务下标
+     */
+    public static List<Integer> getCancelledTasks() {
+        List<Integer> cancelled = CANCELLED_TASKS.get();
+        return cancelled == null ? List.of() : cancelled;
+    }
+
+    /**
+     * 丢弃当前线程已提交但尚未等待的任务，用于 submitTask 之后发生异常的清理
+     */
+    public static void reset() {
+        THREADLOCAL.remove();
+    }
+
+    /**
+     * 在派发前解除绑定：即使等待过程中抛出异常，线程上也不再留有这批任务；
+     * 任务在调用线程上执行时嵌套的 submitTask 会绑定一个新的任务组
+     */
+    private static TaskGroup detach() {
+        TaskGroup group = THREADLOCAL.get();
+        THREADLOCAL.remove();
+        return group;
+    }
 
-        public TaskInfo(Executor executor, Runnable runnable) {
-            this.executor = executor;
-            this.runnable = runnable;
+    private static void keepCancelled(TaskGroup group) {
+        List<Integer> cancelled = group.getCancelledTasks();
+        if (cancelled.isEmpty()) {
+            CANCELLED_TASKS.remove();
+        } else {
+            CANCELLED_TASKS.set(cancelled);
         }
     }
 }
@@ -0,0 +1,86 @@
+package com.laowang.concurrent.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 预先解析的命名锁句柄，由 {@link ReentrantLockUtils#handle(String)} 获取
+ * <p>
+ * 句柄直接持有底层锁以及加锁成功、失败两个 {@link LockStat}，加锁时不再查询注册表，也没有对象分配。
+ * 注册表不会移除命名锁，句柄在进程生命周期内一直有效，与按名称加锁操作的是同一把锁。
+ * 注册了 {@link LockTracing} 监听器时每次加锁改为包装计时的 Lock 对象，与按名称加锁一样采集轨迹。
+ * <pre>
+ * private static final LockHandle ORDER_LOCK = ReentrantLockUtils.handle("order");
+ * try (LockStat ignored = ORDER_LOCK.lock()) { ... }
+ * </pre>
+ */
+public final class LockHandle {
+
+    private final String name;
+    private final Lock lock;
+    private final LockTraceListener.Mode mode;
+    private final LockStat locked;
+    private final LockStat unlocked;
+
+    LockHandle(String name, Lock lock) {
+        this(name, lock, LockTraceListener.Mode.EXCLUSIVE);
+    }
+
+    LockHandle(String name, Lock lock, LockTraceListener.Mode mode) {
+        this.name = name;
+        this.lock = lock;
+        this.mode = mode;
+        this.locked = new LockStat(lock, true);
+        this.unlocked = new LockStat(lock, false);
+    }
+
+    public LockStat lock() {
+        Lock traced = LockTracing.trace(lock, name, mode);
+        if (traced != lock) {
+            return LockUtils.lock(traced);
+        }
+        lock.lock();
+        LockUtils.ACQUIRED.increment();
+        return locked;
+    }
+
+    public LockStat tryLock() {
+        Lock traced = LockTracing.trace(lock, name, mode);
+        if (traced != lock) {
+            return LockUtils.tryLock(traced);
+        }
+        return result(lock.tryLock());
+    }
+
+    public LockStat tryLock(long timeout, TimeUnit timeUnit) {
+        Lock traced = LockTracing.trace(lock, name, mode);
+        if (traced != lock) {
+            return LockUtils.tryLock(traced, timeout, timeUnit);
+        }
+        boolean tryLock = false;
+        try {
+            tryLock = lock.tryLock(timeout, timeUnit);
+        } catch (InterruptedException e) {
+            LockUtils.INTERRUPTED.increment();
+            System.err.println("Warning: lock failed due to thread interruption");
+        }
+        return result(tryLock);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Lock getLock() {
+        return lock;
+    }
+
+    private LockStat result(boolean tryLock) {
+        if (tryLock) {
+            LockUtils.ACQUIRED.increment();
+            return locked;
+        }
+        LockUtils.TRY_FAILED.increment();
+        return unlocked;
+    }
+}
@@ -0,0 +1,92 @@
+package com.laowang.concurrent.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 按 long 键分条的锁数组，键经混合后取模映射到固定数量的 {@link LockHandle} 上
+ * <p>
+ * 每个条带是一个预先创建好 {@link LockStat} 的句柄，加锁路径上没有装箱、字符串拼接和对象分配。
+ * 不同的键可能落在同一条带上，因此在同一命名空间内逐个嵌套获取多个键是不安全的：
+ * 即使各线程的键互不相同，两个线程也可能以相反顺序持有同一对条带而死锁；读写锁还可能出现"持读锁再取写锁"的自死锁。
+ * 需要同时持有多个键时使用 {@link #lockAll}，它按条带下标排序并去重后依次加锁，所有线程的加锁顺序一致。
+ */
+final class LockStripes {
+
+    private final LockHandle[] handles;
+    private final int mask;
+
+    /**
+     * @param handles 长度必须是2的幂
+     */
+    LockStripes(LockHandle[] handles) {
+        if (Integer.bitCount(handles.length) != 1) {
+            throw new IllegalArgumentException("条带数必须是2的幂: " + handles.length);
+        }
+        this.handles = handles;
+        this.mask = handles.length - 1;
+    }
+
+    LockStat lock(long key) {
+        return handles[index(key)].lock();
+    }
+
+    LockStat tryLock(long key) {
+        return handles[index(key)].tryLock();
+    }
+
+    LockStat tryLock(long key, long timeout, TimeUnit timeUnit) {
+        return handles[index(key)].tryLock(timeout, timeUnit);
+    }
+
+    /**
+     * 按条带下标升序加锁，落在同一条带上的键只加一次锁，返回的对象按相反顺序释放
+     */
+    MultiLockStat lockAll(long... keys) {
+        int[] indexes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            indexes[i] = index(keys[i]);
+        }
+        Arrays.sort(indexes);
+        Lock[] locks = new Lock[indexes.length];
+        int count = 0;
+        try {
+            for (int i = 0; i < indexes.length; i++) {
+                if (i > 0 && indexes[i] == indexes[i - 1]) {
+                    continue;
+                }
+                // 开启轨迹采集时返回的是计时包装，释放也要经过它；加锁成功后才计数，失败时只释放已获得的锁
+                Lock lock = handles[indexes[i]].lock().getLock();
+                locks[count++] = lock;
+            }
+        } catch (RuntimeException | Error e) {
+            new MultiLockStat(locks, count).close();
+            throw e;
+        }
+        return new MultiLockStat(locks, count);
+    }
+
+    /**
+     * 条带数，与 {@link #lockAt} 一起供指标采集遍历
+     */
+    int size() {
+        return handles.length;
+    }
+
+    Lock lockAt(int index) {
+        return handles[index].getLock();
+    }
+
+    /**
+     * murmur3 fmix64，连续的ID也能均匀分散到各条带
+     */
+    private int index(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
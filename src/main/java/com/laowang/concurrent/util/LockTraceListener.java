@@ -0,0 +1,22 @@
+package com.laowang.concurrent.util;
+
+/**
+ * 命名锁访问轨迹回调，通过 {@link LockTracing#setListener} 注册，用于离线回放锁竞争
+ * <p>
+ * 在释放锁（或 tryLock 失败）的线程上同步回调，实现应尽量轻量。
+ */
+@FunctionalInterface
+public interface LockTraceListener {
+
+    enum Mode {
+        EXCLUSIVE, READ, WRITE
+    }
+
+    /**
+     * @param startNanos 开始请求锁的 System.nanoTime()
+     * @param waitNanos  请求到获得（或放弃）锁的时间
+     * @param holdNanos  持有时间，未获得锁时为0
+     * @param acquired   是否获得锁
+     */
+    void onLockEvent(String lockName, Mode mode, long startNanos, long waitNanos, long holdNanos, boolean acquired);
+}
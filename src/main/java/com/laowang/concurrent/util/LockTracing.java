@@ -0,0 +1,108 @@
+package com.laowang.concurrent.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link ReentrantLockUtils} 与 {@link ReadWriteLockUtils} 按名称加锁的轨迹采集开关
+ * <p>
+ * 未注册监听器时加锁路径只多一次 volatile 读；注册后每次加锁包装一个计时的 Lock 对象。
+ * 句柄（{@link LockHandle}）、long 键锁和可升级读写锁同样采集；可升级锁的每次升级、降级按释放和重新获取分别记录。
+ */
+public final class LockTracing {
+
+    private static volatile LockTraceListener listener;
+
+    private LockTracing() {
+    }
+
+    /**
+     * 注册监听器，传 null 关闭采集
+     */
+    public static void setListener(LockTraceListener listener) {
+        LockTracing.listener = listener;
+    }
+
+    static Lock trace(Lock lock, String lockName, LockTraceListener.Mode mode) {
+        LockTraceListener current = listener;
+        return current == null ? lock : new TracingLock(lock, lockName, mode, current);
+    }
+
+    /**
+     * 单次加锁使用的计时包装，加锁与解锁在同一线程上
+     */
+    private static final class TracingLock implements Lock {
+
+        private final Lock lock;
+        private final String lockName;
+        private final LockTraceListener.Mode mode;
+        private final LockTraceListener listener;
+        private long startNanos;
+        private long acquiredNanos;
+
+        TracingLock(Lock lock, String lockName, LockTraceListener.Mode mode, LockTraceListener listener) {
+            this.lock = lock;
+            this.lockName = lockName;
+            this.mode = mode;
+            this.listener = listener;
+        }
+
+        @Override
+        public void lock() {
+            startNanos = System.nanoTime();
+            lock.lock();
+            acquiredNanos = System.nanoTime();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            startNanos = System.nanoTime();
+            boolean acquired = false;
+            try {
+                lock.lockInterruptibly();
+                acquired = true;
+            } finally {
+                acquired(acquired);
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            startNanos = System.nanoTime();
+            return acquired(lock.tryLock());
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            startNanos = System.nanoTime();
+            boolean acquired = false;
+            try {
+                acquired = lock.tryLock(time, unit);
+                return acquired;
+            } finally {
+                acquired(acquired);
+            }
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+            long now = System.nanoTime();
+            listener.onLockEvent(lockName, mode, startNanos, acquiredNanos - startNanos, now - acquiredNanos, true);
+        }
+
+        @Override
+        public Condition newCondition() {
+            return lock.newCondition();
+        }
+
+        private boolean acquired(boolean acquired) {
+            acquiredNanos = System.nanoTime();
+            if (!acquired) {
+                listener.onLockEvent(lockName, mode, startNanos, acquiredNanos - startNanos, 0, false);
+            }
+            return acquired;
+        }
+    }
+}
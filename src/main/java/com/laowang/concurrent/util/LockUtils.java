@@ -1,29 +1,47 @@
 package com.laowang.concurrent.util;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 
 public class LockUtils {
 
+    // 全局计数，供 ConcurrencyMetricsCollector 导出
+    static final LongAdder ACQUIRED = new LongAdder();
+    static final LongAdder TRY_FAILED = new LongAdder();
+    static final LongAdder INTERRUPTED = new LongAdder();
+
     public static LockStat tryLock(Lock lock, long timeout, TimeUnit timeUnit) {
         boolean tryLock = false;
         try {
             tryLock = lock.tryLock(timeout, timeUnit);
         } catch (InterruptedException e) {
+            INTERRUPTED.increment();
             // Log warning to console since no logging framework is available
             System.err.println("Warning: lock failed due to thread interruption");
         }
+        count(tryLock);
         return new LockStat(lock, tryLock);
     }
 
     public static LockStat tryLock(Lock lock) {
         boolean tryLock = lock.tryLock();
+        count(tryLock);
         return new LockStat(lock, tryLock);
     }
 
     public static LockStat lock(Lock lock) {
         lock.lock();
+        ACQUIRED.increment();
         return new LockStat(lock, true);
     }
 
+    private static void count(boolean locked) {
+        if (locked) {
+            ACQUIRED.increment();
+        } else {
+            TRY_FAILED.increment();
+        }
+    }
+
 }
@@ -0,0 +1,11 @@
+package com.laowang.concurrent.util;
+
+/**
+ * 指标采集SPI，由导出器（如 pg 包中的 PrometheusExporter）在刷新快照时调用
+ * <p>
+ * 实现只能读取内存中已有的数据，不得访问数据库或做其他阻塞I/O。
+ */
+public interface MetricsCollector {
+
+    void collect(PrometheusWriter writer);
+}
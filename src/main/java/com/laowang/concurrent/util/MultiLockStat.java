@@ -0,0 +1,31 @@
+package com.laowang.concurrent.util;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 同时持有的一组锁，由 {@link ReentrantLockUtils#lockAll(String, long...)} 等方法返回，按加锁的相反顺序释放
+ */
+public final class MultiLockStat implements AutoCloseable {
+
+    private final Lock[] locks;
+    private final int count;
+
+    MultiLockStat(Lock[] locks, int count) {
+        this.locks = locks;
+        this.count = count;
+    }
+
+    /**
+     * 实际持有的锁数量，多个键落在同一条带上时只加一次锁
+     */
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void close() {
+        for (int i = count - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
@@ -1,5 +1,16 @@
 package com.laowang.concurrent.util;
 
+import com.laowang.concurrent.util.pg.AlertDispatcher;
+import com.laowang.concurrent.util.pg.AlertLevel;
+import com.laowang.concurrent.util.pg.AlertSink;
+import com.laowang.concurrent.util.pg.BlockingChainSampler;
+import com.laowang.concurrent.util.pg.BloatScanner;
+import com.laowang.concurrent.util.pg.HotTableScheduler;
+import com.laowang.concurrent.util.pg.LogAlertSink;
+import com.laowang.concurrent.util.pg.LogicalWalStreamer;
+import com.laowang.concurrent.util.pg.MetricHistory;
+import com.laowang.concurrent.util.pg.MetricRing;
+import com.laowang.concurrent.util.pg.MonitorMetricsCollector;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sql.DataSource;
@@ -7,12 +18,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -30,22 +44,108 @@ public class PostgreSQLConsistencyMonitor {
 
     // WAL位置变化阈值（MB）
     private static final long WAL_GROWTH_THRESHOLD = 100;
+    /**
+     * 超过该时长没有新样本的指标序列在表发现后淘汰；表级序列至少每30分钟采样一次，表发现每10分钟覆盖所有表
+     */
+    private static final long SERIES_MAX_IDLE_MILLIS = TimeUnit.HOURS.toMillis(2);
+    /**
+     * 数据库名称，仅在集群模式（{@link PostgreSQLMonitorFleet}）下非空，用于区分告警
+     */
+    private final String name;
     private final DataSource dataSource;
     private final ExecutorService executorService;
     private final ScheduledExecutorService scheduledExecutor;
-    private final Map<String, String> lastWalPositions;
+    /**
+     * 独立模式下线程池和告警分发器归本实例所有；集群模式下共享，由 PostgreSQLMonitorFleet 负责关闭
+     */
+    private final boolean ownsResources;
+    /**
+     * 指标历史；WAL、checkpoint 序列只由对应的定时任务写入，满足 MetricRing 单写者约定
+     */
+    private final MetricHistory metricHistory;
+    private final AlertDispatcher alertDispatcher;
+    /**
+     * 表级检查调度：每分钟最多60次表统计查询，热表最短30秒检查一次，冷表最长30分钟
+     */
+    private final HotTableScheduler hotTableScheduler;
+    /**
+     * 锁阻塞链采样器，按需开启，占用一条专用连接
+     */
+    private volatile BlockingChainSampler blockingChainSampler;
+    /**
+     * WAL流式消费，按需开启，占用一条复制连接和一个专用线程
+     */
+    private volatile LogicalWalStreamer walStreamer;
+    /**
+     * WAL流式消费的指标发布任务，由 walLock 保护；不用 this，避免 shutdown 等待长时间持有 this 的 scanBloat
+     */
+    private final Object walLock = new Object();
+    private ScheduledFuture<?> walPublishFuture;
+    /**
+     * 上一轮表发现看到的表，schema.table -> {schema, table}，只在表发现任务中访问
+     */
+    private Map<String, String[]> discoveredTables = new HashMap<>();
 
     public PostgreSQLConsistencyMonitor(DataSource dataSource) {
+        this(dataSource, new LogAlertSink());
+    }
+
+    public PostgreSQLConsistencyMonitor(DataSource dataSource, AlertSink alertSink) {
+        this(null, dataSource, new AlertDispatcher(alertSink),
+                Executors.newFixedThreadPool(4), Executors.newScheduledThreadPool(2), true);
+    }
+
+    /**
+     * 集群模式构造，线程池和告警分发器由 PostgreSQLMonitorFleet 共享提供
+     */
+    PostgreSQLConsistencyMonitor(String name, DataSource dataSource, AlertDispatcher alertDispatcher,
+                                 ExecutorService executorService, ScheduledExecutorService scheduledExecutor) {
+        this(name, dataSource, alertDispatcher, executorService, scheduledExecutor, false);
+    }
+
+    private PostgreSQLConsistencyMonitor(String name, DataSource dataSource, AlertDispatcher alertDispatcher,
+                                         ExecutorService executorService, ScheduledExecutorService scheduledExecutor,
+                                         boolean ownsResources) {
+        this.name = name;
         this.dataSource = dataSource;
-        this.executorService = Executors.newFixedThreadPool(4);
-        this.scheduledExecutor = Executors.newScheduledThreadPool(2);
-        this.lastWalPositions = new HashMap<>();
+        this.executorService = executorService;
+        this.scheduledExecutor = scheduledExecutor;
+        this.ownsResources = ownsResources;
+        this.metricHistory = new MetricHistory();
+        this.alertDispatcher = alertDispatcher;
+        this.hotTableScheduler = new HotTableScheduler(60, TimeUnit.SECONDS.toMillis(30),
+                TimeUnit.MINUTES.toMillis(30), 100D);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MetricHistory getMetricHistory() {
+        return metricHistory;
     }
 
     /**
-     * 启动定期监控任务
+     * 导出本实例已采集指标的采集器，供 PrometheusExporter 注册
+     */
+    public MetricsCollector metricsCollector() {
+        return new MonitorMetricsCollector(name, metricHistory);
+    }
+
+    /**
+     * 将表纳入按热度调度的定期检查；startMonitoring 后也会自动发现所有用户表
+     */
+    public void monitorTable(String schemaName, String tableName) {
+        hotTableScheduler.track(schemaName, tableName);
+    }
+
+    /**
+     * 启动定期监控任务；集群模式下由 PostgreSQLMonitorFleet 统一调度，不应调用此方法
      */
     public void startMonitoring() {
+        if (!ownsResources) {
+            throw new IllegalStateException("集群模式下由 PostgreSQLMonitorFleet 负责调度: " + name);
+        }
         log.info("启动PostgreSQL一致性监控...");
 
         // 每分钟检查WAL状态
@@ -59,33 +159,276 @@ public class PostgreSQLConsistencyMonitor {
                 this::checkDatabaseStatus,
                 0, 300, TimeUnit.SECONDS
         );
+
+        // 每10分钟发现一次用户表，同时为所有表提供一次基线采样
+        scheduledExecutor.scheduleWithFixedDelay(
+                this::discoverTables,
+                0, 600, TimeUnit.SECONDS
+        );
+
+        // 每5秒按热度和查询预算调度到期的表检查
+        scheduledExecutor.scheduleWithFixedDelay(
+                this::checkHotTables,
+                5, 5, TimeUnit.SECONDS
+        );
     }
 
     /**
-     * 检查WAL状态
+     * 开启锁阻塞链采样：每 periodSeconds 秒在专用连接上执行一次采样，
+     * 阻塞链深度超过 maxDepth 或等待超过 maxWaitMillis 时告警
      */
-    private void checkWALStatus() {
-        LatchUtils.submitTask(executorService, () -> {
-            try (Connection conn = dataSource.getConnection()) {
-                // 检查当前WAL位置
-                String currentLsn = getCurrentWALPosition(conn);
-                log.debug("当前WAL位置: {}", currentLsn);
+    public void startBlockingChainSampling(long periodSeconds, int maxDepth, long maxWaitMillis) {
+        if (!ownsResources) {
+            throw new IllegalStateException("集群模式下由 PostgreSQLMonitorFleet 负责调度: " + name);
+        }
+        enableBlockingChainSampling(maxDepth, maxWaitMillis);
+        scheduledExecutor.scheduleWithFixedDelay(
+                this::sampleBlockingChains,
+                periodSeconds, periodSeconds, TimeUnit.SECONDS
+        );
+    }
 
-                // 检查WAL增长是否异常
-                checkWALGrowth(currentLsn);
+    void enableBlockingChainSampling(int maxDepth, long maxWaitMillis) {
+        BlockingChainSampler previous = blockingChainSampler;
+        blockingChainSampler = new BlockingChainSampler(dataSource, maxDepth, maxWaitMillis);
+        if (previous != null) {
+            previous.close();
+        }
+    }
 
-                // 检查WAL统计信息
-                checkWALStats(conn);
+    /**
+     * 开启WAL流式消费：通过临时逻辑复制槽持续统计各表变更数和WAL消费量，
+     * 每 publishSeconds 秒写入一次指标历史（wal_stream_*），弥补每分钟一次WAL采样之间的空白。
+     * 复制连接不能来自连接池，需要单独提供 JDBC URL 和连接属性；服务端需要 wal_level=logical。
+     * 重复调用会停止之前的消费和发布任务；集群模式下使用 {@link PostgreSQLMonitorFleet#enableWalStreaming}
+     *
+     * @param slotName        临时复制槽名称，同一数据库内唯一
+     * @param publicationName 已存在的发布名称，只统计发布中的表，见 {@link LogicalWalStreamer}
+     */
+    public void startWalStreaming(String jdbcUrl, Properties properties, String slotName, String publicationName,
+                                  long publishSeconds) {
+        if (!ownsResources) {
+            throw new IllegalStateException("集群模式下请使用 PostgreSQLMonitorFleet.enableWalStreaming: " + name);
+        }
+        enableWalStreaming(jdbcUrl, properties, slotName, publicationName, publishSeconds);
+    }
 
-            } catch (SQLException e) {
-                log.error("WAL状态检查失败", e);
+    /**
+     * 发布任务在 scheduledExecutor 上执行，集群模式下即集群共享的定时线程，只做内存读写不会阻塞它
+     */
+    void enableWalStreaming(String jdbcUrl, Properties properties, String slotName, String publicationName,
+                            long publishSeconds) {
+        synchronized (walLock) {
+            stopWalStreaming();
+            LogicalWalStreamer streamer = new LogicalWalStreamer(jdbcUrl, properties, slotName, publicationName,
+                    TimeUnit.SECONDS.toMillis(5));
+            walStreamer = streamer;
+            streamer.start();
+            walPublishFuture = scheduledExecutor.scheduleWithFixedDelay(() -> streamer.publish(metricHistory),
+                    publishSeconds, publishSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void stopWalStreaming() {
+        synchronized (walLock) {
+            if (walPublishFuture != null) {
+                walPublishFuture.cancel(false);
+                walPublishFuture = null;
             }
-        });
+            LogicalWalStreamer streamer = walStreamer;
+            if (streamer != null) {
+                // 先摘除再关闭，getTableChangeRates 不再返回停止前的速率
+                walStreamer = null;
+                streamer.close();
+            }
+        }
+    }
+
+    /**
+     * 各表（schema.table）最近约10秒的平均变更速率，未开启WAL流式消费时为空
+     */
+    public Map<String, Double> getTableChangeRates() {
+        LogicalWalStreamer streamer = walStreamer;
+        return streamer == null ? Map.of() : streamer.tableRates();
+    }
+
+    /**
+     * 按累计阻塞时间排序的根阻塞SQL指纹，未开启采样时为空
+     */
+    public List<BlockingChainSampler.FingerprintStats> getTopBlockers(int limit) {
+        BlockingChainSampler sampler = blockingChainSampler;
+        return sampler == null ? List.of() : sampler.topBlockers(limit);
+    }
+
+    /**
+     * 扫描所有schema的表/索引膨胀和未使用索引，按可回收字节数降序返回。
+     * 同时最多执行 maxConcurrentQueries 条目录查询，每批之间暂停 pauseBetweenBatchesMillis；
+     * 查询在监控线程池中执行，不要在监控线程池内部调用
+     */
+    public synchronized List<BloatScanner.ReclaimableItem> scanBloat(int maxConcurrentQueries,
+                                                                     long pauseBetweenBatchesMillis)
+            throws SQLException, InterruptedException {
+        BloatScanner scanner = new BloatScanner(dataSource, executorService, maxConcurrentQueries,
+                pauseBetweenBatchesMillis, 1024L * 1024);
+        List<BloatScanner.ReclaimableItem> items = scanner.scan();
+        long total = 0;
+        for (BloatScanner.ReclaimableItem item : items) {
+            total += item.getReclaimableBytes();
+        }
+        metricHistory.record("reclaimable_bytes", System.currentTimeMillis(), total);
+        return items;
+    }
+
+    void sampleBlockingChains() {
+        BlockingChainSampler sampler = blockingChainSampler;
+        if (sampler == null) {
+            return;
+        }
+        List<BlockingChainSampler.BlockingChain> chains;
+        try {
+            chains = sampler.sample();
+        } catch (SQLException e) {
+            log.error("锁阻塞链采样失败", e);
+            return;
+        }
+
+        int maxDepth = 0;
+        long blockedSessions = 0;
+        for (BlockingChainSampler.BlockingChain chain : chains) {
+            maxDepth = Math.max(maxDepth, chain.getDepth());
+            blockedSessions += chain.getWaiterCount();
+            if (sampler.exceedsThreshold(chain)) {
+                fire("blocking_chain:" + chain.getFingerprint(), AlertLevel.CRITICAL,
+                        String.format("锁阻塞链: pid %d (%s) 阻塞 %d 个会话，深度 %d，最长等待 %dms，SQL: %s",
+                                chain.getRootPid(), chain.getRootState(), chain.getWaiterCount(),
+                                chain.getDepth(), chain.getMaxWaitMillis(), chain.getFingerprint()));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        metricHistory.record("blocking_chains", now, chains.size());
+        metricHistory.record("blocking_max_depth", now, maxDepth);
+        metricHistory.record("blocked_sessions", now, blockedSessions);
+    }
+
+    /**
+     * 发现所有用户表并记录其统计基线，消耗一次查询预算
+     */
+    void discoverTables() {
+        if (!hotTableScheduler.tryConsume(1, System.currentTimeMillis())) {
+            log.debug("查询预算不足，跳过本轮表发现");
+            return;
+        }
+        String sql = """
+                SELECT schemaname, relname, n_tup_upd, n_tup_del, n_live_tup, n_dead_tup
+                FROM pg_stat_user_tables
+                """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            Map<String, String[]> seen = new HashMap<>();
+            while (rs.next()) {
+                String schemaName = rs.getString("schemaname");
+                String tableName = rs.getString("relname");
+                recordTableStats(schemaName, tableName,
+                        rs.getLong("n_tup_upd"), rs.getLong("n_tup_del"),
+                        rs.getLong("n_live_tup"), rs.getLong("n_dead_tup"));
+                seen.put(schemaName + "." + tableName, new String[]{schemaName, tableName});
+            }
+            log.debug("发现 {} 张用户表", seen.size());
+            forgetDroppedTables(seen);
+        } catch (SQLException e) {
+            log.error("用户表发现失败", e);
+        }
+    }
+
+    /**
+     * 上一轮发现而本轮不再存在的表（已删除或改名）停止调度，并删除其指标序列；
+     * 之后淘汰长期没有新样本的其他序列，指标历史不随历史上出现过的表无限增长
+     */
+    private void forgetDroppedTables(Map<String, String[]> seen) {
+        LogicalWalStreamer streamer = walStreamer;
+        for (Map.Entry<String, String[]> entry : discoveredTables.entrySet()) {
+            if (!seen.containsKey(entry.getKey())) {
+                String schemaName = entry.getValue()[0];
+                String tableName = entry.getValue()[1];
+                hotTableScheduler.untrack(schemaName, tableName);
+                if (streamer != null) {
+                    streamer.removeTable(schemaName, tableName);
+                }
+                metricHistory.removeTable(schemaName, tableName);
+                log.info("表 {} 已不存在，删除其指标历史", entry.getKey());
+            }
+        }
+        discoveredTables = seen;
+        int evicted = metricHistory.evictIdle(System.currentTimeMillis(), SERIES_MAX_IDLE_MILLIS);
+        if (evicted > 0) {
+            log.debug("淘汰 {} 个长期没有新样本的指标序列", evicted);
+        }
+    }
+
+    /**
+     * 检查调度器选出的到期表，每张表只做一次统计查询
+     */
+    private void checkHotTables() {
+        List<HotTableScheduler.TableRef> dueTables = pollDueTables(Integer.MAX_VALUE);
+        if (dueTables.isEmpty()) {
+            return;
+        }
+        TaskGroup group = new TaskGroup(dueTables.size());
+        for (HotTableScheduler.TableRef table : dueTables) {
+            group.submitTask(executorService, () -> runTableStatsCheck(table));
+        }
+
+        // 超时后取消剩余的表，不再占用连接，留给下一轮调度
+        boolean success = group.waitForOrCancel(60L, TimeUnit.SECONDS);
+        if (!success) {
+            fire("timeout:hot_tables", AlertLevel.WARNING,
+                    "热表检查超时，本轮 " + dueTables.size() + " 张表，取消 " + group.getCancelledTasks().size() + " 张");
+        }
+    }
+
+    List<HotTableScheduler.TableRef> pollDueTables(int maxTables) {
+        return hotTableScheduler.pollDue(System.currentTimeMillis(), maxTables);
+    }
+
+    void runTableStatsCheck(HotTableScheduler.TableRef table) {
+        try (Connection conn = dataSource.getConnection()) {
+            checkTableStats(conn, table.getSchemaName(), table.getTableName());
+        } catch (SQLException e) {
+            log.error("表 {} 统计检查失败", table, e);
+        }
+    }
+
+    /**
+     * 检查WAL状态
+     */
+    private void checkWALStatus() {
+        TaskGroup group = new TaskGroup(1);
+        group.submitTask(executorService, this::runWALCheck);
 
         // 等待检查任务完成
-        boolean success = LatchUtils.waitFor(30L, TimeUnit.SECONDS);
+        boolean success = group.waitFor(30L, TimeUnit.SECONDS);
         if (!success) {
-            log.warn("WAL状态检查超时");
+            fire("timeout:wal", AlertLevel.WARNING, "WAL状态检查超时");
+        }
+    }
+
+    void runWALCheck() {
+        try (Connection conn = dataSource.getConnection()) {
+            // 检查当前WAL位置
+            String currentLsn = getCurrentWALPosition(conn);
+            log.debug("当前WAL位置: {}", currentLsn);
+
+            // 检查WAL增长是否异常
+            checkWALGrowth(currentLsn);
+
+            // 检查WAL统计信息
+            checkWALStats(conn);
+
+        } catch (SQLException e) {
+            log.error("WAL状态检查失败", e);
         }
     }
 
@@ -93,20 +436,23 @@ public class PostgreSQLConsistencyMonitor {
      * 检查数据库整体状态
      */
     private void checkDatabaseStatus() {
-        LatchUtils.submitTask(executorService, () -> {
-            try (Connection conn = dataSource.getConnection()) {
-                // 检查是否处于恢复模式
-                checkRecoveryStatus(conn);
+        TaskGroup group = new TaskGroup(1);
+        group.submitTask(executorService, this::runDatabaseStatusCheck);
 
-                // 检查checkpoint状态
-                checkCheckpointStatus(conn);
+        group.waitFor(60L, TimeUnit.SECONDS);
+    }
 
-            } catch (SQLException e) {
-                log.error("数据库状态检查失败", e);
-            }
-        });
+    void runDatabaseStatusCheck() {
+        try (Connection conn = dataSource.getConnection()) {
+            // 检查是否处于恢复模式
+            checkRecoveryStatus(conn);
+
+            // 检查checkpoint状态
+            checkCheckpointStatus(conn);
 
-        LatchUtils.waitFor(60L, TimeUnit.SECONDS);
+        } catch (SQLException e) {
+            log.error("数据库状态检查失败", e);
+        }
     }
 
     /**
@@ -130,19 +476,19 @@ public class PostgreSQLConsistencyMonitor {
     private void checkWALGrowth(String currentLsn) {
         if (currentLsn == null) return;
 
-        String lastLsn = lastWalPositions.get("current");
-        if (lastLsn != null) {
-            // 计算WAL位置差异（简化计算）
-            long growth = calculateLSNDifference(lastLsn, currentLsn);
+        long current = parseLSN(currentLsn);
+        MetricRing lsnRing = metricHistory.ring("wal_lsn");
+        long last = lsnRing.latest(-1L);
+        if (last >= 0) {
+            long growth = calculateLSNDifference(last, current);
 
             if (growth > WAL_GROWTH_THRESHOLD) {
-                log.warn("WAL增长异常：从 {} 增长到 {}，增长量: {}MB",
-                        lastLsn, currentLsn, growth);
+                fire("wal_growth", AlertLevel.WARNING,
+                        String.format("WAL增长异常：从 %s 增长到 %s，增长量: %dMB", formatLSN(last), currentLsn, growth));
             }
         }
 
-        lastWalPositions.put("current", currentLsn);
-        lastWalPositions.put("check_time", LocalDateTime.now().toString());
+        lsnRing.record(System.currentTimeMillis(), current);
     }
 
     /**
@@ -161,9 +507,15 @@ public class PostgreSQLConsistencyMonitor {
                 log.debug("WAL统计 - 记录数: {}, 字节数: {}, 缓冲区满次数: {}",
                         walRecords, walBytes, walBuffersFull);
 
+                long now = System.currentTimeMillis();
+                metricHistory.record("wal_records", now, walRecords);
+                metricHistory.record("wal_bytes", now, walBytes);
+                metricHistory.record("wal_buffers_full", now, walBuffersFull);
+
                 // 如果缓冲区频繁满，可能需要调整wal_buffers配置
                 if (walBuffersFull > 1000) {
-                    log.warn("WAL缓冲区频繁满载，建议检查wal_buffers配置");
+                    fire("wal_buffers_full", AlertLevel.WARNING,
+                            "WAL缓冲区频繁满载(" + walBuffersFull + "次)，建议检查wal_buffers配置");
                 }
             }
         }
@@ -179,8 +531,9 @@ public class PostgreSQLConsistencyMonitor {
 
             if (rs.next()) {
                 boolean inRecovery = rs.getBoolean(1);
+                metricHistory.record("in_recovery", System.currentTimeMillis(), inRecovery ? 1L : 0L);
                 if (inRecovery) {
-                    log.warn("数据库当前处于恢复模式");
+                    fire("in_recovery", AlertLevel.CRITICAL, "数据库当前处于恢复模式");
                 } else {
                     log.debug("数据库运行正常，未处于恢复模式");
                 }
@@ -199,6 +552,9 @@ public class PostgreSQLConsistencyMonitor {
             if (rs.next()) {
                 String checkpointLsn = rs.getString("checkpoint_lsn");
                 log.debug("最近checkpoint位置: {}", checkpointLsn);
+                if (checkpointLsn != null) {
+                    metricHistory.record("checkpoint_lsn", System.currentTimeMillis(), parseLSN(checkpointLsn));
+                }
             }
         }
     }
@@ -209,7 +565,9 @@ public class PostgreSQLConsistencyMonitor {
     public void checkTableConsistency(String schemaName, String tableName) {
         log.info("开始检查表 {}.{} 的一致性", schemaName, tableName);
 
-        LatchUtils.submitTask(executorService, () -> {
+        // 可能在批量检查的工作线程中调用，使用独立的任务组避免与该线程上其他并行调用混在一起
+        TaskGroup group = new TaskGroup(1);
+        group.submitTask(executorService, () -> {
             try (Connection conn = dataSource.getConnection()) {
                 // 检查表统计信息
                 checkTableStats(conn, schemaName, tableName);
@@ -225,9 +583,10 @@ public class PostgreSQLConsistencyMonitor {
         });
 
         // 等待检查完成
-        boolean success = LatchUtils.waitFor(300L, TimeUnit.SECONDS);
+        boolean success = group.waitFor(300L, TimeUnit.SECONDS);
         if (!success) {
-            log.warn("表一致性检查超时");
+            fire("timeout:table:" + schemaName + "." + tableName, AlertLevel.WARNING,
+                    String.format("表 %s.%s 一致性检查超时", schemaName, tableName));
         }
     }
 
@@ -237,10 +596,10 @@ public class PostgreSQLConsistencyMonitor {
     private void checkTableStats(Connection conn, String schemaName, String tableName)
             throws SQLException {
         String sql = """
-                SELECT schemaname, tablename, n_tup_ins, n_tup_upd, n_tup_del, 
+                SELECT schemaname, relname, n_tup_ins, n_tup_upd, n_tup_del,
                        n_live_tup, n_dead_tup, last_vacuum, last_autovacuum
-                FROM pg_stat_user_tables 
-                WHERE schemaname = ? AND tablename = ?
+                FROM pg_stat_user_tables
+                WHERE schemaname = ? AND relname = ?
                 """;
 
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -251,20 +610,40 @@ public class PostgreSQLConsistencyMonitor {
                 if (rs.next()) {
                     long liveTuples = rs.getLong("n_live_tup");
                     long deadTuples = rs.getLong("n_dead_tup");
+                    recordTableStats(schemaName, tableName, rs.getLong("n_tup_upd"), rs.getLong("n_tup_del"),
+                            liveTuples, deadTuples);
 
                     log.debug("表 {}.{} 统计 - 活跃行数: {}, 死亡行数: {}",
                             schemaName, tableName, liveTuples, deadTuples);
 
                     // 如果死亡行数过多，建议执行VACUUM
                     if (deadTuples > liveTuples * 0.2) {
-                        log.warn("表 {}.{} 死亡行数过多({}), 建议执行VACUUM",
-                                schemaName, tableName, deadTuples);
+                        fire("dead_tuples:" + schemaName + "." + tableName, AlertLevel.WARNING,
+                                String.format("表 %s.%s 死亡行数过多(%d), 建议执行VACUUM", schemaName, tableName, deadTuples));
                     }
                 }
             }
         }
     }
 
+    /**
+     * 记录表统计采样到指标历史和热度调度器
+     * <p>
+     * 表发现、热表检查和手动检查可能并发写同一张表的序列，这里按表串行化写入以满足 MetricRing 单写者约定
+     */
+    private void recordTableStats(String schemaName, String tableName, long tupUpd, long tupDel,
+                                  long liveTuples, long deadTuples) {
+        long now = System.currentTimeMillis();
+        MetricRing liveRing = metricHistory.ring(MetricHistory.tableSeries("n_live_tup", schemaName, tableName));
+        synchronized (liveRing) {
+            liveRing.record(now, liveTuples);
+            metricHistory.record(MetricHistory.tableSeries("n_dead_tup", schemaName, tableName), now, deadTuples);
+            metricHistory.record(MetricHistory.tableSeries("n_tup_upd", schemaName, tableName), now, tupUpd);
+            metricHistory.record(MetricHistory.tableSeries("n_tup_del", schemaName, tableName), now, tupDel);
+        }
+        hotTableScheduler.recordSample(schemaName, tableName, tupUpd, tupDel, deadTuples, liveTuples, now);
+    }
+
     /**
      * 检查表约束
      */
@@ -299,8 +678,11 @@ public class PostgreSQLConsistencyMonitor {
 
     /**
      * 批量检查多个表的一致性（使用并发控制）
+     *
+     * @return 所有表检查结束后完成，结果顺序与 tables 的迭代顺序一致
      */
-    public void checkMultipleTablesConsistency(Map<String, String> tables, int maxConcurrency) {
+    public CompletableFuture<List<SemaphoreUtils.TaskOutcome>> checkMultipleTablesConsistency(Map<String, String> tables,
+                                                                                            int maxConcurrency) {
         log.info("开始批量检查 {} 个表的一致性，最大并发数: {}", tables.size(), maxConcurrency);
 
         // 使用SemaphoreUtils控制并发数
@@ -316,21 +698,59 @@ public class PostgreSQLConsistencyMonitor {
         }
 
         // 启动所有任务，限制并发数
-        SemaphoreUtils.start(maxConcurrency);
+        // start 返回的 future 不会异常完成，任务异常记录在各自的结果中
+        return SemaphoreUtils.start(maxConcurrency).thenApply(outcomes -> {
+            long failed = outcomes.stream().filter(outcome -> !outcome.isSuccess()).count();
+            log.info("批量一致性检查结束，共 {} 个表，失败 {} 个", outcomes.size(), failed);
+            return outcomes;
+        });
     }
 
     /**
-     * 简化的LSN差异计算（实际项目中需要更精确的实现）
+     * 提交告警；集群模式下key和消息带上数据库名称
      */
-    private long calculateLSNDifference(String lsn1, String lsn2) {
-        // 这里是简化实现，实际应该解析LSN格式进行精确计算
-        return Math.abs(lsn1.hashCode() - lsn2.hashCode()) / 1024 / 1024;
+    private void fire(String key, AlertLevel level, String message) {
+        if (name == null) {
+            alertDispatcher.fire(key, level, message);
+        } else {
+            alertDispatcher.fire(name + ":" + key, level, "[" + name + "] " + message);
+        }
+    }
+
+    /**
+     * 计算两个LSN之间的WAL字节差（MB）
+     */
+    private long calculateLSNDifference(long lsn1, long lsn2) {
+        return Math.abs(lsn2 - lsn1) / 1024 / 1024;
+    }
+
+    /**
+     * 将 "16/B374D848" 格式的LSN解析为64位偏移量
+     */
+    static long parseLSN(String lsn) {
+        int slash = lsn.indexOf('/');
+        long high = Long.parseLong(lsn.substring(0, slash), 16);
+        long low = Long.parseLong(lsn.substring(slash + 1), 16);
+        return (high << 32) | low;
+    }
+
+    static String formatLSN(long lsn) {
+        return Long.toHexString(lsn >>> 32).toUpperCase() + "/" + Long.toHexString(lsn & 0xFFFFFFFFL).toUpperCase();
     }
 
     /**
      * 停止监控并清理资源
      */
     public void shutdown() {
+        BlockingChainSampler sampler = blockingChainSampler;
+        if (sampler != null) {
+            sampler.close();
+        }
+        // 集群模式下定时线程由集群共享，必须取消自己的发布任务
+        stopWalStreaming();
+        if (!ownsResources) {
+            return;
+        }
         log.info("停止PostgreSQL一致性监控...");
 
         scheduledExecutor.shutdown();
@@ -348,6 +768,7 @@ public class PostgreSQLConsistencyMonitor {
             log.warn("监控停止过程中被中断", e);
         }
 
+        alertDispatcher.close();
         log.info("PostgreSQL一致性监控已停止");
     }
 } 
\ No newline at end of file
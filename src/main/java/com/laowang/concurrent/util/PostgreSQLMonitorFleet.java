@@ -0,0 +1,300 @@
+package com.laowang.concurrent.util;
+
+import com.laowang.concurrent.util.pg.AlertDispatcher;
+import com.laowang.concurrent.util.pg.AlertSink;
+import com.laowang.concurrent.util.pg.HotTableScheduler;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多数据库监控（集群模式）
+ * <p>
+ * 所有数据库共享一个定时线程和一个有界工作线程池：定时线程只负责按周期派发检查，
+ * 检查本身在工作线程中同步执行；每个数据库有独立的并发上限，达到上限或线程池队列已满时本轮检查直接跳过，
+ * 不会阻塞定时线程。同一个数据库的同一种周期检查上一轮尚未结束时（如数据库响应变慢），本轮同样跳过，不会自我重叠。
+ * 工作线程空闲超时后回收，因此线程数随活跃检查数变化，而不是随数据库数量增长。
+ * <p>
+ * 使用示例：
+ * <pre>
+ * PostgreSQLMonitorFleet fleet = new PostgreSQLMonitorFleet(16, 1024, 2, new LogAlertSink());
+ * fleet.addDatabase("order-db", orderDataSource);
+ * fleet.addDatabase("user-db", userDataSource);
+ * fleet.start();
+ * </pre>
+ */
+@Slf4j
+public class PostgreSQLMonitorFleet implements AutoCloseable {
+
+    private final ScheduledExecutorService timer;
+    private final ThreadPoolExecutor workers;
+    private final AlertDispatcher alertDispatcher;
+    private final int perDatabaseConcurrency;
+    /**
+     * 各周期任务的时间单位，生产环境为秒
+     */
+    private final TimeUnit periodUnit;
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+    private final LongAdder skippedChecks = new LongAdder();
+    private volatile boolean started;
+
+    /**
+     * @param maxWorkers             工作线程上限
+     * @param queueCapacity          等待执行的检查数上限
+     * @param perDatabaseConcurrency 单个数据库同时进行的检查数上限
+     * @param alertSink              所有数据库共享的告警投递
+     */
+    public PostgreSQLMonitorFleet(int maxWorkers, int queueCapacity, int perDatabaseConcurrency, AlertSink alertSink) {
+        this(maxWorkers, queueCapacity, perDatabaseConcurrency, alertSink, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param periodUnit start 调度的各周期任务（含首次执行的随机错开）的时间单位，测试中用毫秒缩短调度周期
+     */
+    PostgreSQLMonitorFleet(int maxWorkers, int queueCapacity, int perDatabaseConcurrency, AlertSink alertSink,
+                           TimeUnit periodUnit) {
+        this.timer = Executors.newSingleThreadScheduledExecutor(namedThreadFactory("pg-fleet-timer"));
+        this.workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedThreadFactory("pg-fleet-worker"));
+        this.workers.allowCoreThreadTimeOut(true);
+        this.alertDispatcher = new AlertDispatcher(alertSink);
+        this.perDatabaseConcurrency = perDatabaseConcurrency;
+        this.periodUnit = periodUnit;
+    }
+
+    /**
+     * 加入一个数据库；若集群已启动则立即开始调度
+     */
+    public synchronized PostgreSQLConsistencyMonitor addDatabase(String name, DataSource dataSource) {
+        Member member = new Member(new PostgreSQLConsistencyMonitor(name, dataSource, alertDispatcher, workers, timer),
+                new Semaphore(perDatabaseConcurrency));
+        if (members.putIfAbsent(name, member) != null) {
+            throw new IllegalArgumentException("数据库已存在: " + name);
+        }
+        if (started) {
+            schedule(member);
+        }
+        return member.monitor;
+    }
+
+    public synchronized void removeDatabase(String name) {
+        Member member = members.remove(name);
+        if (member != null) {
+            member.cancel();
+            member.monitor.shutdown();
+        }
+    }
+
+    /**
+     * 为指定数据库开启锁阻塞链采样，采样通过共享线程池执行并受单库并发上限约束
+     */
+    public synchronized void enableBlockingChainSampling(String name, long periodSeconds, int maxDepth,
+                                                         long maxWaitMillis) {
+        Member member = members.get(name);
+        if (member == null) {
+            throw new IllegalArgumentException("数据库不存在: " + name);
+        }
+        member.monitor.enableBlockingChainSampling(maxDepth, maxWaitMillis);
+        member.futures.add(timer.scheduleWithFixedDelay(
+                () -> dispatch(member, member.blockingChainSampling, member.monitor::sampleBlockingChains),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 为指定数据库开启WAL流式消费，见 {@link PostgreSQLConsistencyMonitor#startWalStreaming}；
+     * 消费在专用线程上进行，不占用共享线程池，指标发布任务在共享定时线程上执行，移除数据库或关闭集群时一并停止
+     */
+    public synchronized void enableWalStreaming(String name, String jdbcUrl, Properties properties, String slotName,
+                                                String publicationName, long publishSeconds) {
+        Member member = members.get(name);
+        if (member == null) {
+            throw new IllegalArgumentException("数据库不存在: " + name);
+        }
+        member.monitor.enableWalStreaming(jdbcUrl, properties, slotName, publicationName, publishSeconds);
+    }
+
+    public PostgreSQLConsistencyMonitor getMonitor(String name) {
+        Member member = members.get(name);
+        return member == null ? null : member.monitor;
+    }
+
+    public Collection<String> getDatabaseNames() {
+        return members.keySet();
+    }
+
+    /**
+     * 因单库并发上限、线程池已满或上一轮同类检查未结束而跳过的检查次数
+     */
+    public long getSkippedChecks() {
+        return skippedChecks.sum();
+    }
+
+    public int getActiveWorkers() {
+        return workers.getActiveCount();
+    }
+
+    /**
+     * 所有数据库监控指标的采集器，每个样本带 database 标签
+     */
+    public MetricsCollector metricsCollector() {
+        return writer -> members.values().forEach(member -> member.monitor.metricsCollector().collect(writer));
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        log.info("启动PostgreSQL集群监控，数据库数: {}", members.size());
+        members.values().forEach(this::schedule);
+    }
+
+    /**
+     * 各周期任务的首次执行随机错开，避免所有数据库在同一时刻集中检查
+     */
+    private void schedule(Member member) {
+        PostgreSQLConsistencyMonitor monitor = member.monitor;
+        member.futures.add(timer.scheduleAtFixedRate(
+                () -> dispatch(member, member.walCheck, monitor::runWALCheck), jitter(60), 60, periodUnit));
+        member.futures.add(timer.scheduleAtFixedRate(
+                () -> dispatch(member, member.statusCheck, monitor::runDatabaseStatusCheck),
+                jitter(300), 300, periodUnit));
+        member.futures.add(timer.scheduleWithFixedDelay(
+                () -> dispatch(member, member.tableDiscovery, monitor::discoverTables),
+                jitter(600), 600, periodUnit));
+        member.futures.add(timer.scheduleWithFixedDelay(
+                () -> dispatchHotTables(member), 5, 5, periodUnit));
+    }
+
+    private static long jitter(long periodSeconds) {
+        return ThreadLocalRandom.current().nextLong(periodSeconds);
+    }
+
+    /**
+     * 只取出当前还有并发余量的数量，其余到期的表留到下一轮
+     */
+    private void dispatchHotTables(Member member) {
+        int available = member.permits.availablePermits();
+        if (available <= 0) {
+            return;
+        }
+        List<HotTableScheduler.TableRef> dueTables = member.monitor.pollDueTables(available);
+        for (HotTableScheduler.TableRef table : dueTables) {
+            dispatch(member, null, () -> member.monitor.runTableStatsCheck(table));
+        }
+    }
+
+    /**
+     * 在定时线程中调用，永不阻塞
+     *
+     * @param inFlight 该种检查的进行中标记，上一轮未结束时跳过本轮；为null时不限制（热点表按表派发，频率由调度器控制）
+     */
+    private void dispatch(Member member, AtomicBoolean inFlight, Runnable check) {
+        if (inFlight != null && !inFlight.compareAndSet(false, true)) {
+            skippedChecks.increment();
+            log.debug("数据库 {} 上一轮同类检查尚未结束，跳过本轮", member.monitor.getName());
+            return;
+        }
+        if (!member.permits.tryAcquire()) {
+            clear(inFlight);
+            skippedChecks.increment();
+            log.debug("数据库 {} 检查并发已达上限，跳过本轮", member.monitor.getName());
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    check.run();
+                } catch (RuntimeException e) {
+                    log.error("数据库 {} 检查异常", member.monitor.getName(), e);
+                } finally {
+                    member.permits.release();
+                    clear(inFlight);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            member.permits.release();
+            clear(inFlight);
+            skippedChecks.increment();
+            log.debug("监控线程池已满，跳过数据库 {} 的本轮检查", member.monitor.getName());
+        }
+    }
+
+    private static void clear(AtomicBoolean inFlight) {
+        if (inFlight != null) {
+            inFlight.set(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        log.info("停止PostgreSQL集群监控...");
+        members.values().forEach(member -> {
+            member.cancel();
+            member.monitor.shutdown();
+        });
+        timer.shutdown();
+        workers.shutdown();
+        try {
+            if (!timer.awaitTermination(10, TimeUnit.SECONDS)) {
+                timer.shutdownNow();
+            }
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("集群监控停止过程中被中断", e);
+        }
+        alertDispatcher.close();
+        log.info("PostgreSQL集群监控已停止");
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Member {
+        private final PostgreSQLConsistencyMonitor monitor;
+        private final Semaphore permits;
+        private final List<ScheduledFuture<?>> futures = new ArrayList<>();
+        // 各周期检查的进行中标记
+        private final AtomicBoolean walCheck = new AtomicBoolean();
+        private final AtomicBoolean statusCheck = new AtomicBoolean();
+        private final AtomicBoolean tableDiscovery = new AtomicBoolean();
+        private final AtomicBoolean blockingChainSampling = new AtomicBoolean();
+
+        Member(PostgreSQLConsistencyMonitor monitor, Semaphore permits) {
+            this.monitor = monitor;
+            this.permits = permits;
+        }
+
+        void cancel() {
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+}
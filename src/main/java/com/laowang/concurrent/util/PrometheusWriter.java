@@ -0,0 +1,79 @@
+package com.laowang.concurrent.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prometheus 文本格式（0.0.4）构建器，同名指标的样本归并到一组 HELP/TYPE 之下
+ */
+public class PrometheusWriter {
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * @param labels 已格式化的标签，如 schema="public",table="orders"；无标签时传 null
+     */
+    public PrometheusWriter gauge(String name, String help, String labels, double value) {
+        return sample(name, "gauge", help, labels, value);
+    }
+
+    public PrometheusWriter counter(String name, String help, String labels, double value) {
+        return sample(name, "counter", help, labels, value);
+    }
+
+    private PrometheusWriter sample(String name, String type, String help, String labels, double value) {
+        Family family = families.computeIfAbsent(name, k -> new Family(type, help));
+        family.samples.append(name);
+        if (labels != null && !labels.isEmpty()) {
+            family.samples.append('{').append(labels).append('}');
+        }
+        family.samples.append(' ').append(formatValue(value)).append('\n');
+        return this;
+    }
+
+    public String render() {
+        StringBuilder out = new StringBuilder(1024);
+        families.forEach((name, family) -> {
+            if (family.help != null) {
+                out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            }
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            out.append(family.samples);
+        });
+        return out.toString();
+    }
+
+    /**
+     * 转义标签值中的反斜杠、双引号和换行
+     */
+    public static String escapeLabelValue(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static final class Family {
+        private final String type;
+        private final String help;
+        private final StringBuilder samples = new StringBuilder();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.laowang.concurrent.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * 预先解析的命名读写锁句柄，由 {@link ReadWriteLockUtils#handle(String)} 获取，说明见 {@link LockHandle}
+ */
+public final class ReadWriteLockHandle {
+
+    private final String name;
+    private final ReadWriteLock lock;
+    private final LockHandle read;
+    private final LockHandle write;
+
+    ReadWriteLockHandle(String name, ReadWriteLock lock) {
+        this.name = name;
+        this.lock = lock;
+        this.read = new LockHandle(name, lock.readLock(), LockTraceListener.Mode.READ);
+        this.write = new LockHandle(name, lock.writeLock(), LockTraceListener.Mode.WRITE);
+    }
+
+    public LockStat readLock() {
+        return read.lock();
+    }
+
+    public LockStat tryReadLock() {
+        return read.tryLock();
+    }
+
+    public LockStat tryReadLock(long timeout, TimeUnit timeUnit) {
+        return read.tryLock(timeout, timeUnit);
+    }
+
+    public LockStat writeLock() {
+        return write.lock();
+    }
+
+    public LockStat tryWriteLock() {
+        return write.tryLock();
+    }
+
+    public LockStat tryWriteLock(long timeout, TimeUnit timeUnit) {
+        return write.tryLock(timeout, timeUnit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    LockHandle read() {
+        return read;
+    }
+
+    LockHandle write() {
+        return write;
+    }
+}
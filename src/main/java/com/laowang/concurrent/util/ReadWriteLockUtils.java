@@ -10,17 +10,19 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class ReadWriteLockUtils {
 
     private static final Map<String, ReadWriteLock> LOCKS = new ConcurrentHashMap<>();
+    private static final Map<String, ReadWriteLockHandle> HANDLES = new ConcurrentHashMap<>();
+    private static final Map<String, Stripes> STRIPES = new ConcurrentHashMap<>();
 
     private static ReadWriteLock getLock(String key) {
-        return LOCKS.computeIfAbsent(key, k -> new ReentrantReadWriteLock());
+        return LOCKS.computeIfAbsent(key, k -> new VersionedReadWriteLock());
     }
 
     private static Lock getReadLock(String key) {
-        return getLock(key).readLock();
+        return LockTracing.trace(getLock(key).readLock(), key, LockTraceListener.Mode.READ);
     }
 
     private static Lock getWriteLock(String key) {
-        return getLock(key).writeLock();
+        return LockTracing.trace(getLock(key).writeLock(), key, LockTraceListener.Mode.WRITE);
     }
 
     public static LockStat tryReadLock(String lockName, long timeout, TimeUnit timeUnit) {
@@ -53,4 +55,215 @@ public class ReadWriteLockUtils {
         return LockUtils.lock(lock);
     }
 
+    /**
+     * 获取可升级的读锁，见 {@link UpgradableLockStat#tryUpgrade()}，与 {@link #readlock(String)} 是同一把锁
+     */
+    public static UpgradableLockStat upgradableReadLock(String lockName) {
+        VersionedReadWriteLock lock = (VersionedReadWriteLock) getLock(lockName);
+        Lock held = LockTracing.trace(lock.readLock(), lockName, LockTraceListener.Mode.READ);
+        held.lock();
+        LockUtils.ACQUIRED.increment();
+        return new UpgradableLockStat(lockName, lock, held, false);
+    }
+
+    /**
+     * 获取可降级的写锁，见 {@link UpgradableLockStat#downgrade()}，与 {@link #writelock(String)} 是同一把锁
+     */
+    public static UpgradableLockStat upgradableWriteLock(String lockName) {
+        VersionedReadWriteLock lock = (VersionedReadWriteLock) getLock(lockName);
+        Lock held = LockTracing.trace(lock.writeLock(), lockName, LockTraceListener.Mode.WRITE);
+        held.lock();
+        LockUtils.ACQUIRED.increment();
+        return new UpgradableLockStat(lockName, lock, held, true);
+    }
+
+    /**
+     * 获取命名读写锁的句柄，热点循环中复用句柄可跳过每次加锁的注册表查询，与按名称加锁是同一把锁
+     */
+    public static ReadWriteLockHandle handle(String lockName) {
+        return HANDLES.computeIfAbsent(lockName, k -> new ReadWriteLockHandle(k, getLock(k)));
+    }
+
+    /**
+     * 按 long 键加读锁，加锁路径上没有对象分配，见 {@link ReentrantLockUtils#lock(String, long)}。
+     * 不同的键可能共用一把读写锁，持有读锁时不要获取同一命名空间的写锁：落在同一条带上时会自死锁，
+     * 这种情况下写锁方法（含 {@link #writelockAll}）直接抛出 IllegalStateException 而不是永久阻塞；
+     * 同时持有多个键的写锁时使用 {@link #writelockAll}
+     */
+    public static LockStat readlock(String namespace, long key) {
+        return getStripes(namespace).read.lock(key);
+    }
+
+    public static LockStat tryReadLock(String namespace, long key) {
+        return getStripes(namespace).read.tryLock(key);
+    }
+
+    public static LockStat tryReadLock(String namespace, long key, long timeout, TimeUnit timeUnit) {
+        return getStripes(namespace).read.tryLock(key, timeout, timeUnit);
+    }
+
+    public static LockStat writelock(String namespace, long key) {
+        return getStripes(namespace).write.lock(key);
+    }
+
+    public static LockStat tryWriteLock(String namespace, long key) {
+        return getStripes(namespace).write.tryLock(key);
+    }
+
+    public static LockStat tryWriteLock(String namespace, long key, long timeout, TimeUnit timeUnit) {
+        return getStripes(namespace).write.tryLock(key, timeout, timeUnit);
+    }
+
+    /**
+     * 同时获取多个键的读锁，按条带顺序加锁并去重，见 {@link ReentrantLockUtils#lockAll}
+     */
+    public static MultiLockStat readlockAll(String namespace, long... keys) {
+        return getStripes(namespace).read.lockAll(keys);
+    }
+
+    /**
+     * 同时获取多个键的写锁，按条带顺序加锁并去重，见 {@link ReentrantLockUtils#lockAll}
+     */
+    public static MultiLockStat writelockAll(String namespace, long... keys) {
+        return getStripes(namespace).write.lockAll(keys);
+    }
+
+    private static Stripes getStripes(String namespace) {
+        Stripes stripes = STRIPES.get(namespace);
+        if (stripes == null) {
+            stripes = STRIPES.computeIfAbsent(namespace, Stripes::new);
+        }
+        return stripes;
+    }
+
+    static int lockCount() {
+        return LOCKS.size();
+    }
+
+    /**
+     * 当前持有读锁的次数总和（含 long 键的锁条带），只用于指标采集
+     */
+    static int readHolds() {
+        int reads = 0;
+        for (ReadWriteLock lock : LOCKS.values()) {
+            if (lock instanceof ReentrantReadWriteLock) {
+                reads += ((ReentrantReadWriteLock) lock).getReadLockCount();
+            }
+        }
+        for (Stripes stripes : STRIPES.values()) {
+            for (ReentrantReadWriteLock lock : stripes.locks) {
+                reads += lock.getReadLockCount();
+            }
+        }
+        return reads;
+    }
+
+    /**
+     * 当前被写锁持有的命名锁数量（每个被持有的 long 键条带计为一把），只用于指标采集
+     */
+    static int writeHeldCount() {
+        int held = 0;
+        for (ReadWriteLock lock : LOCKS.values()) {
+            if (lock instanceof ReentrantReadWriteLock && ((ReentrantReadWriteLock) lock).isWriteLocked()) {
+                held++;
+            }
+        }
+        for (Stripes stripes : STRIPES.values()) {
+            for (ReentrantReadWriteLock lock : stripes.locks) {
+                if (lock.isWriteLocked()) {
+                    held++;
+                }
+            }
+        }
+        return held;
+    }
+
+    static int queuedThreads() {
+        int queued = 0;
+        for (ReadWriteLock lock : LOCKS.values()) {
+            if (lock instanceof ReentrantReadWriteLock) {
+                queued += ((ReentrantReadWriteLock) lock).getQueueLength();
+            }
+        }
+        for (Stripes stripes : STRIPES.values()) {
+            for (ReentrantReadWriteLock lock : stripes.locks) {
+                queued += lock.getQueueLength();
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * 一个命名空间的读、写两组条带，共用同一批读写锁
+     */
+    private static final class Stripes {
+        private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[ReentrantLockUtils.STRIPE_COUNT];
+        private final LockStripes read;
+        private final LockStripes write;
+
+        Stripes(String namespace) {
+            LockHandle[] reads = new LockHandle[locks.length];
+            LockHandle[] writes = new LockHandle[locks.length];
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new StripeReadWriteLock(namespace);
+                ReadWriteLockHandle handle = new ReadWriteLockHandle(namespace, locks[i]);
+                reads[i] = handle.read();
+                writes[i] = handle.write();
+            }
+            this.read = new LockStripes(reads);
+            this.write = new LockStripes(writes);
+        }
+    }
+
+    /**
+     * 条带读写锁：当前线程持有同一条带的读锁时，阻塞获取写锁会永远等待自己，改为直接抛出异常
+     */
+    private static final class StripeReadWriteLock extends ReentrantReadWriteLock {
+        private final String namespace;
+        private final WriteLock writeLock = new GuardedWriteLock(this);
+
+        StripeReadWriteLock(String namespace) {
+            this.namespace = namespace;
+        }
+
+        @Override
+        public WriteLock writeLock() {
+            return writeLock;
+        }
+
+        private void checkNoReadHold() {
+            if (getReadHoldCount() > 0 && !isWriteLockedByCurrentThread()) {
+                throw new IllegalStateException("当前线程持有命名空间 " + namespace
+                        + " 中同一条带的读锁，获取写锁会自死锁；先释放读锁，或改用按名称的读写锁");
+            }
+        }
+
+        private static final class GuardedWriteLock extends WriteLock {
+            private final StripeReadWriteLock lock;
+
+            GuardedWriteLock(StripeReadWriteLock lock) {
+                super(lock);
+                this.lock = lock;
+            }
+
+            @Override
+            public void lock() {
+                lock.checkNoReadHold();
+                super.lock();
+            }
+
+            @Override
+            public void lockInterruptibly() throws InterruptedException {
+                lock.checkNoReadHold();
+                super.lockInterruptibly();
+            }
+
+            @Override
+            public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+                lock.checkNoReadHold();
+                return super.tryLock(timeout, unit);
+            }
+        }
+    }
+
 }
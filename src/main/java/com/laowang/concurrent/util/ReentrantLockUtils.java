@@ -9,23 +9,121 @@ import java.util.concurrent.locks.ReentrantLock;
 public class ReentrantLockUtils {
 
     private static final Map<String, Lock> LOCKS = new ConcurrentHashMap<>();
+    private static final Map<String, LockHandle> HANDLES = new ConcurrentHashMap<>();
+    private static final Map<String, LockStripes> STRIPES = new ConcurrentHashMap<>();
+    /**
+     * 每个命名空间的锁条带数
+     */
+    static final int STRIPE_COUNT = 1024;
 
     private static Lock getLock(String key) {
         return LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
     }
 
     public static LockStat tryLock(String lockName, long timeout, TimeUnit timeUnit) {
-        Lock lock = getLock(lockName);
+        Lock lock = LockTracing.trace(getLock(lockName), lockName, LockTraceListener.Mode.EXCLUSIVE);
         return LockUtils.tryLock(lock, timeout, timeUnit);
     }
 
     public static LockStat tryLock(String lockName) {
-        Lock lock = getLock(lockName);
+        Lock lock = LockTracing.trace(getLock(lockName), lockName, LockTraceListener.Mode.EXCLUSIVE);
         return LockUtils.tryLock(lock);
     }
 
     public static LockStat lock(String lockName) {
-        Lock lock = getLock(lockName);
+        Lock lock = LockTracing.trace(getLock(lockName), lockName, LockTraceListener.Mode.EXCLUSIVE);
         return LockUtils.lock(lock);
     }
+
+    /**
+     * 获取命名锁的句柄，热点循环中复用句柄可跳过每次加锁的注册表查询，与 {@link #lock(String)} 是同一把锁
+     */
+    public static LockHandle handle(String lockName) {
+        return HANDLES.computeIfAbsent(lockName, k -> new LockHandle(k, getLock(k)));
+    }
+
+    /**
+     * 按 long 键加锁，替代 lock("order:" + id) 这类拼接锁名的写法，加锁路径上没有对象分配。
+     * 键映射到命名空间内固定数量的锁条带上，不同的键偶尔会共用一把锁；与同名的 String 锁互不相关。
+     * 因为共用条带，在同一命名空间内逐个嵌套加锁多个键可能死锁，需要同时持有多个键时使用 {@link #lockAll}
+     *
+     * @param namespace 命名空间，应为常量，如 "order"
+     */
+    public static LockStat lock(String namespace, long key) {
+        return getStripes(namespace).lock(key);
+    }
+
+    /**
+     * 同时锁住命名空间内的多个键，如转账的两个账户：按条带顺序加锁并去重，任意线程以任意键顺序调用都不会相互死锁
+     * <pre>
+     * try (MultiLockStat ignored = ReentrantLockUtils.lockAll("account", fromId, toId)) { ... }
+     * </pre>
+     */
+    public static MultiLockStat lockAll(String namespace, long... keys) {
+        return getStripes(namespace).lockAll(keys);
+    }
+
+    public static LockStat tryLock(String namespace, long key) {
+        return getStripes(namespace).tryLock(key);
+    }
+
+    public static LockStat tryLock(String namespace, long key, long timeout, TimeUnit timeUnit) {
+        return getStripes(namespace).tryLock(key, timeout, timeUnit);
+    }
+
+    private static LockStripes getStripes(String namespace) {
+        LockStripes stripes = STRIPES.get(namespace);
+        if (stripes == null) {
+            stripes = STRIPES.computeIfAbsent(namespace, k -> {
+                LockHandle[] handles = new LockHandle[STRIPE_COUNT];
+                for (int i = 0; i < handles.length; i++) {
+                    handles[i] = new LockHandle(k, new ReentrantLock());
+                }
+                return new LockStripes(handles);
+            });
+        }
+        return stripes;
+    }
+
+    static int lockCount() {
+        return LOCKS.size();
+    }
+
+    /**
+     * 当前被持有的命名锁数量（每个被持有的 long 键条带计为一把），遍历整个注册表，只用于指标采集
+     */
+    static int heldCount() {
+        int held = 0;
+        for (Lock lock : LOCKS.values()) {
+            if (lock instanceof ReentrantLock && ((ReentrantLock) lock).isLocked()) {
+                held++;
+            }
+        }
+        for (LockStripes stripes : STRIPES.values()) {
+            for (int i = 0; i < stripes.size(); i++) {
+                if (((ReentrantLock) stripes.lockAt(i)).isLocked()) {
+                    held++;
+                }
+            }
+        }
+        return held;
+    }
+
+    /**
+     * 正在等待命名锁的线程数（估计值），只用于指标采集
+     */
+    static int queuedThreads() {
+        int queued = 0;
+        for (Lock lock : LOCKS.values()) {
+            if (lock instanceof ReentrantLock) {
+                queued += ((ReentrantLock) lock).getQueueLength();
+            }
+        }
+        for (LockStripes stripes : STRIPES.values()) {
+            for (int i = 0; i < stripes.size(); i++) {
+                queued += ((ReentrantLock) stripes.lockAt(i)).getQueueLength();
+            }
+        }
+        return queued;
+    }
 }
@@ -2,24 +2,49 @@ package com.laowang.concurrent.util;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 public class SemaphoreUtils {
 
     private static final ThreadLocal<List<TaskInfo>> THREADLOCAL = ThreadLocal.withInitial(LinkedList::new);
 
+    // 全局计数，供 ConcurrencyMetricsCollector 导出
+    static final LongAdder TASKS = new LongAdder();
+    static final LongAdder RUNNING = new LongAdder();
+
     public static void submitTask(Executor executor, Runnable after) {
-        THREADLOCAL.get().add(new TaskInfo(executor, new Runnable[]{null, after}));
+        submitTask(executor, 1, null, after);
     }
 
     public static void submitTask(Executor executor, Runnable before, Runnable after) {
-        THREADLOCAL.get().add(new TaskInfo(executor, new Runnable[]{before, after}));
+        submitTask(executor, 1, before, after);
+    }
+
+    /**
+     * 按权重占用许可，例如按数据量估算的导出任务；权重超过 start 的许可总数时按许可总数计算
+     */
+    public static void submitTask(Executor executor, int weight, Runnable after) {
+        submitTask(executor, weight, null, after);
+    }
+
+    public static void submitTask(Executor executor, int weight, Runnable before, Runnable after) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight必须大于0: " + weight);
+        }
+        THREADLOCAL.get().add(new TaskInfo(executor, weight, new Runnable[]{before, after}));
     }
 
     private static List<TaskInfo> popTask() {
@@ -28,42 +53,131 @@ public class SemaphoreUtils {
         return taskInfos;
     }
 
-    public static void start(int maxSemaphore) {
+    /**
+     * 启动已提交的任务，同时占用的许可不超过 maxSemaphore
+     * <p>
+     * 许可按等待顺序公平分配：权重大的任务排队后，之后提交的小任务不会插队，不会被源源不断的小任务饿死
+     *
+     * @return 所有任务结束后完成，结果按提交顺序给出每个任务的执行情况；任务异常不会使其异常完成
+     */
+    public static CompletableFuture<List<TaskOutcome>> start(int maxSemaphore) {
         List<TaskInfo> taskInfos = popTask();
         if (taskInfos.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(List.of());
         }
 
-        Semaphore semaphore = new Semaphore(maxSemaphore);
+        TASKS.add(taskInfos.size());
+        Semaphore semaphore = new Semaphore(maxSemaphore, true);
+        TaskOutcome[] outcomes = new TaskOutcome[taskInfos.size()];
+        AtomicInteger remaining = new AtomicInteger(outcomes.length);
+        CompletableFuture<List<TaskOutcome>> future = new CompletableFuture<>();
+
+        int index = 0;
         for (TaskInfo taskInfo : taskInfos) {
-            Executor executor = taskInfo.executor;
+            TaskOutcome outcome = new TaskOutcome(index, Math.min(taskInfo.weight, Math.max(1, maxSemaphore)));
+            outcomes[index++] = outcome;
             Runnable before = taskInfo.runnables[0];
             Runnable after = taskInfo.runnables[1];
 
-            executor.execute(() -> {
-                try {
-                    if (before != null) {
-                        before.run();
-                    }
-                    semaphore.acquire();
-                    if (after != null) {
-                        after.run();
+            try {
+                taskInfo.executor.execute(() -> {
+                    try {
+                        run(semaphore, outcome, before, after);
+                    } finally {
+                        complete(remaining, outcomes, future);
                     }
-                } catch (InterruptedException e) {
-                    log.info(" ", e);
-                } finally {
-                    semaphore.release();
-                }
-            });
+                });
+            } catch (RejectedExecutionException e) {
+                outcome.error = e;
+                complete(remaining, outcomes, future);
+            }
+        }
+        return future;
+    }
+
+    private static void run(Semaphore semaphore, TaskOutcome outcome, Runnable before, Runnable after) {
+        long submitted = System.nanoTime();
+        try {
+            if (before != null) {
+                before.run();
+            }
+            semaphore.acquire(outcome.weight);
+        } catch (InterruptedException e) {
+            // 未获得许可，不能释放
+            Thread.currentThread().interrupt();
+            outcome.error = e;
+            log.info("等待许可时被中断", e);
+            return;
+        } catch (RuntimeException e) {
+            outcome.error = e;
+            log.error("任务前置步骤执行失败", e);
+            return;
         }
 
+        long acquired = System.nanoTime();
+        outcome.waitNanos = acquired - submitted;
+        RUNNING.increment();
+        try {
+            if (after != null) {
+                after.run();
+            }
+            outcome.success = true;
+        } catch (RuntimeException e) {
+            outcome.error = e;
+            log.error("任务执行失败", e);
+        } finally {
+            outcome.runNanos = System.nanoTime() - acquired;
+            RUNNING.decrement();
+            semaphore.release(outcome.weight);
+        }
+    }
+
+    private static void complete(AtomicInteger remaining, TaskOutcome[] outcomes,
+                                 CompletableFuture<List<TaskOutcome>> future) {
+        // 各任务对 outcome 的写入先于计数递减，最后一个递减到0的线程能看到全部结果
+        if (remaining.decrementAndGet() == 0) {
+            future.complete(Arrays.asList(outcomes));
+        }
     }
 
     @AllArgsConstructor
     @Data
     private static class TaskInfo {
         private Executor executor;
+        private int weight;
         private Runnable[] runnables;
     }
 
+    /**
+     * 单个任务的执行情况
+     */
+    @Getter
+    public static final class TaskOutcome {
+        /**
+         * 提交顺序，从0开始
+         */
+        private final int index;
+        /**
+         * 实际占用的许可数
+         */
+        private final int weight;
+        private boolean success;
+        private Throwable error;
+        private long waitNanos;
+        private long runNanos;
+
+        TaskOutcome(int index, int weight) {
+            this.index = index;
+            this.weight = weight;
+        }
+
+        public long getWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        }
+
+        public long getRunMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(runNanos);
+        }
+    }
+
 }
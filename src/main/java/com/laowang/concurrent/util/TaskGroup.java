@@ -0,0 +1,398 @@
+package com.laowang.concurrent.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 显式的任务组，提供与 {@link LatchUtils} 相同的 submitTask / waitFor 用法
+ * <p>
+ * 任务保存在预分配的数组中，不依赖 ThreadLocal，嵌套的并行调用各自持有自己的 TaskGroup，互不干扰；
+ * waitFor 派发后即清空，同一个实例可以在热点路径上反复使用。任务数组与每轮的执行状态在两轮之间交替复用，
+ * 上一轮的任务全部结束后，稳态下提交、派发和等待都不分配对象（超时仍在运行的一轮不复用，改为新建）。
+ * submitTask 与 waitFor 之间发生异常时，调用 {@link #reset()} 丢弃尚未派发的任务。
+ * <p>
+ * {@link #waitForOrCancel} 在超时后取消仍未完成的任务：尚未开始的任务不再执行，正在执行的任务收到
+ * {@link CancellationToken} 取消标记并被中断，被取消任务的下标可通过 {@link #getCancelledTasks()} 获取。
+ * {@link #waitForFailFast} 在此基础上，任一任务抛出异常时立即结束等待、取消其余任务并抛出 {@link TaskGroupException}。
+ * <p>
+ * 非线程安全，应由发起并行调用的线程独占使用。
+ * <pre>
+ * TaskGroup group = new TaskGroup(3);
+ * group.submitTask(executor, () -> loadUser(id));
+ * group.submitTask(executor, token -> loadOrders(id, token));
+ * boolean success = group.waitForOrCancel(5L, TimeUnit.SECONDS);
+ * </pre>
+ */
+public class TaskGroup {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * 正在接收 submitTask 的一轮
+     */
+    private Round current;
+    /**
+     * 上一次派发的一轮，其任务全部结束后作为下一次的接收缓冲
+     */
+    private Round spare;
+    private List<Integer> cancelledTasks = List.of();
+
+    public TaskGroup() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 预估任务数，超出后自动扩容
+     */
+    public TaskGroup(int capacity) {
+        this.current = new Round(Math.max(1, capacity));
+    }
+
+    public void submitTask(Executor executor, Runnable runnable) {
+        current.add(executor, runnable);
+    }
+
+    public void submitTask(Executor executor, CancellableTask task) {
+        current.add(executor, task);
+    }
+
+    /**
+     * 尚未派发的任务数
+     */
+    public int size() {
+        return current.size;
+    }
+
+    /**
+     * 派发所有已提交的任务并等待完成，返回后任务组已清空，可继续提交下一批；超时后任务继续在后台执行
+     *
+     * @param timeUnit 为null时按秒计算
+     * @return 所有任务在超时时间内完成返回true，超时或等待被中断返回false
+     */
+    public boolean waitFor(long timeout, TimeUnit timeUnit) {
+        return await(timeout, timeUnit, false, false);
+    }
+
+    /**
+     * 同 {@link #waitFor}，但超时或等待被中断时取消所有未完成的任务，让出执行线程和下游连接
+     */
+    public boolean waitForOrCancel(long timeout, TimeUnit timeUnit) {
+        return await(timeout, timeUnit, true, false);
+    }
+
+    /**
+     * 全部成功才有意义的并行调用：任一任务抛出异常时不再等待其余任务，取消它们并抛出异常；超时同样取消
+     *
+     * @throws TaskGroupException 第一个失败的任务，getTaskIndex() 为其下标
+     */
+    public boolean waitForFailFast(long timeout, TimeUnit timeUnit) {
+        return await(timeout, timeUnit, true, true);
+    }
+
+    /**
+     * 最近一次 waitForOrCancel / waitForFailFast 中被取消的任务下标（按提交顺序，从0开始）
+     */
+    public List<Integer> getCancelledTasks() {
+        return cancelledTasks;
+    }
+
+    /**
+     * 等待最近一次派发的任务全部退出。取消只是发出取消标记和中断，被取消的任务可能还在运行；
+     * 需要保证它们不与后续工作重叠时（如限制并发的分批查询）在 waitForOrCancel 超时后调用
+     *
+     * @return 超时前全部退出返回 true
+     */
+    public boolean awaitTermination(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        Round round = spare;
+        return round == null || round.awaitIdle(timeUnit.toNanos(timeout));
+    }
+
+    /**
+     * 丢弃尚未派发的任务，保留已分配的数组
+     */
+    public void reset() {
+        current.clear();
+    }
+
+    private boolean await(long timeout, TimeUnit timeUnit, boolean cancelOnTimeout, boolean failFast) {
+        cancelledTasks = List.of();
+        Round round = current;
+        int count = round.size;
+        if (count == 0) {
+            return true;
+        }
+        LatchUtils.WAITS.increment();
+        LatchUtils.TASKS.add(count);
+        // 先换上新的接收缓冲再派发：任务在调用线程上执行（CallerRunsPolicy、同步执行器）并再次使用
+        // 同一个任务组（如通过 LatchUtils 嵌套调用）时，只会看到它自己提交的任务
+        current = takeSpare(round.capacity());
+        round.dispatch(failFast);
+
+        boolean await = false;
+        try {
+            await = round.await(timeUnit == null ? TimeUnit.SECONDS.toNanos(timeout) : timeUnit.toNanos(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spare = round;
+        TaskGroupException failure = round.failure.get();
+        if (failure != null) {
+            cancelledTasks = round.cancel();
+            LatchUtils.CANCELLED.add(cancelledTasks.size());
+            throw failure;
+        }
+        if (!await) {
+            LatchUtils.TIMEOUTS.increment();
+            if (cancelOnTimeout) {
+                cancelledTasks = round.cancel();
+                LatchUtils.CANCELLED.add(cancelledTasks.size());
+            }
+        }
+        return await;
+    }
+
+    /**
+     * 上一轮的任务都已结束时复用它，否则（超时后仍在运行、嵌套调用正在使用）新建
+     */
+    private Round takeSpare(int capacity) {
+        Round round = spare;
+        spare = null;
+        return round != null && round.isIdle() ? round : new Round(capacity);
+    }
+
+    /**
+     * 一轮派发的任务及其执行状态，超时后仍在运行的任务只会看到属于自己这一轮的取消标记；
+     * 所有任务结束（active 归零）后才会被任务组复用
+     */
+    private static final class Round {
+
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int CANCELLING = 3;
+        private static final int CANCELLED = 4;
+
+        private Executor[] executors;
+        /**
+         * Runnable 或 CancellableTask，提交时不包装
+         */
+        private Object[] tasks;
+        /**
+         * 每个下标一个可复用的派发对象，代替每次派发新建的 lambda
+         */
+        private Slot[] slots;
+        private AtomicIntegerArray states;
+        private AtomicReferenceArray<Thread> runners;
+        private int size;
+        /**
+         * 最近一次派发的任务数
+         */
+        private int dispatched;
+
+        private CancellationToken token = new CancellationToken();
+        private boolean failFast;
+        private final AtomicReference<TaskGroupException> failure = new AtomicReference<>();
+        /**
+         * 等待方尚未看到完成的任务数，快速失败时直接置0唤醒等待方
+         */
+        private final AtomicInteger remaining = new AtomicInteger();
+        /**
+         * 尚未退出 run 的任务数，包括已取消但还未被执行器调度的任务
+         */
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile Thread waiter;
+
+        Round(int capacity) {
+            this.executors = new Executor[capacity];
+            this.tasks = new Object[capacity];
+            this.slots = new Slot[capacity];
+            this.states = new AtomicIntegerArray(capacity);
+            this.runners = new AtomicReferenceArray<>(capacity);
+        }
+
+        int capacity() {
+            return tasks.length;
+        }
+
+        boolean isIdle() {
+            return active.get() == 0;
+        }
+
+        void add(Executor executor, Object task) {
+            if (size == tasks.length) {
+                int newCapacity = size + (size >> 1) + 1;
+                executors = Arrays.copyOf(executors, newCapacity);
+                tasks = Arrays.copyOf(tasks, newCapacity);
+                slots = Arrays.copyOf(slots, newCapacity);
+                states = new AtomicIntegerArray(newCapacity);
+                runners = new AtomicReferenceArray<>(newCapacity);
+            }
+            executors[size] = executor;
+            tasks[size] = task;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(executors, 0, size, null);
+            Arrays.fill(tasks, 0, size, null);
+            size = 0;
+        }
+
+        void dispatch(boolean failFast) {
+            int count = size;
+            size = 0;
+            dispatched = count;
+            this.failFast = failFast;
+            failure.set(null);
+            if (token.isCancelled()) {
+                // 取消只发生在异常路径上，标记不可复位，换一个新的
+                token = new CancellationToken();
+            }
+            for (int i = 0; i < count; i++) {
+                states.set(i, PENDING);
+            }
+            waiter = Thread.currentThread();
+            remaining.set(count);
+            active.set(count);
+            for (int i = 0; i < count; i++) {
+                Slot slot = slots[i];
+                if (slot == null) {
+                    slot = slots[i] = new Slot(this, i);
+                }
+                Executor executor = executors[i];
+                executors[i] = null;
+                executor.execute(slot);
+            }
+        }
+
+        boolean await(long nanos) throws InterruptedException {
+            long deadline = System.nanoTime() + nanos;
+            while (remaining.get() > 0) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, left);
+            }
+            return true;
+        }
+
+        boolean awaitIdle(long nanos) throws InterruptedException {
+            long deadline = System.nanoTime() + nanos;
+            waiter = Thread.currentThread();
+            while (active.get() > 0) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, left);
+            }
+            return true;
+        }
+
+        void run(int index) {
+            try {
+                Object task = tasks[index];
+                tasks[index] = null;
+                runners.set(index, Thread.currentThread());
+                if (!states.compareAndSet(index, PENDING, RUNNING)) {
+                    // 开始前已被取消
+                    return;
+                }
+                Throwable error = null;
+                try {
+                    if (task instanceof CancellableTask cancellable) {
+                        cancellable.run(token);
+                    } else {
+                        ((Runnable) task).run();
+                    }
+                } catch (RuntimeException | Error e) {
+                    error = e;
+                } finally {
+                    if (!states.compareAndSet(index, RUNNING, DONE)) {
+                        // 已被取消：等取消方发出中断后再清除中断标记，避免影响线程池中的下一个任务
+                        while (states.get(index) == CANCELLING) {
+                            Thread.onSpinWait();
+                        }
+                        Thread.interrupted();
+                    }
+                }
+                if (error != null) {
+                    fail(index, error);
+                }
+            } finally {
+                runners.set(index, null);
+                if (remaining.decrementAndGet() == 0) {
+                    LockSupport.unpark(waiter);
+                }
+                if (active.decrementAndGet() == 0) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+
+        private void fail(int index, Throwable error) {
+            if (!failFast) {
+                if (error instanceof Error e) {
+                    throw e;
+                }
+                throw (RuntimeException) error;
+            }
+            if (failure.compareAndSet(null, new TaskGroupException(index, error))) {
+                // 唤醒等待方，其余任务由等待方取消
+                remaining.set(0);
+                LockSupport.unpark(waiter);
+            }
+        }
+
+        List<Integer> cancel() {
+            token.cancel();
+            List<Integer> cancelled = new ArrayList<>();
+            for (int i = 0; i < dispatched; i++) {
+                if (states.compareAndSet(i, PENDING, CANCELLED)) {
+                    cancelled.add(i);
+                } else if (states.compareAndSet(i, RUNNING, CANCELLING)) {
+                    Thread runner = runners.get(i);
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                    states.set(i, CANCELLED);
+                    cancelled.add(i);
+                }
+            }
+            return List.copyOf(cancelled);
+        }
+    }
+
+    /**
+     * 固定绑定一轮中某个下标的派发对象，随 Round 一起复用
+     */
+    private static final class Slot implements Runnable {
+        private final Round round;
+        private final int index;
+
+        Slot(Round round, int index) {
+            this.round = round;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            round.run(index);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.laowang.concurrent.util;
+
+/**
+ * 快速失败模式下第一个抛出异常的任务，原始异常作为 cause
+ */
+public class TaskGroupException extends RuntimeException {
+
+    private final int taskIndex;
+
+    public TaskGroupException(int taskIndex, Throwable cause) {
+        super("第 " + taskIndex + " 个任务执行失败: " + cause, cause);
+        this.taskIndex = taskIndex;
+    }
+
+    /**
+     * 失败任务的下标（按提交顺序，从0开始）
+     */
+    public int getTaskIndex() {
+        return taskIndex;
+    }
+}
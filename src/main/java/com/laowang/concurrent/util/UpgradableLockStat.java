@@ -0,0 +1,145 @@
+package com.laowang.concurrent.util;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 可在读锁与写锁之间切换的锁状态，由 {@link ReadWriteLockUtils#upgradableReadLock(String)} 等方法获取
+ * <p>
+ * 先检查后更新的典型写法：持读锁检查，需要修改时 {@link #tryUpgrade()}，修改完成后 {@link #downgrade()} 继续读，
+ * 只有修改本身在写锁内，其余时间读者可以并发。
+ * <pre>
+ * try (UpgradableLockStat stat = ReadWriteLockUtils.upgradableReadLock("config")) {
+ *     while (needsUpdate()) {
+ *         if (stat.tryUpgrade()) {
+ *             update();
+ *             stat.downgrade();
+ *             break;
+ *         }
+ *         if (!stat.isLocked()) {
+ *             // 读锁被其他写者取走，放弃或重新获取
+ *             break;
+ *         }
+ *         // 升级失败：已重新持有读锁，期间可能有其他写入，重新检查
+ *     }
+ * }
+ * </pre>
+ * 与 LockStat 一样只能在获取它的线程上使用。
+ */
+public class UpgradableLockStat extends LockStat {
+
+    private final String name;
+    private final VersionedReadWriteLock lock;
+    /**
+     * 当前持有模式的加锁对象，开启轨迹采集时为计时包装，释放必须经过它
+     */
+    private Lock held;
+    private boolean write;
+    private boolean locked;
+
+    UpgradableLockStat(String name, VersionedReadWriteLock lock, Lock held, boolean write) {
+        super(write ? lock.writeLock() : lock.readLock(), true);
+        this.name = name;
+        this.lock = lock;
+        this.held = held;
+        this.write = write;
+        this.locked = true;
+    }
+
+    /**
+     * 写锁原子地降级为读锁：先获取读锁再释放写锁，期间其他写者无法插入
+     *
+     * @throws IllegalStateException 当前不持有写锁
+     */
+    public UpgradableLockStat downgrade() {
+        if (!locked || !write) {
+            throw new IllegalStateException("当前不持有写锁，无法降级");
+        }
+        Lock read = readLock();
+        read.lock();
+        held.unlock();
+        held = read;
+        write = false;
+        return this;
+    }
+
+    /**
+     * 尝试把读锁升级为写锁，任何情况下都不会阻塞等待其他读者或写者
+     * <p>
+     * 读写锁不支持原地升级，这里先释放读锁再立即尝试写锁，并用写入版本号确认期间没有其他写入：
+     * <ul>
+     *     <li>成功：持有写锁，读锁期间看到的数据仍然有效</li>
+     *     <li>失败：用 tryLock 立即重新获取读锁（不排在等待的写者之后）并返回false，期间可能有其他写入，调用方应重新检查</li>
+     *     <li>失败且读锁已被其他写者取走：返回false，此后不再持有任何锁，{@link #isLocked()} 为false，close 不做任何事</li>
+     * </ul>
+     * 当前线程对同一把锁有重入的读锁时无法释放，直接返回false且不改变持有状态。
+     *
+     * @throws IllegalStateException 当前不持有读锁
+     */
+    public boolean tryUpgrade() {
+        if (!locked || write) {
+            throw new IllegalStateException("当前不持有读锁，无法升级");
+        }
+        if (lock.getReadHoldCount() != 1) {
+            return false;
+        }
+        long version = lock.getVersion();
+        held.unlock();
+        Lock writeLock = LockTracing.trace(lock.writeLock(), name, LockTraceListener.Mode.WRITE);
+        if (!writeLock.tryLock()) {
+            LockUtils.TRY_FAILED.increment();
+            reacquireRead();
+            return false;
+        }
+        if (lock.getVersion() != version) {
+            // 其他写者在读锁释放后抢先完成了写入，降级回读锁，本次未修改不递增版本号；
+            // 持有写锁时获取读锁总能立即成功。这次写锁绕过计时包装直接释放，轨迹中不记录
+            reacquireRead();
+            lock.unlockWriteUnmodified();
+            return false;
+        }
+        LockUtils.ACQUIRED.increment();
+        held = writeLock;
+        write = true;
+        return true;
+    }
+
+    public boolean isWriteLocked() {
+        return locked && write;
+    }
+
+    @Override
+    public Lock getLock() {
+        return write ? lock.writeLock() : lock.readLock();
+    }
+
+    @Override
+    public boolean isLocked() {
+        return locked;
+    }
+
+    @Override
+    public void close() {
+        if (locked) {
+            locked = false;
+            held.unlock();
+        }
+    }
+
+    /**
+     * 非公平读写锁的 tryLock 不排在等待的写者之后，只在写锁已被其他线程持有时失败
+     */
+    private void reacquireRead() {
+        Lock read = readLock();
+        if (read.tryLock()) {
+            held = read;
+        } else {
+            LockUtils.TRY_FAILED.increment();
+            held = null;
+            locked = false;
+        }
+    }
+
+    private Lock readLock() {
+        return LockTracing.trace(lock.readLock(), name, LockTraceListener.Mode.READ);
+    }
+}
@@ -0,0 +1,59 @@
+package com.laowang.concurrent.util;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 记录写入次数的可重入读写锁，供 {@link UpgradableLockStat#tryUpgrade()} 判断读锁释放期间是否有其他写入
+ * <p>
+ * 版本号在最外层写锁释放时递增，只由持有写锁的线程修改。{@link ReadWriteLockUtils} 的命名读写锁均为此类型。
+ */
+public class VersionedReadWriteLock extends ReentrantReadWriteLock {
+
+    private final VersionedWriteLock writeLock;
+    private volatile long version;
+
+    public VersionedReadWriteLock() {
+        this.writeLock = new VersionedWriteLock(this);
+    }
+
+    @Override
+    public WriteLock writeLock() {
+        return writeLock;
+    }
+
+    /**
+     * 已完成的写入次数（最外层写锁释放次数）
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 释放写锁但不递增版本号，只用于未做任何修改就放弃的写锁
+     */
+    void unlockWriteUnmodified() {
+        writeLock.unlockUnmodified();
+    }
+
+    private static final class VersionedWriteLock extends WriteLock {
+
+        private final VersionedReadWriteLock owner;
+
+        VersionedWriteLock(VersionedReadWriteLock owner) {
+            super(owner);
+            this.owner = owner;
+        }
+
+        @Override
+        public void unlock() {
+            if (owner.getWriteHoldCount() == 1) {
+                owner.version++;
+            }
+            super.unlock();
+        }
+
+        void unlockUnmodified() {
+            super.unlock();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.laowang.concurrent.util;
+
+import lombok.Getter;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * 读多写少数据的版本化持有者（RCU 风格），通过 {@link VersionedValueUtils#value(String)} 获取
+ * <p>
+ * 读取只是一次 volatile 读，不加任何锁；写入在同名的 {@link ReadWriteLockUtils} 写锁下串行执行，
+ * 生成新的不可变版本后整体替换。发布后的对象不能再修改，否则读者会看到修改过程中的中间状态。
+ * 实例可以缓存在字段中，省去每次读取时的注册表查找。
+ * <p>
+ * 读锁不能升级为写锁：当前线程持有同名读锁（且未持有写锁）时调用 {@link #update}/{@link #publish}
+ * 会永久等待自己，因此直接抛出 IllegalStateException。先读后改不需要额外加读锁，在 updater 中基于传入的当前值计算即可。
+ */
+public final class VersionedValue<T> {
+
+    private final String name;
+    private final ReadWriteLockHandle handle;
+    private volatile Snapshot<T> current = new Snapshot<>(0, null);
+
+    VersionedValue(String name) {
+        this.name = name;
+        this.handle = ReadWriteLockUtils.handle(name);
+    }
+
+    /**
+     * 当前版本的快照，版本号与值一致
+     */
+    public Snapshot<T> snapshot() {
+        return current;
+    }
+
+    public T get() {
+        return current.value;
+    }
+
+    public long version() {
+        return current.version;
+    }
+
+    /**
+     * 发布新值，返回新版本的快照
+     */
+    public Snapshot<T> publish(T value) {
+        return update(previous -> value);
+    }
+
+    /**
+     * 基于当前值生成新值并发布；updater 必须返回新对象而不是修改传入的对象
+     *
+     * @throws IllegalStateException 当前线程持有同名读锁
+     */
+    public Snapshot<T> update(UnaryOperator<T> updater) {
+        ReentrantReadWriteLock rw = (ReentrantReadWriteLock) handle.getLock();
+        if (rw.getReadHoldCount() > 0 && !rw.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("当前线程持有 " + name
+                    + " 的读锁，获取写锁会自死锁；先释放读锁，或直接在 updater 中基于当前值计算");
+        }
+        Lock lock = handle.writeLock().getLock();
+        try {
+            Snapshot<T> previous = current;
+            Snapshot<T> next = new Snapshot<>(previous.version + 1, updater.apply(previous.value));
+            current = next;
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 某一版本的值，不可变
+     */
+    @Getter
+    public static final class Snapshot<T> {
+        /**
+         * 版本号，从未发布时为0，每次发布加1
+         */
+        private final long version;
+        private final T value;
+
+        Snapshot(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
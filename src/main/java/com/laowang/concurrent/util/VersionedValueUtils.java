@@ -0,0 +1,54 @@
+package com.laowang.concurrent.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 命名的 {@link VersionedValue} 注册表，替代读多写少场景下的 ReadWriteLockUtils
+ * <pre>
+ * // 写入：在同名写锁下复制、修改、发布
+ * VersionedValueUtils.updateMap("routing", routes -> routes.put("order", "shard-3"));
+ *
+ * // 读取：无锁
+ * Map&lt;String, String&gt; routes = VersionedValueUtils.get("routing");
+ * </pre>
+ */
+public class VersionedValueUtils {
+
+    private static final Map<String, VersionedValue<?>> VALUES = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public static <T> VersionedValue<T> value(String name) {
+        VersionedValue<?> value = VALUES.get(name);
+        if (value == null) {
+            value = VALUES.computeIfAbsent(name, VersionedValue::new);
+        }
+        return (VersionedValue<T>) value;
+    }
+
+    public static <T> T get(String name) {
+        return VersionedValueUtils.<T>value(name).get();
+    }
+
+    public static <T> VersionedValue.Snapshot<T> snapshot(String name) {
+        return VersionedValueUtils.<T>value(name).snapshot();
+    }
+
+    public static <T> VersionedValue.Snapshot<T> publish(String name, T value) {
+        return VersionedValueUtils.<T>value(name).publish(value);
+    }
+
+    /**
+     * 写时复制更新Map：复制当前版本，在副本上执行 mutator，以不可变Map发布
+     */
+    public static <K, V> VersionedValue.Snapshot<Map<K, V>> updateMap(String name, Consumer<Map<K, V>> mutator) {
+        return VersionedValueUtils.<Map<K, V>>value(name).update(previous -> {
+            Map<K, V> copy = previous == null ? new HashMap<>() : new HashMap<>(previous);
+            mutator.accept(copy);
+            return Collections.unmodifiableMap(copy);
+        });
+    }
+}
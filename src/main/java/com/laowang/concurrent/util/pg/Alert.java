@@ -0,0 +1,51 @@
+package com.laowang.concurrent.util.pg;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 一条告警
+ * <p>
+ * key 用于去重和限流，例如 "dead_tuples:public.orders"；
+ * occurrences 为本批次内合并的次数，suppressed 为上次投递以来被限流丢弃的次数。
+ */
+@Getter
+@ToString
+public class Alert {
+    private final String key;
+    private final AlertLevel level;
+    private final String message;
+    private final long firstSeenMillis;
+    private final long lastSeenMillis;
+    private final int occurrences;
+    private long suppressed;
+
+    public Alert(String key, AlertLevel level, String message, long timestampMillis) {
+        this.key = key;
+        this.level = level;
+        this.message = message;
+        this.firstSeenMillis = timestampMillis;
+        this.lastSeenMillis = timestampMillis;
+        this.occurrences = 1;
+    }
+
+    private Alert(Alert first, Alert last, int occurrences) {
+        this.key = first.key;
+        this.level = last.level.compareTo(first.level) > 0 ? last.level : first.level;
+        this.message = last.message;
+        this.firstSeenMillis = first.firstSeenMillis;
+        this.lastSeenMillis = last.lastSeenMillis;
+        this.occurrences = occurrences;
+    }
+
+    /**
+     * 合并同一key的两条告警：保留最新的消息和更高的级别
+     */
+    Alert merge(Alert later) {
+        return new Alert(this, later, occurrences + later.occurrences);
+    }
+
+    void setSuppressed(long suppressed) {
+        this.suppressed = suppressed;
+    }
+}
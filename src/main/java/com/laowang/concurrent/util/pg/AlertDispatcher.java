@@ -0,0 +1,178 @@
+package com.laowang.concurrent.util.pg;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步告警分发器
+ * <p>
+ * 监控线程调用 {@link #fire} 只做一次非阻塞入队，队列满时直接丢弃并计数；
+ * 后台线程按批取出告警，批内按key去重合并，再按key限流（同一key在 perKeyIntervalMillis 内只投递一次，
+ * 期间被抑制的次数随下一次投递带出），最后整批交给 {@link AlertSink}。
+ */
+@Slf4j
+public class AlertDispatcher implements AutoCloseable {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * close() 放入队列唤醒后台线程，不投递
+     */
+    private static final Alert WAKEUP = new Alert("", AlertLevel.INFO, "", 0L);
+
+    private final AlertSink sink;
+    private final BlockingQueue<Alert> queue;
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+    private final long perKeyIntervalMillis;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * 仅由后台线程访问
+     */
+    private final Map<String, KeyState> keyStates = new HashMap<>();
+
+    public AlertDispatcher(AlertSink sink) {
+        this(sink, 1024, 100, 1000L, TimeUnit.MINUTES.toMillis(10));
+    }
+
+    public AlertDispatcher(AlertSink sink, int queueCapacity, int maxBatchSize,
+                           long flushIntervalMillis, long perKeyIntervalMillis) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.perKeyIntervalMillis = perKeyIntervalMillis;
+        this.worker = new Thread(this::runLoop, "pg-alert-dispatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 提交告警，永不阻塞；返回 false 表示队列已满或分发器已关闭，告警被丢弃
+     */
+    public boolean fire(String key, AlertLevel level, String message) {
+        if (!running) {
+            return false;
+        }
+        Alert alert = new Alert(key, level, message, System.currentTimeMillis());
+        if (!queue.offer(alert)) {
+            dropped.increment();
+            return false;
+        }
+        // 入队期间 close() 已开始时，后台线程可能已经看到空队列退出；还能撤回就撤回，撤不回说明已被取走投递
+        if (!running && queue.remove(alert)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 因队列已满而丢弃的告警数
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void runLoop() {
+        List<Alert> buffer = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Alert first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                buffer.add(first);
+                queue.drainTo(buffer, maxBatchSize - 1);
+                deliver(buffer);
+            } catch (InterruptedException e) {
+                // 只有 close() 等待超时才会中断，放弃剩余告警
+                log.warn("告警分发器关闭超时，丢弃 {} 条未投递的告警", queue.size());
+                return;
+            } finally {
+                buffer.clear();
+            }
+        }
+    }
+
+    private void deliver(List<Alert> buffer) {
+        Map<String, Alert> merged = new LinkedHashMap<>();
+        for (Alert alert : buffer) {
+            if (alert != WAKEUP) {
+                merged.merge(alert.getKey(), alert, Alert::merge);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        List<Alert> batch = new ArrayList<>(merged.size());
+        for (Alert alert : merged.values()) {
+            KeyState state = keyStates.computeIfAbsent(alert.getKey(), k -> new KeyState());
+            if (state.lastDeliveredMillis != 0 && now - state.lastDeliveredMillis < perKeyIntervalMillis) {
+                state.suppressed += alert.getOccurrences();
+                continue;
+            }
+            alert.setSuppressed(state.suppressed);
+            state.suppressed = 0;
+            state.lastDeliveredMillis = now;
+            batch.add(alert);
+        }
+        evictIdleKeys(now);
+
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sink.deliver(batch);
+        } catch (Exception e) {
+            log.error("告警投递失败，丢弃 {} 条告警", batch.size(), e);
+        }
+    }
+
+    /**
+     * 清理限流窗口已过且没有待报抑制数的key，避免按表维度的key无限增长
+     */
+    private void evictIdleKeys(long now) {
+        Iterator<KeyState> iterator = keyStates.values().iterator();
+        while (iterator.hasNext()) {
+            KeyState state = iterator.next();
+            if (state.suppressed == 0 && now - state.lastDeliveredMillis >= perKeyIntervalMillis) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 停止接收新告警，等待后台线程投递完队列中剩余的告警；
+     * 超过 10 秒仍未投递完时中断后台线程，正在投递的批次和剩余告警被丢弃
+     */
+    @Override
+    public void close() {
+        running = false;
+        // 队列已满时后台线程不会阻塞在 poll 上，不需要唤醒
+        queue.offer(WAKEUP);
+        try {
+            worker.join(CLOSE_TIMEOUT_MILLIS);
+            if (worker.isAlive()) {
+                worker.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class KeyState {
+        private long lastDeliveredMillis;
+        private long suppressed;
+    }
+}
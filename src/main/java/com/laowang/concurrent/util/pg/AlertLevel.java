@@ -0,0 +1,7 @@
+package com.laowang.concurrent.util.pg;
+
+public enum AlertLevel {
+    INFO,
+    WARNING,
+    CRITICAL
+}
@@ -0,0 +1,14 @@
+package com.laowang.concurrent.util.pg;
+
+import java.util.List;
+
+/**
+ * 告警投递SPI
+ * <p>
+ * 由 {@link AlertDispatcher} 的后台线程调用，每次传入一批已去重、限流后的告警，
+ * 实现可以直接做网络I/O（钉钉、邮件、Webhook等），不会阻塞监控线程。
+ */
+public interface AlertSink {
+
+    void deliver(List<Alert> alerts) throws Exception;
+}
@@ -0,0 +1,279 @@
+package com.laowang.concurrent.util.pg;
+
+import com.laowang.concurrent.util.CancellableTask;
+import com.laowang.concurrent.util.CancellationToken;
+import com.laowang.concurrent.util.TaskGroup;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表/索引膨胀估算与未使用索引扫描
+ * <p>
+ * 每个schema产生三条目录查询（表膨胀、B-tree索引膨胀、未使用索引），所有查询按 maxConcurrentQueries 分批，
+ * 每批通过同一个 {@link TaskGroup} 并行执行并等待完成，批次之间暂停 pauseBetweenBatchesMillis，
+ * 保证扫描对线上流量的影响有上限；一批超时后取消其中未完成的查询再开始下一批：
+ * 取消通过 Statement.cancel() 通知服务端中止查询，另外每条查询的 queryTimeout 不超过批次超时时间作为兜底。
+ * 结果按可回收字节数降序排列，用于安排 VACUUM FULL / REINDEX / DROP INDEX。
+ * 未使用的索引只按 DROP INDEX 计入一次，不再同时作为膨胀索引重复计算可回收空间。
+ * <p>
+ * 膨胀为基于 pg_class.reltuples 与 pg_stats 平均行宽的估算，未考虑 fillfactor 和 TOAST，
+ * 需要表已 ANALYZE；idx_scan 为自上次统计重置以来的累计值。
+ */
+@Slf4j
+public class BloatScanner {
+
+    private static final String LIST_SCHEMAS = """
+            SELECT nspname FROM pg_namespace
+            WHERE nspname NOT IN ('pg_catalog', 'information_schema', 'pg_toast')
+              AND nspname NOT LIKE 'pg_temp_%' AND nspname NOT LIKE 'pg_toast_temp_%'
+            """;
+
+    private static final String TABLE_BLOAT = """
+            SELECT c.relname AS table_name,
+                   c.relpages::bigint * b.bs AS actual_bytes,
+                   CEIL(c.reltuples * (24 + 4 + COALESCE(s.row_width, 0)) / (b.bs - 24))::bigint * b.bs AS expected_bytes
+            FROM pg_class c
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            CROSS JOIN (SELECT current_setting('block_size')::bigint AS bs) b
+            LEFT JOIN (
+                SELECT tablename, SUM((1 - null_frac) * avg_width) AS row_width
+                FROM pg_stats WHERE schemaname = ? GROUP BY tablename
+            ) s ON s.tablename = c.relname
+            WHERE n.nspname = ? AND c.relkind = 'r' AND c.reltuples > 0
+            """;
+
+    private static final String INDEX_BLOAT = """
+            SELECT ic.relname AS index_name, tc.relname AS table_name,
+                   ic.relpages::bigint * b.bs AS actual_bytes,
+                   CEIL(ic.reltuples * (8 + 4 + COALESCE(w.key_width, 8)) / ((b.bs - 24 - 16) * 0.9))::bigint * b.bs
+                       AS expected_bytes
+            FROM pg_index i
+            JOIN pg_class ic ON ic.oid = i.indexrelid
+            JOIN pg_class tc ON tc.oid = i.indrelid
+            JOIN pg_namespace n ON n.oid = ic.relnamespace
+            JOIN pg_am am ON am.oid = ic.relam AND am.amname = 'btree'
+            CROSS JOIN (SELECT current_setting('block_size')::bigint AS bs) b
+            LEFT JOIN LATERAL (
+                SELECT SUM(st.avg_width) AS key_width
+                FROM pg_attribute a
+                JOIN pg_stats st ON st.schemaname = n.nspname AND st.tablename = tc.relname AND st.attname = a.attname
+                WHERE a.attrelid = i.indrelid AND a.attnum = ANY (i.indkey)
+            ) w ON true
+            WHERE n.nspname = ? AND ic.reltuples > 0
+              AND NOT EXISTS (
+                  SELECT 1 FROM pg_stat_user_indexes s
+                  WHERE s.indexrelid = i.indexrelid AND s.idx_scan = 0
+                    AND NOT i.indisunique AND NOT i.indisprimary
+                    AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid)
+              )
+            """;
+
+    private static final String UNUSED_INDEXES = """
+            SELECT s.indexrelname AS index_name, s.relname AS table_name,
+                   pg_relation_size(s.indexrelid) AS actual_bytes
+            FROM pg_stat_user_indexes s
+            JOIN pg_index i ON i.indexrelid = s.indexrelid
+            WHERE s.schemaname = ? AND s.idx_scan = 0
+              AND NOT i.indisunique AND NOT i.indisprimary
+              AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = s.indexrelid)
+            """;
+
+    private final DataSource dataSource;
+    private final Executor executor;
+    private final int maxConcurrentQueries;
+    private final long pauseBetweenBatchesMillis;
+    private final long minReclaimableBytes;
+    private final long batchTimeoutMillis;
+
+    public BloatScanner(DataSource dataSource, Executor executor, int maxConcurrentQueries,
+                        long pauseBetweenBatchesMillis, long minReclaimableBytes) {
+        this(dataSource, executor, maxConcurrentQueries, pauseBetweenBatchesMillis, minReclaimableBytes,
+                TimeUnit.MINUTES.toMillis(5));
+    }
+
+    BloatScanner(DataSource dataSource, Executor executor, int maxConcurrentQueries,
+                 long pauseBetweenBatchesMillis, long minReclaimableBytes, long batchTimeoutMillis) {
+        this.dataSource = dataSource;
+        this.executor = executor;
+        this.maxConcurrentQueries = Math.max(1, maxConcurrentQueries);
+        this.pauseBetweenBatchesMillis = pauseBetweenBatchesMillis;
+        this.minReclaimableBytes = minReclaimableBytes;
+        this.batchTimeoutMillis = batchTimeoutMillis;
+    }
+
+    /**
+     * 扫描所有用户schema，返回按可回收字节数降序的列表
+     */
+    public List<ReclaimableItem> scan() throws SQLException, InterruptedException {
+        List<String> schemas = listSchemas();
+        List<CancellableTask> queries = new ArrayList<>(schemas.size() * 3);
+        List<ReclaimableItem> items = Collections.synchronizedList(new ArrayList<>());
+        for (String schema : schemas) {
+            queries.add(token -> collect(schema, Kind.TABLE_BLOAT, TABLE_BLOAT, items, token));
+            queries.add(token -> collect(schema, Kind.INDEX_BLOAT, INDEX_BLOAT, items, token));
+            queries.add(token -> collect(schema, Kind.UNUSED_INDEX, UNUSED_INDEXES, items, token));
+        }
+
+        TaskGroup group = new TaskGroup(maxConcurrentQueries);
+        for (int from = 0; from < queries.size(); from += maxConcurrentQueries) {
+            if (from > 0 && pauseBetweenBatchesMillis > 0) {
+                Thread.sleep(pauseBetweenBatchesMillis);
+            }
+            int to = Math.min(from + maxConcurrentQueries, queries.size());
+            for (CancellableTask query : queries.subList(from, to)) {
+                group.submitTask(executor, query);
+            }
+            // 超时的查询必须取消，否则会与下一批叠加，突破 maxConcurrentQueries 的并发上限
+            if (!group.waitForOrCancel(batchTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("膨胀扫描第 {} 批查询超时，取消 {} 条查询", from / maxConcurrentQueries + 1,
+                        group.getCancelledTasks().size());
+                // 取消是异步的，等被取消的查询真正返回后再开始下一批
+                if (!group.awaitTermination(batchTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.warn("膨胀扫描第 {} 批被取消的查询未能及时结束，下一批可能与其重叠",
+                            from / maxConcurrentQueries + 1);
+                }
+            }
+        }
+
+        List<ReclaimableItem> result;
+        synchronized (items) {
+            result = deduplicate(items);
+        }
+        result.sort(Comparator.comparingLong(ReclaimableItem::getReclaimableBytes).reversed());
+        log.info("膨胀扫描完成：{} 个schema，{} 项可回收，合计 {}MB", schemas.size(), result.size(),
+                result.stream().mapToLong(ReclaimableItem::getReclaimableBytes).sum() / 1024 / 1024);
+        return result;
+    }
+
+    private List<String> listSchemas() throws SQLException {
+        List<String> schemas = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LIST_SCHEMAS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                schemas.add(rs.getString(1));
+            }
+        }
+        return schemas;
+    }
+
+    /**
+     * 索引的 idx_scan 可能在两条查询之间变化，查询已排除未使用索引之外再按索引去重：同一索引只保留 UNUSED_INDEX
+     */
+    private static List<ReclaimableItem> deduplicate(List<ReclaimableItem> items) {
+        Set<String> unused = new HashSet<>();
+        for (ReclaimableItem item : items) {
+            if (item.kind == Kind.UNUSED_INDEX) {
+                unused.add(item.schemaName + "." + item.indexName);
+            }
+        }
+        List<ReclaimableItem> result = new ArrayList<>(items.size());
+        for (ReclaimableItem item : items) {
+            if (item.kind != Kind.INDEX_BLOAT || !unused.contains(item.schemaName + "." + item.indexName)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private void collect(String schema, Kind kind, String sql, List<ReclaimableItem> items, CancellationToken token) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             CancellationToken.Registration ignored = token.onCancel(() -> cancel(stmt))) {
+            stmt.setQueryTimeout(queryTimeoutSeconds());
+            stmt.setString(1, schema);
+            if (kind == Kind.TABLE_BLOAT) {
+                stmt.setString(2, schema);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next() && !token.isCancelled()) {
+                    long actual = rs.getLong("actual_bytes");
+                    long reclaimable = kind == Kind.UNUSED_INDEX ? actual
+                            : Math.max(0, actual - rs.getLong("expected_bytes"));
+                    if (reclaimable < minReclaimableBytes) {
+                        continue;
+                    }
+                    String table = rs.getString("table_name");
+                    String index = kind == Kind.TABLE_BLOAT ? null : rs.getString("index_name");
+                    items.add(new ReclaimableItem(kind, schema, table, index, actual, reclaimable));
+                }
+            }
+        } catch (SQLException e) {
+            if (token.isCancelled()) {
+                log.info("schema {} 的{}查询已取消", schema, kind);
+            } else {
+                log.error("schema {} 的{}查询失败", schema, kind, e);
+            }
+        }
+    }
+
+    /**
+     * 中断不会中止 JDBC 查询，需要由服务端取消，否则超时的查询仍占用连接和后端进程
+     */
+    private static void cancel(PreparedStatement stmt) {
+        try {
+            stmt.cancel();
+        } catch (SQLException e) {
+            log.warn("取消膨胀扫描查询失败", e);
+        }
+    }
+
+    private int queryTimeoutSeconds() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toSeconds(batchTimeoutMillis + 999)));
+    }
+
+    public enum Kind {
+        TABLE_BLOAT("VACUUM FULL"),
+        INDEX_BLOAT("REINDEX"),
+        UNUSED_INDEX("DROP INDEX");
+
+        private final String suggestion;
+
+        Kind(String suggestion) {
+            this.suggestion = suggestion;
+        }
+    }
+
+    @Getter
+    @ToString
+    public static final class ReclaimableItem {
+        private final Kind kind;
+        private final String schemaName;
+        private final String tableName;
+        private final String indexName;
+        private final long actualBytes;
+        private final long reclaimableBytes;
+
+        ReclaimableItem(Kind kind, String schemaName, String tableName, String indexName,
+                        long actualBytes, long reclaimableBytes) {
+            this.kind = kind;
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+            this.indexName = indexName;
+            this.actualBytes = actualBytes;
+            this.reclaimableBytes = reclaimableBytes;
+        }
+
+        /**
+         * 建议的维护操作，如 "REINDEX public.orders_pkey"
+         */
+        public String getSuggestion() {
+            return kind.suggestion + " " + schemaName + "." + (indexName != null ? indexName : tableName);
+        }
+    }
+}
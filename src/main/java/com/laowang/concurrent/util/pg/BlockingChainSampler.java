@@ -0,0 +1,286 @@
+package com.laowang.concurrent.util.pg;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 锁阻塞链采样器
+ * <p>
+ * 每次采样只在一条专用连接上执行一条SQL：从 pg_locks 取出正在等锁的会话，用 pg_blocking_pids() 展开阻塞边，
+ * 再关联 pg_stat_activity 取阻塞者的SQL（等待时长依赖 pg_locks.waitstart，需 PostgreSQL 14+）。Java侧把边组装成 阻塞者 -> 等待者 的树，
+ * 按根阻塞者的SQL指纹累计阻塞时间（等待会话数 × 采样间隔），并返回所有阻塞链供调用方判断是否告警。
+ * <p>
+ * 非线程安全的状态都在 synchronized 方法中访问，同一时刻只会有一个采样在执行。
+ */
+@Slf4j
+public class BlockingChainSampler implements AutoCloseable {
+
+    private static final String SQL = """
+            WITH waiting AS (
+                SELECT pid, min(waitstart) AS waitstart
+                FROM pg_locks
+                WHERE NOT granted
+                GROUP BY pid
+            ), edges AS (
+                SELECT w.pid AS waiter, unnest(pg_blocking_pids(w.pid)) AS blocker, w.waitstart
+                FROM waiting w
+            )
+            SELECT e.waiter, e.blocker,
+                   COALESCE(EXTRACT(EPOCH FROM (clock_timestamp() - e.waitstart)) * 1000, 0)::bigint AS wait_ms,
+                   ba.query AS blocker_query, ba.state AS blocker_state
+            FROM edges e
+            LEFT JOIN pg_stat_activity ba ON ba.pid = e.blocker
+            """;
+
+    private static final int MAX_FINGERPRINTS = 1000;
+    private static final String OTHER_FINGERPRINT = "<other>";
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final DataSource dataSource;
+    private final int maxDepth;
+    private final long maxWaitMillis;
+    private final Map<String, FingerprintStats> statsByFingerprint = new HashMap<>();
+    private Connection connection;
+    private PreparedStatement statement;
+    private long lastSampleMillis;
+
+    /**
+     * @param maxDepth      阻塞链深度超过该值视为异常
+     * @param maxWaitMillis 链上任一会话等待超过该时长视为异常
+     */
+    public BlockingChainSampler(DataSource dataSource, int maxDepth, long maxWaitMillis) {
+        this.dataSource = dataSource;
+        this.maxDepth = maxDepth;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * 执行一次采样，返回当前所有阻塞链（以根阻塞者为单位）
+     */
+    public synchronized List<BlockingChain> sample() throws SQLException {
+        List<Edge> edges = new ArrayList<>();
+        try (ResultSet rs = statement().executeQuery()) {
+            while (rs.next()) {
+                edges.add(new Edge(rs.getInt("waiter"), rs.getInt("blocker"), rs.getLong("wait_ms"),
+                        rs.getString("blocker_query"), rs.getString("blocker_state")));
+            }
+        } catch (SQLException e) {
+            // 连接可能已失效，下次采样重新建立
+            closeConnection();
+            throw e;
+        }
+
+        long now = System.currentTimeMillis();
+        long interval = lastSampleMillis == 0 ? 0 : now - lastSampleMillis;
+        lastSampleMillis = now;
+
+        List<BlockingChain> chains = analyze(edges);
+        for (BlockingChain chain : chains) {
+            accumulate(chain, interval);
+        }
+        return chains;
+    }
+
+    public boolean exceedsThreshold(BlockingChain chain) {
+        return chain.getDepth() > maxDepth || chain.getMaxWaitMillis() > maxWaitMillis;
+    }
+
+    /**
+     * 按累计阻塞时间降序返回前 limit 个SQL指纹
+     */
+    public synchronized List<FingerprintStats> topBlockers(int limit) {
+        List<FingerprintStats> result = new ArrayList<>(statsByFingerprint.size());
+        for (FingerprintStats stats : statsByFingerprint.values()) {
+            result.add(stats.copy());
+        }
+        result.sort(Comparator.comparingLong(FingerprintStats::getBlockedMillis).reversed());
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    private void accumulate(BlockingChain chain, long interval) {
+        String fingerprint = chain.getFingerprint();
+        FingerprintStats stats = statsByFingerprint.get(fingerprint);
+        if (stats == null) {
+            if (statsByFingerprint.size() >= MAX_FINGERPRINTS) {
+                fingerprint = OTHER_FINGERPRINT;
+            }
+            stats = statsByFingerprint.computeIfAbsent(fingerprint, FingerprintStats::new);
+        }
+        stats.samples++;
+        stats.blockedMillis += interval * chain.getWaiterCount();
+        stats.maxDepth = Math.max(stats.maxDepth, chain.getDepth());
+        stats.maxWaitMillis = Math.max(stats.maxWaitMillis, chain.getMaxWaitMillis());
+    }
+
+    /**
+     * 把阻塞边组装成以根阻塞者为单位的链；根阻塞者为自身不在等锁的会话。
+     * 若所有会话互相等待（死锁，PostgreSQL 会自行检测并中止其一），则不产生链
+     */
+    static List<BlockingChain> analyze(List<Edge> edges) {
+        Map<Integer, List<Edge>> waitersByBlocker = new HashMap<>();
+        Set<Integer> waiting = new HashSet<>();
+        for (Edge edge : edges) {
+            waitersByBlocker.computeIfAbsent(edge.blocker, k -> new ArrayList<>()).add(edge);
+            waiting.add(edge.waiter);
+        }
+
+        List<BlockingChain> chains = new ArrayList<>();
+        for (Map.Entry<Integer, List<Edge>> entry : waitersByBlocker.entrySet()) {
+            int root = entry.getKey();
+            if (waiting.contains(root)) {
+                continue;
+            }
+            Set<Integer> visited = new HashSet<>();
+            visited.add(root);
+            Deque<int[]> stack = new ArrayDeque<>();
+            stack.push(new int[]{root, 0});
+            int depth = 0;
+            long maxWait = 0;
+            while (!stack.isEmpty()) {
+                int[] node = stack.pop();
+                depth = Math.max(depth, node[1]);
+                List<Edge> children = waitersByBlocker.get(node[0]);
+                if (children == null) {
+                    continue;
+                }
+                for (Edge child : children) {
+                    maxWait = Math.max(maxWait, child.waitMillis);
+                    if (visited.add(child.waiter)) {
+                        stack.push(new int[]{child.waiter, node[1] + 1});
+                    }
+                }
+            }
+            Edge first = entry.getValue().get(0);
+            chains.add(new BlockingChain(root, first.blockerQuery, first.blockerState,
+                    fingerprint(first.blockerQuery), depth, visited.size() - 1, maxWait));
+        }
+        return chains;
+    }
+
+    /**
+     * SQL指纹：去掉字符串和数字字面量，折叠 IN 列表与空白，便于把同一类语句归并
+     */
+    public static String fingerprint(String query) {
+        if (query == null || query.isBlank()) {
+            return "<unknown>";
+        }
+        String normalized = STRING_LITERAL.matcher(query).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("(...)");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        return normalized.length() > 200 ? normalized.substring(0, 200) : normalized;
+    }
+
+    private PreparedStatement statement() throws SQLException {
+        if (statement == null) {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+            statement = connection.prepareStatement(SQL);
+            statement.setQueryTimeout(5);
+        }
+        return statement;
+    }
+
+    private void closeConnection() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            log.debug("关闭阻塞采样连接失败", e);
+        } finally {
+            connection = null;
+            statement = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeConnection();
+    }
+
+    static final class Edge {
+        private final int waiter;
+        private final int blocker;
+        private final long waitMillis;
+        private final String blockerQuery;
+        private final String blockerState;
+
+        Edge(int waiter, int blocker, long waitMillis, String blockerQuery, String blockerState) {
+            this.waiter = waiter;
+            this.blocker = blocker;
+            this.waitMillis = waitMillis;
+            this.blockerQuery = blockerQuery;
+            this.blockerState = blockerState;
+        }
+    }
+
+    /**
+     * 一条阻塞链：根阻塞者及其直接、间接等待者
+     */
+    @Getter
+    public static final class BlockingChain {
+        private final int rootPid;
+        private final String rootQuery;
+        private final String rootState;
+        private final String fingerprint;
+        private final int depth;
+        private final int waiterCount;
+        private final long maxWaitMillis;
+
+        BlockingChain(int rootPid, String rootQuery, String rootState, String fingerprint,
+                      int depth, int waiterCount, long maxWaitMillis) {
+            this.rootPid = rootPid;
+            this.rootQuery = rootQuery;
+            this.rootState = rootState;
+            this.fingerprint = fingerprint;
+            this.depth = depth;
+            this.waiterCount = waiterCount;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+    }
+
+    /**
+     * 某个SQL指纹作为根阻塞者的累计情况
+     */
+    @Getter
+    public static final class FingerprintStats {
+        private final String fingerprint;
+        private long samples;
+        private long blockedMillis;
+        private int maxDepth;
+        private long maxWaitMillis;
+
+        FingerprintStats(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        FingerprintStats copy() {
+            FingerprintStats copy = new FingerprintStats(fingerprint);
+            copy.samples = samples;
+            copy.blockedMillis = blockedMillis;
+            copy.maxDepth = maxDepth;
+            copy.maxWaitMillis = maxWaitMillis;
+            return copy;
+        }
+    }
+}
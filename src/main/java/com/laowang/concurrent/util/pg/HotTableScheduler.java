@@ -0,0 +1,201 @@
+package com.laowang.concurrent.util.pg;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按表变更热度调度表级检查
+ * <p>
+ * 每次检查上报 n_tup_upd / n_tup_del / n_dead_tup 的累计值，调度器据此计算每秒变更行数（churn），
+ * 变更越快检查间隔越短：churn 为 0 时间隔为 maxIntervalMillis，达到 hotChurnPerSecond 时为 minIntervalMillis。
+ * 所有检查共享一个按分钟补充的查询预算（令牌桶），预算不足时优先调度相对自身间隔超期最多的表，
+ * 因此数据库侧的监控查询量保持平稳。
+ */
+public class HotTableScheduler {
+
+    private final Map<String, TableState> tables = new ConcurrentHashMap<>();
+    private final int queryBudgetPerMinute;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final double hotChurnPerSecond;
+
+    /**
+     * 令牌桶状态，仅在 synchronized 方法中访问
+     */
+    private double tokens;
+    private long lastRefillMillis;
+
+    public HotTableScheduler(int queryBudgetPerMinute, long minIntervalMillis, long maxIntervalMillis,
+                             double hotChurnPerSecond) {
+        if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("invalid interval range: " + minIntervalMillis + " - " + maxIntervalMillis);
+        }
+        this.queryBudgetPerMinute = queryBudgetPerMinute;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.hotChurnPerSecond = hotChurnPerSecond;
+        this.tokens = queryBudgetPerMinute;
+    }
+
+    /**
+     * 纳入调度，新表立即到期
+     */
+    public void track(String schemaName, String tableName) {
+        tables.computeIfAbsent(key(schemaName, tableName), k -> new TableState(schemaName, tableName, minIntervalMillis));
+    }
+
+    public void untrack(String schemaName, String tableName) {
+        tables.remove(key(schemaName, tableName));
+    }
+
+    public int trackedCount() {
+        return tables.size();
+    }
+
+    /**
+     * 上报一次表统计采样，更新热度和下次检查时间；未纳入调度的表会被自动纳入
+     */
+    public void recordSample(String schemaName, String tableName, long nTupUpd, long nTupDel,
+                             long nDeadTup, long nLiveTup, long nowMillis) {
+        TableState state = tables.computeIfAbsent(key(schemaName, tableName),
+                k -> new TableState(schemaName, tableName, minIntervalMillis));
+        synchronized (state) {
+            if (state.lastSampleMillis > 0 && nowMillis > state.lastSampleMillis) {
+                long changed = Math.max(0, nTupUpd - state.lastTupUpd)
+                        + Math.max(0, nTupDel - state.lastTupDel)
+                        + Math.max(0, nDeadTup - state.lastDeadTup);
+                state.churnPerSecond = changed * 1000D / (nowMillis - state.lastSampleMillis);
+            }
+            state.lastTupUpd = nTupUpd;
+            state.lastTupDel = nTupDel;
+            state.lastDeadTup = nDeadTup;
+            state.lastSampleMillis = nowMillis;
+
+            long interval = intervalFor(state.churnPerSecond);
+            // 死亡行已过活跃行的10%，离VACUUM阈值不远，缩短间隔
+            if (nDeadTup > nLiveTup * 0.1) {
+                interval = Math.max(minIntervalMillis, interval / 2);
+            }
+            state.intervalMillis = interval;
+        }
+    }
+
+    long intervalFor(double churnPerSecond) {
+        double ratio = (double) maxIntervalMillis / minIntervalMillis;
+        double interval = maxIntervalMillis / (1 + churnPerSecond / hotChurnPerSecond * (ratio - 1));
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, (long) interval));
+    }
+
+    /**
+     * 尝试从预算中扣除 queries 次查询，用于表发现等额外查询
+     */
+    public synchronized boolean tryConsume(int queries, long nowMillis) {
+        refill(nowMillis);
+        if (tokens < queries) {
+            return false;
+        }
+        tokens -= queries;
+        return true;
+    }
+
+    /**
+     * 取出当前到期且预算允许的表（每张表消耗一次查询），按超期程度降序，
+     * 返回的表视为已发起检查，下一次到期时间从现在起算
+     */
+    public List<TableRef> pollDue(long nowMillis) {
+        return pollDue(nowMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 同 {@link #pollDue(long)}，但最多取出 maxTables 张表，未取出的表保持到期状态
+     */
+    public synchronized List<TableRef> pollDue(long nowMillis, int maxTables) {
+        refill(nowMillis);
+        int available = Math.min((int) tokens, maxTables);
+        if (available <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<TableState> due = new ArrayList<>();
+        for (TableState state : tables.values()) {
+            if (nowMillis - state.lastCheckMillis >= state.intervalMillis) {
+                due.add(state);
+            }
+        }
+        if (due.isEmpty()) {
+            return Collections.emptyList();
+        }
+        due.sort(Comparator.comparingDouble((TableState s) -> s.overdueScore(nowMillis)).reversed());
+
+        int size = Math.min(available, due.size());
+        List<TableRef> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TableState state = due.get(i);
+            state.lastCheckMillis = nowMillis;
+            result.add(state.ref);
+        }
+        tokens -= size;
+        return result;
+    }
+
+    private void refill(long nowMillis) {
+        if (lastRefillMillis == 0) {
+            lastRefillMillis = nowMillis;
+            return;
+        }
+        long elapsed = nowMillis - lastRefillMillis;
+        if (elapsed > 0) {
+            tokens = Math.min(queryBudgetPerMinute, tokens + elapsed * queryBudgetPerMinute / 60_000D);
+            lastRefillMillis = nowMillis;
+        }
+    }
+
+    private static String key(String schemaName, String tableName) {
+        return schemaName + "." + tableName;
+    }
+
+    @Getter
+    public static final class TableRef {
+        private final String schemaName;
+        private final String tableName;
+
+        TableRef(String schemaName, String tableName) {
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+        }
+
+        @Override
+        public String toString() {
+            return schemaName + "." + tableName;
+        }
+    }
+
+    private static final class TableState {
+        private final TableRef ref;
+        private volatile long intervalMillis;
+        private volatile double churnPerSecond;
+        private long lastCheckMillis;
+        private long lastSampleMillis;
+        private long lastTupUpd;
+        private long lastTupDel;
+        private long lastDeadTup;
+
+        TableState(String schemaName, String tableName, long intervalMillis) {
+            this.ref = new TableRef(schemaName, tableName);
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * 超期时长相对自身间隔的倍数，热表间隔短，同样超期时得分更高
+         */
+        double overdueScore(long nowMillis) {
+            return (double) (nowMillis - lastCheckMillis) / intervalMillis;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.laowang.concurrent.util.pg;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 默认告警投递：输出到日志
+ */
+@Slf4j
+public class LogAlertSink implements AlertSink {
+
+    @Override
+    public void deliver(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            if (alert.getOccurrences() > 1 || alert.getSuppressed() > 0) {
+                log.warn("[{}] {} (本批重复{}次，此前被限流{}次)", alert.getLevel(), alert.getMessage(),
+                        alert.getOccurrences(), alert.getSuppressed());
+            } else {
+                log.warn("[{}] {}", alert.getLevel(), alert.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.laowang.concurrent.util.pg;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 通过逻辑复制槽持续消费WAL变更，统计各表的变更速率和WAL消费量
+ * <p>
+ * 使用 PgJDBC 复制 API 和内置的 pgoutput 输出插件（协议版本1），在专用线程上循环读取。pgoutput 以二进制发送行变更，
+ * 这里只读取消息类型和关系 OID 计数，不解码列值；表名只在每个会话首次出现该表的 Relation 消息时解析一次。
+ * 需要预先创建发布，例如 {@code CREATE PUBLICATION pg_monitor FOR ALL TABLES}，只统计发布中包含的表。
+ * 槽为临时槽，连接断开即由服务端删除，监控进程退出后不会继续保留WAL；读到的位置立即确认为 flush/applied，槽也不会因消费滞后而堆积WAL。
+ * 断线或消费出错（包括驱动抛出的运行时异常）后按 reconnectMillis 重连并重新建槽，期间的变更不再统计。
+ * <p>
+ * 各表累计变更数为 LongAdder，每秒按增量更新一次指数滑动平均速率；{@link #publish(MetricHistory)} 把累计值写入指标历史。
+ * 服务端需要 wal_level=logical，账号需要 REPLICATION 权限。
+ */
+@Slf4j
+public class LogicalWalStreamer implements AutoCloseable {
+
+    private static final long RATE_TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * 速率平滑系数，约等于最近10秒的加权平均
+     */
+    private static final double RATE_ALPHA = 0.1;
+    private static final long IDLE_SLEEP_MILLIS = 10;
+
+    private final String jdbcUrl;
+    private final Properties properties;
+    private final String slotName;
+    private final String publicationName;
+    private final long reconnectMillis;
+
+    private final Map<String, TableChanges> tables = new ConcurrentHashMap<>();
+    /**
+     * 本次复制会话中关系 OID 到表的映射，由 Relation 消息建立，只在消费线程上访问
+     */
+    private final Map<Integer, TableChanges> relations = new HashMap<>();
+    /**
+     * 同一事务的行变更通常连续落在同一个表上，先比较上一条的 OID，避免每条消息装箱查表
+     */
+    private int lastRelationId;
+    private TableChanges lastRelation;
+    private final LongAdder walBytes = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private volatile long flushedLsn;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param jdbcUrl         jdbc:postgresql://host:port/database
+     * @param properties      用户名、密码等连接属性，复制相关属性由本类补充
+     * @param slotName        临时复制槽名称，同一数据库内唯一
+     * @param publicationName 已存在的发布名称，决定统计哪些表
+     * @param reconnectMillis 断线重连间隔
+     */
+    public LogicalWalStreamer(String jdbcUrl, Properties properties, String slotName, String publicationName,
+                              long reconnectMillis) {
+        this.jdbcUrl = jdbcUrl;
+        this.properties = new Properties();
+        this.properties.putAll(properties);
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(this.properties, "10");
+        PGProperty.REPLICATION.set(this.properties, "database");
+        PGProperty.PREFER_QUERY_MODE.set(this.properties, "simple");
+        this.slotName = slotName;
+        this.publicationName = publicationName;
+        this.reconnectMillis = reconnectMillis;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::runLoop, "wal-stream-" + slotName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runLoop() {
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(jdbcUrl, properties)) {
+                stream(conn.unwrap(PGConnection.class));
+            } catch (SQLException | RuntimeException e) {
+                // 驱动在协议异常时可能抛出运行时异常，同样重连，不能让消费线程静默退出
+                if (running) {
+                    log.error("WAL流式消费中断，{}ms 后重连", reconnectMillis, e);
+                }
+            }
+            if (running) {
+                try {
+                    Thread.sleep(reconnectMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stream(PGConnection conn) throws SQLException {
+        conn.getReplicationAPI()
+                .createReplicationSlot()
+                .logical()
+                .withSlotName(slotName)
+                .withOutputPlugin("pgoutput")
+                .withTemporaryOption()
+                .make();
+        PGReplicationStream stream = conn.getReplicationAPI()
+                .replicationStream()
+                .logical()
+                .withSlotName(slotName)
+                .withSlotOption("proto_version", 1)
+                .withSlotOption("publication_names", publicationName)
+                .withStatusInterval(10, TimeUnit.SECONDS)
+                .start();
+        // 新会话会为每个表重新发送 Relation 消息，OID 映射从头建立
+        relations.clear();
+        lastRelation = null;
+        log.info("开始消费逻辑复制槽 {}，发布: {}", slotName, publicationName);
+        try {
+            long lastLsn = -1;
+            long nextTick = System.nanoTime() + RATE_TICK_NANOS;
+            while (running) {
+                ByteBuffer buffer = stream.readPending();
+                if (buffer == null) {
+                    sleepIdle();
+                } else {
+                    handle(buffer);
+                    LogSequenceNumber lsn = stream.getLastReceiveLSN();
+                    long current = lsn.asLong();
+                    if (lastLsn >= 0 && current > lastLsn) {
+                        walBytes.add(current - lastLsn);
+                    }
+                    lastLsn = current;
+                    // 只做内存统计，没有需要持久化的状态，收到即可确认，避免槽保留WAL
+                    stream.setAppliedLSN(lsn);
+                    stream.setFlushedLSN(lsn);
+                    flushedLsn = current;
+                }
+                long now = System.nanoTime();
+                if (now - nextTick >= 0) {
+                    tick((double) (now - nextTick + RATE_TICK_NANOS) / TimeUnit.SECONDS.toNanos(1));
+                    nextTick = now + RATE_TICK_NANOS;
+                }
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private void sleepIdle() {
+        try {
+            Thread.sleep(IDLE_SLEEP_MILLIS);
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+
+    /**
+     * 处理一条 pgoutput 消息：Relation 消息登记 OID 对应的表，Insert/Update/Delete 按 OID 计数，其他消息忽略
+     */
+    void handle(ByteBuffer buffer) {
+        messages.increment();
+        int position = buffer.position();
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        switch (buffer.get(position)) {
+            case 'R':
+                relation(buffer, position + 1);
+                break;
+            case 'I':
+                record(buffer.getInt(position + 1), Operation.INSERT);
+                break;
+            case 'U':
+                record(buffer.getInt(position + 1), Operation.UPDATE);
+                break;
+            case 'D':
+                record(buffer.getInt(position + 1), Operation.DELETE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void record(int relationId, Operation operation) {
+        TableChanges table = lastRelation;
+        if (table == null || lastRelationId != relationId) {
+            table = relations.get(relationId);
+            if (table == null) {
+                return;
+            }
+            lastRelationId = relationId;
+            lastRelation = table;
+        }
+        table.record(operation);
+    }
+
+    /**
+     * Relation 消息：Int32 OID、以0结尾的schema名（空串表示 pg_catalog）、以0结尾的表名，之后是列定义
+     */
+    private void relation(ByteBuffer buffer, int offset) {
+        int relationId = buffer.getInt(offset);
+        int schemaEnd = indexOfNul(buffer, offset + 4);
+        int tableEnd = indexOfNul(buffer, schemaEnd + 1);
+        String schemaName = string(buffer, offset + 4, schemaEnd);
+        String tableName = string(buffer, schemaEnd + 1, tableEnd);
+        if (schemaName.isEmpty()) {
+            schemaName = "pg_catalog";
+        }
+        String schema = schemaName;
+        relations.put(relationId, tables.computeIfAbsent(schema + "." + tableName,
+                k -> new TableChanges(schema, tableName)));
+        // 表结构变化或重命名后同一 OID 会收到新的 Relation 消息
+        lastRelation = null;
+    }
+
+    private static int indexOfNul(ByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.limit(); i++) {
+            if (buffer.get(i) == 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("pgoutput 消息中的字符串缺少结尾的0字节");
+    }
+
+    private static String string(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 用最近一个周期的增量更新各表速率，只在消费线程上调用
+     */
+    private void tick(double seconds) {
+        for (TableChanges table : tables.values()) {
+            long total = table.total();
+            double instant = (total - table.lastTotal) / seconds;
+            table.lastTotal = total;
+            table.rate = table.rate + RATE_ALPHA * (instant - table.rate);
+        }
+    }
+
+    /**
+     * 把累计值写入指标历史：wal_stream_lsn、wal_stream_bytes 以及各表的 wal_stream_changes，
+     * 速率可由 {@link MetricRing#ratePerSecond} 计算。应由单个线程定期调用
+     */
+    public void publish(MetricHistory history) {
+        long now = System.currentTimeMillis();
+        history.record("wal_stream_lsn", now, flushedLsn);
+        history.record("wal_stream_bytes", now, walBytes.sum());
+        for (TableChanges table : tables.values()) {
+            history.record(MetricHistory.tableSeries("wal_stream_changes", table.schemaName, table.tableName),
+                    now, table.total());
+        }
+    }
+
+    /**
+     * 各表（schema.table）最近约10秒的平均变更速率，行/秒
+     */
+    public Map<String, Double> tableRates() {
+        Map<String, Double> rates = new HashMap<>();
+        tables.forEach((name, table) -> rates.put(name, table.rate));
+        return rates;
+    }
+
+    /**
+     * 不再统计已删除的表；表被重新创建后会随新的 Relation 消息重新登记
+     */
+    public void removeTable(String schemaName, String tableName) {
+        tables.remove(schemaName + "." + tableName);
+    }
+
+    public Map<String, TableChanges> getTables() {
+        return tables;
+    }
+
+    public long getWalBytes() {
+        return walBytes.sum();
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    public long getFlushedLsn() {
+        return flushedLsn;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = thread;
+            thread = null;
+        }
+        if (current != null) {
+            current.interrupt();
+            try {
+                current.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    /**
+     * 单表累计变更数，消费线程写入，其他线程读取
+     */
+    @Getter
+    public static final class TableChanges {
+        private final String schemaName;
+        private final String tableName;
+        private final LongAdder inserts = new LongAdder();
+        private final LongAdder updates = new LongAdder();
+        private final LongAdder deletes = new LongAdder();
+        @Getter(AccessLevel.NONE)
+        private long lastTotal;
+        private volatile double rate;
+
+        TableChanges(String schemaName, String tableName) {
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+        }
+
+        void record(Operation operation) {
+            switch (operation) {
+                case INSERT:
+                    inserts.increment();
+                    break;
+                case UPDATE:
+                    updates.increment();
+                    break;
+                default:
+                    deletes.increment();
+            }
+        }
+
+        public long total() {
+            return inserts.sum() + updates.sum() + deletes.sum();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.laowang.concurrent.util.pg;
+
+import com.laowang.concurrent.util.PrometheusWriter;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 监控指标历史，按序列名管理一组 {@link MetricRing}
+ * <p>
+ * 序列名沿用 Prometheus 的写法：无标签时为指标名本身（如 wal_bytes），
+ * 表级指标为 n_dead_tup{schema="public",table="orders"}，见 {@link #tableSeries}。
+ * 默认容量 512，按每分钟一次采样可保留约 8 小时数据，单个序列约 8KB。
+ * 序列不会自动删除：表被删除或改名后，由表发现调用 {@link #removeTable} 删除其表级序列，
+ * 其余长期没有新样本的序列由 {@link #evictIdle} 淘汰。
+ */
+public class MetricHistory {
+
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final int capacity;
+    private final Map<String, MetricRing> rings = new ConcurrentHashMap<>();
+
+    public MetricHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MetricHistory(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 获取（必要时创建）指定序列的环形缓冲区
+     */
+    public MetricRing ring(String series) {
+        MetricRing ring = rings.get(series);
+        if (ring != null) {
+            return ring;
+        }
+        return rings.computeIfAbsent(series, k -> new MetricRing(capacity));
+    }
+
+    /**
+     * 获取已存在的序列，不存在时返回 null
+     */
+    public MetricRing find(String series) {
+        return rings.get(series);
+    }
+
+    public void record(String series, long timestampMillis, long value) {
+        ring(series).record(timestampMillis, value);
+    }
+
+    public void remove(String series) {
+        rings.remove(series);
+    }
+
+    /**
+     * 删除一张表的全部表级序列，不论指标名，见 {@link #tableSeries}
+     */
+    public void removeTable(String schemaName, String tableName) {
+        String labels = tableSeries("", schemaName, tableName);
+        rings.keySet().removeIf(series -> series.endsWith(labels));
+    }
+
+    /**
+     * 淘汰最近 maxIdleMillis 内没有新样本的序列（包括从未写入过样本的序列），返回淘汰的序列数。
+     * 与写入并发时，刚创建还未写入的序列可能被淘汰，丢失该次样本，下次写入时重新创建
+     */
+    public int evictIdle(long nowMillis, long maxIdleMillis) {
+        long cutoff = nowMillis - maxIdleMillis;
+        int evicted = 0;
+        for (Iterator<MetricRing> it = rings.values().iterator(); it.hasNext(); ) {
+            if (it.next().latestTimestamp() < cutoff) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return rings.size();
+    }
+
+    public void forEach(BiConsumer<String, MetricRing> action) {
+        rings.forEach(action);
+    }
+
+    public static String tableSeries(String metric, String schemaName, String tableName) {
+        return metric + "{schema=\"" + PrometheusWriter.escapeLabelValue(schemaName)
+                + "\",table=\"" + PrometheusWriter.escapeLabelValue(tableName) + "\"}";
+    }
+}
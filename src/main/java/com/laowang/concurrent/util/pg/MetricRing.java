@@ -0,0 +1,176 @@
+package com.laowang.concurrent.util.pg;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * 单指标的定长环形时序缓冲区
+ * <p>
+ * 采样值和采样时间分别存放在两个 long[] 中，写入不分配任何对象。
+ * 约定同一个 MetricRing 只有一个写线程；读线程无锁访问，
+ * 通过写入计数（volatile）判断读取期间槽位是否被覆盖，被覆盖的部分直接丢弃。
+ */
+public final class MetricRing {
+
+    private final long[] timestamps;
+    private final long[] values;
+    private final int mask;
+
+    /**
+     * 已写入的样本总数，单调递增；写线程先写槽位再发布计数
+     */
+    private volatile long count;
+
+    public MetricRing(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.timestamps = new long[size];
+        this.values = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 追加一个样本，仅允许单个写线程调用
+     */
+    public void record(long timestampMillis, long value) {
+        long n = count;
+        int slot = (int) (n & mask);
+        timestamps[slot] = timestampMillis;
+        values[slot] = value;
+        count = n + 1;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * 可读取的样本数；下一个待覆盖的槽位不计入，因此最多为 capacity - 1
+     */
+    public int size() {
+        return (int) Math.min(count, values.length - 1);
+    }
+
+    /**
+     * 最近一个样本的值，没有样本时返回 defaultValue
+     */
+    public long latest(long defaultValue) {
+        for (; ; ) {
+            long n = count;
+            if (n == 0) {
+                return defaultValue;
+            }
+            long value = values[(int) ((n - 1) & mask)];
+            if (unchanged(n - 1)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * 最近一个样本的时间戳，没有样本时返回 0
+     */
+    public long latestTimestamp() {
+        for (; ; ) {
+            long n = count;
+            if (n == 0) {
+                return 0L;
+            }
+            long ts = timestamps[(int) ((n - 1) & mask)];
+            if (unchanged(n - 1)) {
+                return ts;
+            }
+        }
+    }
+
+    /**
+     * 时间窗口 [now - windowMillis, now] 内的最小值，窗口内无样本时返回 defaultValue
+     */
+    public long min(long nowMillis, long windowMillis, long defaultValue) {
+        return aggregate(nowMillis - windowMillis, true, defaultValue);
+    }
+
+    /**
+     * 时间窗口 [now - windowMillis, now] 内的最大值，窗口内无样本时返回 defaultValue
+     */
+    public long max(long nowMillis, long windowMillis, long defaultValue) {
+        return aggregate(nowMillis - windowMillis, false, defaultValue);
+    }
+
+    /**
+     * 时间窗口内的每秒变化速率，按窗口内最早与最新样本计算；样本不足两个时返回 0
+     * <p>
+     * 适用于 wal_bytes、n_tup_upd 这类单调累加的计数器
+     */
+    public double ratePerSecond(long nowMillis, long windowMillis) {
+        long since = nowMillis - windowMillis;
+        for (; ; ) {
+            long n = count;
+            long oldest = oldestReadable(n);
+            if (n - oldest < 2) {
+                return 0D;
+            }
+            long lastIndex = n - 1;
+            long lastTs = timestamps[(int) (lastIndex & mask)];
+            long lastValue = values[(int) (lastIndex & mask)];
+            long firstTs = lastTs;
+            long firstValue = lastValue;
+            long i = lastIndex - 1;
+            for (; i >= oldest; i--) {
+                long ts = timestamps[(int) (i & mask)];
+                if (ts < since) {
+                    break;
+                }
+                firstTs = ts;
+                firstValue = values[(int) (i & mask)];
+            }
+            if (!unchanged(i + 1)) {
+                // 读取期间最早的样本已被覆盖，重新读取
+                continue;
+            }
+            if (lastTs <= firstTs) {
+                return 0D;
+            }
+            return (lastValue - firstValue) * 1000D / (lastTs - firstTs);
+        }
+    }
+
+    private long aggregate(long since, boolean min, long defaultValue) {
+        for (; ; ) {
+            long n = count;
+            long oldest = oldestReadable(n);
+            long result = min ? Long.MAX_VALUE : Long.MIN_VALUE;
+            boolean found = false;
+            long i = n - 1;
+            for (; i >= oldest; i--) {
+                int slot = (int) (i & mask);
+                if (timestamps[slot] < since) {
+                    break;
+                }
+                long value = values[slot];
+                result = min ? Math.min(result, value) : Math.max(result, value);
+                found = true;
+            }
+            if (!unchanged(i + 1)) {
+                continue;
+            }
+            return found ? result : defaultValue;
+        }
+    }
+
+    private long oldestReadable(long n) {
+        return Math.max(0, n - values.length + 1);
+    }
+
+    /**
+     * 读取结束后校验：下标不小于 lowestIndex 的样本是否仍未被写线程覆盖（含正在覆盖）
+     */
+    private boolean unchanged(long lowestIndex) {
+        VarHandle.acquireFence();
+        return count - values.length < lowestIndex;
+    }
+}
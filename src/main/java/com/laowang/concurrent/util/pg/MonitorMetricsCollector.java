@@ -0,0 +1,60 @@
+package com.laowang.concurrent.util.pg;
+
+import com.laowang.concurrent.util.MetricsCollector;
+import com.laowang.concurrent.util.PrometheusWriter;
+
+import java.util.Map;
+
+/**
+ * 将 {@link MetricHistory} 中每个序列的最新值导出为 pg_monitor_ 前缀的 gauge
+ * <p>
+ * 集群模式下传入数据库名，作为 database 标签附加在每个样本上。
+ */
+public class MonitorMetricsCollector implements MetricsCollector {
+
+    private static final String PREFIX = "pg_monitor_";
+
+    private static final Map<String, String> HELP = Map.ofEntries(
+            Map.entry("wal_lsn", "当前WAL写入位置（字节偏移）"),
+            Map.entry("wal_records", "pg_stat_wal.wal_records 累计值"),
+            Map.entry("wal_bytes", "pg_stat_wal.wal_bytes 累计值"),
+            Map.entry("wal_buffers_full", "pg_stat_wal.wal_buffers_full 累计值"),
+            Map.entry("in_recovery", "是否处于恢复模式（1为是）"),
+            Map.entry("checkpoint_lsn", "最近一次checkpoint的LSN（字节偏移）"),
+            Map.entry("n_live_tup", "表活跃行数"),
+            Map.entry("n_dead_tup", "表死亡行数"),
+            Map.entry("n_tup_upd", "表累计更新行数"),
+            Map.entry("n_tup_del", "表累计删除行数"),
+            Map.entry("blocking_chains", "当前锁阻塞链数量"),
+            Map.entry("blocking_max_depth", "当前最深的锁阻塞链深度"),
+            Map.entry("blocked_sessions", "当前因锁阻塞而等待的会话数"),
+            Map.entry("wal_stream_lsn", "WAL流式消费已确认的位置（字节偏移）"),
+            Map.entry("wal_stream_bytes", "WAL流式消费累计消费的WAL字节数"),
+            Map.entry("wal_stream_changes", "WAL流式消费统计的表累计变更行数"),
+            Map.entry("reclaimable_bytes", "最近一次膨胀扫描估算的可回收字节数（不小于1MB的项合计）")
+    );
+
+    private final String databaseLabel;
+    private final MetricHistory history;
+
+    public MonitorMetricsCollector(String database, MetricHistory history) {
+        this.databaseLabel = database == null ? null : "database=\"" + PrometheusWriter.escapeLabelValue(database) + "\"";
+        this.history = history;
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        history.forEach((series, ring) -> {
+            if (ring.size() == 0) {
+                return;
+            }
+            int brace = series.indexOf('{');
+            String metric = brace < 0 ? series : series.substring(0, brace);
+            String labels = brace < 0 ? null : series.substring(brace + 1, series.length() - 1);
+            if (databaseLabel != null) {
+                labels = labels == null ? databaseLabel : databaseLabel + "," + labels;
+            }
+            writer.gauge(PREFIX + metric, HELP.get(metric), labels, ring.latest(0L));
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package com.laowang.concurrent.util.pg;
+
+import com.laowang.concurrent.util.MetricsCollector;
+import com.laowang.concurrent.util.PrometheusWriter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 JDK 内置 HttpServer 的 Prometheus 指标端点
+ * <p>
+ * 后台线程按固定间隔调用所有 {@link MetricsCollector} 生成文本快照，
+ * 抓取请求只返回最近一次的快照字节，不会触发任何数据库查询，抓取频率再高也不影响被监控的数据库。
+ * <p>
+ * 使用示例：
+ * <pre>
+ * PrometheusExporter exporter = new PrometheusExporter(9187, 15_000L)
+ *         .register(monitor.metricsCollector())
+ *         .register(new ConcurrencyMetricsCollector());
+ * exporter.start();
+ * </pre>
+ */
+@Slf4j
+public class PrometheusExporter implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final int port;
+    private final long refreshIntervalMillis;
+    private final List<MetricsCollector> collectors = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService refresher;
+    private volatile byte[] snapshot = new byte[0];
+    private HttpServer server;
+
+    /**
+     * @param port                  监听端口，0 表示随机端口
+     * @param refreshIntervalMillis 快照刷新间隔
+     */
+    public PrometheusExporter(int port, long refreshIntervalMillis) {
+        this.port = port;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "prometheus-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public PrometheusExporter register(MetricsCollector collector) {
+        collectors.add(collector);
+        return this;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        refresh();
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis, refreshIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Prometheus指标端点已启动，端口: {}", getPort());
+    }
+
+    /**
+     * 实际监听的端口
+     */
+    public int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    /**
+     * 重新生成快照；单个采集器异常不影响其他采集器
+     */
+    public void refresh() {
+        PrometheusWriter writer = new PrometheusWriter();
+        for (MetricsCollector collector : collectors) {
+            try {
+                collector.collect(writer);
+            } catch (RuntimeException e) {
+                log.error("指标采集失败: {}", collector.getClass().getName(), e);
+            }
+        }
+        snapshot = writer.render().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String snapshot() {
+        return new String(snapshot, StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = snapshot;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            // 长度为0在HttpServer中表示分块传输，空快照用-1表示无响应体
+            exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+            if (body.length == 0) {
+                return;
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        refresher.shutdownNow();
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.laowang.concurrent.util.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 带虚拟节点的一致性哈希环，不可变，增删节点返回新实例
+ * <p>
+ * 每个节点按 "id#序号" 在环上放置 virtualNodes 个点，键路由到顺时针方向的第一个点。
+ * 增加一个节点只会迁移约 1/N 的键，且迁移的键全部落到新节点上。
+ * 哈希为 64 位 FNV-1a 加一轮混合；键中含 {tag} 时只对 tag 求哈希，与 Redis Cluster 的哈希标签规则一致，
+ * 如 latch:{job1} 与 latch:{job1}:done 总在同一个节点上。
+ */
+public final class ConsistentHashRing<T> {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, T> members;
+    private final int virtualNodes;
+    private final long[] points;
+    private final Object[] owners;
+
+    public ConsistentHashRing(Map<String, T> members, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes 必须大于0: " + virtualNodes);
+        }
+        this.members = Collections.unmodifiableMap(new LinkedHashMap<>(members));
+        this.virtualNodes = virtualNodes;
+
+        int size = members.size() * virtualNodes;
+        long[][] entries = new long[size][];
+        Object[] nodes = new Object[members.size()];
+        int index = 0;
+        int member = 0;
+        for (Map.Entry<String, T> entry : this.members.entrySet()) {
+            nodes[member] = entry.getValue();
+            for (int i = 0; i < virtualNodes; i++) {
+                entries[index++] = new long[]{hash(entry.getKey() + "#" + i), member};
+            }
+            member++;
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.owners = new Object[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = entries[i][0];
+            owners[i] = nodes[(int) entries[i][1]];
+        }
+    }
+
+    public ConsistentHashRing<T> with(String id, T node) {
+        Map<String, T> copy = new LinkedHashMap<>(members);
+        copy.put(id, node);
+        return new ConsistentHashRing<>(copy, virtualNodes);
+    }
+
+    public ConsistentHashRing<T> without(String id) {
+        Map<String, T> copy = new LinkedHashMap<>(members);
+        copy.remove(id);
+        return new ConsistentHashRing<>(copy, virtualNodes);
+    }
+
+    /**
+     * @throws IllegalStateException 环上没有节点
+     */
+    @SuppressWarnings("unchecked")
+    public T route(String key) {
+        if (points.length == 0) {
+            throw new IllegalStateException("一致性哈希环上没有节点");
+        }
+        int index = Arrays.binarySearch(points, hash(hashTag(key)));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return (T) owners[index == points.length ? 0 : index];
+    }
+
+    public Map<String, T> members() {
+        return members;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * 第一个 '{' 与其后第一个 '}' 之间非空时返回该部分，否则返回整个键
+     */
+    static String hashTag(String key) {
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                return key.substring(start + 1, end);
+            }
+        }
+        return key;
+    }
+
+    static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        // FNV 对短键、仅末尾不同的键高位分布较差，补一轮 murmur3 的 fmix64
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,15 @@
+package com.laowang.concurrent.util.redis;
+
+/**
+ * 分布式锁持有时间超过租期一定比例时的回调，见 {@link RLockProfiler#configure}
+ */
+@FunctionalInterface
+public interface LeaseOverrunListener {
+
+    /**
+     * 释放时检查触发，或开启 {@link RLockProfiler#startLeaseMonitor} 后在持有期间由定时检查触发（此时 holdMillis 为已持有时间）
+     *
+     * @param expired 锁已不再由当前线程持有，即租期已过，其他节点可能已经进入临界区
+     */
+    void onLeaseOverrun(String lockName, long holdMillis, long leaseMillis, boolean expired);
+}
@@ -0,0 +1,289 @@
+package com.laowang.concurrent.util.redis;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 分布式锁的等待时间、持有时间和租期余量统计
+ * <p>
+ * 由 {@link RedissonLockUtils} 在加锁时记录等待时间，{@link RLockStat#close()} 释放时记录持有时间，
+ * 按锁名前缀（默认取最后一个 ':' 之前的部分，如 order:lock:1001 归入 order:lock）聚合为对数分桶直方图。
+ * 持有时间超过 slowLockMillis 输出慢锁日志；指定了租期的锁，持有时间超过租期的 leaseWarnFraction 倍时通知
+ * {@link LeaseOverrunListener}，释放时锁已过期（其他节点可能已同时进入临界区）也会通知。
+ * 未指定租期（看门狗续期）的锁不统计余量。
+ * <p>
+ * 只在释放时检查发现不了卡住的持有者。{@link #startLeaseMonitor} 开启后，指定了租期的锁在持有期间登记，
+ * 定时检查已持有时间：达到告警比例或超过租期时立即告警并通知监听器，日志带上持有线程的调用栈。
+ * 同一次持有在每个级别（达到比例、已过期）只通知一次，释放时不会重复通知。
+ */
+@Slf4j
+public class RLockProfiler {
+
+    private static final Map<String, PrefixStats> STATS = new ConcurrentHashMap<>();
+    private static final List<LeaseOverrunListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static volatile Function<String, String> prefixExtractor = RLockProfiler::defaultPrefix;
+    private static volatile long slowLockMillis = 1000;
+    private static volatile double leaseWarnFraction = 0.8;
+
+    /**
+     * 持有中且指定了租期的锁，只在租期监控开启时登记
+     */
+    private static final Set<Hold> HOLDS = ConcurrentHashMap.newKeySet();
+    private static volatile boolean trackingHolds;
+    private static ScheduledExecutorService leaseMonitor;
+
+    /**
+     * @param slowLockMillis    持有时间超过该值输出慢锁日志，小于等于0表示不输出
+     * @param leaseWarnFraction 持有时间达到租期的该比例时告警，取值 (0, 1]
+     */
+    public static void configure(long slowLockMillis, double leaseWarnFraction) {
+        if (leaseWarnFraction <= 0 || leaseWarnFraction > 1) {
+            throw new IllegalArgumentException("leaseWarnFraction 必须在 (0, 1] 之间: " + leaseWarnFraction);
+        }
+        RLockProfiler.slowLockMillis = slowLockMillis;
+        RLockProfiler.leaseWarnFraction = leaseWarnFraction;
+    }
+
+    /**
+     * 替换锁名到统计前缀的映射，返回值应是有限集合，避免每个锁名单独一份直方图
+     */
+    public static void setPrefixExtractor(Function<String, String> extractor) {
+        prefixExtractor = extractor == null ? RLockProfiler::defaultPrefix : extractor;
+    }
+
+    public static void addListener(LeaseOverrunListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(LeaseOverrunListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 各前缀的统计，值为实时对象
+     */
+    public static Map<String, PrefixStats> stats() {
+        return Collections.unmodifiableMap(STATS);
+    }
+
+    public static void reset() {
+        STATS.clear();
+    }
+
+    /**
+     * 开启持有期间的租期检查，每 periodMillis 毫秒扫描一次持有中的锁；开启前已持有的锁不参与检查
+     */
+    public static synchronized void startLeaseMonitor(long periodMillis) {
+        if (leaseMonitor != null) {
+            return;
+        }
+        leaseMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rlock-lease-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        trackingHolds = true;
+        leaseMonitor.scheduleWithFixedDelay(() -> {
+            try {
+                checkHolds(System.nanoTime());
+            } catch (RuntimeException e) {
+                log.error("分布式锁租期检查失败", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopLeaseMonitor() {
+        trackingHolds = false;
+        if (leaseMonitor != null) {
+            leaseMonitor.shutdownNow();
+            leaseMonitor = null;
+        }
+        HOLDS.clear();
+    }
+
+    /**
+     * 登记一次持有，租期监控未开启时返回 null
+     */
+    static Hold trackHold(String lockName, long leaseMillis, long acquiredAt) {
+        if (!trackingHolds) {
+            return null;
+        }
+        Hold hold = new Hold(lockName, leaseMillis, acquiredAt, Thread.currentThread());
+        HOLDS.add(hold);
+        return hold;
+    }
+
+    static void untrackHold(Hold hold) {
+        if (hold != null) {
+            HOLDS.remove(hold);
+        }
+    }
+
+    /**
+     * 检查所有持有中的锁，由租期监控线程定期调用
+     */
+    static void checkHolds(long nowNanos) {
+        double fraction = leaseWarnFraction;
+        for (Hold hold : HOLDS) {
+            long holdNanos = nowNanos - hold.acquiredAt;
+            long leaseNanos = TimeUnit.MILLISECONDS.toNanos(hold.leaseMillis);
+            if (holdNanos >= leaseNanos) {
+                overrun(hold, hold.lockName, TimeUnit.NANOSECONDS.toMillis(holdNanos), hold.leaseMillis, true, false);
+            } else if (holdNanos >= leaseNanos * fraction) {
+                overrun(hold, hold.lockName, TimeUnit.NANOSECONDS.toMillis(holdNanos), hold.leaseMillis, false, false);
+            }
+        }
+    }
+
+    static int heldCount() {
+        return HOLDS.size();
+    }
+
+    static void recordAcquire(String lockName, long waitNanos, boolean acquired) {
+        PrefixStats stats = statsFor(lockName);
+        stats.wait.record(waitNanos);
+        if (acquired) {
+            stats.acquired.increment();
+        } else {
+            stats.failed.increment();
+        }
+    }
+
+    /**
+     * @param leaseMillis 加锁时指定的租期，小于等于0表示看门狗续期
+     * @param expired     释放时锁已不由当前线程持有
+     * @param hold        加锁时登记的持有，未登记为 null
+     */
+    static void recordRelease(String lockName, long holdNanos, long leaseMillis, boolean expired, Hold hold) {
+        untrackHold(hold);
+        PrefixStats stats = statsFor(lockName);
+        stats.hold.record(holdNanos);
+        long holdMillis = TimeUnit.NANOSECONDS.toMillis(holdNanos);
+        long slow = slowLockMillis;
+        if (slow > 0 && holdMillis >= slow) {
+            stats.slow.increment();
+            log.warn("慢锁: {} 持有 {}ms，租期 {}ms", lockName, holdMillis, leaseMillis > 0 ? leaseMillis : "看门狗");
+        }
+        if (leaseMillis <= 0) {
+            return;
+        }
+        stats.headroom.record(TimeUnit.MILLISECONDS.toNanos(leaseMillis) - holdNanos);
+        if (expired || holdMillis >= leaseMillis * leaseWarnFraction) {
+            overrun(hold, lockName, holdMillis, leaseMillis, expired, true);
+        }
+    }
+
+    /**
+     * 同一次持有在每个级别只通知一次，首次通知时计入 leaseOverruns
+     *
+     * @param released 释放时发现；否则为持有期间的定时检查
+     */
+    private static void overrun(Hold hold, String lockName, long holdMillis, long leaseMillis, boolean expired,
+                                boolean released) {
+        int level = expired ? Hold.EXPIRED : Hold.WARNED;
+        int previous = hold == null ? Hold.NONE : hold.escalate(level);
+        if (previous >= level) {
+            return;
+        }
+        if (previous == Hold.NONE) {
+            statsFor(lockName).leaseOverruns.increment();
+        }
+        if (released) {
+            if (expired) {
+                log.error("分布式锁 {} 释放时已过期: 持有 {}ms，租期 {}ms", lockName, holdMillis, leaseMillis);
+            } else {
+                log.warn("分布式锁 {} 持有 {}ms，已达租期 {}ms 的 {}%", lockName, holdMillis, leaseMillis,
+                        Math.round(leaseWarnFraction * 100));
+            }
+        } else {
+            Throwable stack = new Throwable("持有线程 " + hold.holder.getName() + " 的调用栈");
+            stack.setStackTrace(hold.holder.getStackTrace());
+            if (expired) {
+                log.error("分布式锁 {} 已持有 {}ms 仍未释放，超过租期 {}ms，锁已自动释放", lockName, holdMillis, leaseMillis, stack);
+            } else {
+                log.warn("分布式锁 {} 已持有 {}ms 仍未释放，达到租期 {}ms 的 {}%", lockName, holdMillis, leaseMillis,
+                        Math.round(leaseWarnFraction * 100), stack);
+            }
+        }
+        for (LeaseOverrunListener listener : LISTENERS) {
+            try {
+                listener.onLeaseOverrun(lockName, holdMillis, leaseMillis, expired);
+            } catch (RuntimeException e) {
+                log.error("租期告警回调执行失败", e);
+            }
+        }
+    }
+
+    private static PrefixStats statsFor(String lockName) {
+        String prefix = prefixExtractor.apply(lockName);
+        PrefixStats stats = STATS.get(prefix);
+        return stats != null ? stats : STATS.computeIfAbsent(prefix, k -> new PrefixStats());
+    }
+
+    static String defaultPrefix(String lockName) {
+        int index = lockName.lastIndexOf(':');
+        return index > 0 ? lockName.substring(0, index) : lockName;
+    }
+
+    /**
+     * 一次持有中的租期锁及其已通知的级别
+     */
+    static final class Hold {
+        static final int NONE = 0;
+        static final int WARNED = 1;
+        static final int EXPIRED = 2;
+
+        private final String lockName;
+        private final long leaseMillis;
+        private final long acquiredAt;
+        private final Thread holder;
+        private final AtomicInteger reported = new AtomicInteger(NONE);
+
+        Hold(String lockName, long leaseMillis, long acquiredAt, Thread holder) {
+            this.lockName = lockName;
+            this.leaseMillis = leaseMillis;
+            this.acquiredAt = acquiredAt;
+            this.holder = holder;
+        }
+
+        /**
+         * 把已通知级别提升到 level，返回之前的级别；之前的级别不低于 level 时不变
+         */
+        int escalate(int level) {
+            while (true) {
+                int current = reported.get();
+                if (current >= level || reported.compareAndSet(current, level)) {
+                    return current;
+                }
+            }
+        }
+    }
+
+    @Getter
+    public static class PrefixStats {
+        private final LockHistogram wait = new LockHistogram();
+        private final LockHistogram hold = new LockHistogram();
+        /**
+         * 租期减去持有时间，只统计指定了租期的锁
+         */
+        private final LockHistogram headroom = new LockHistogram();
+        private final LongAdder acquired = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+        private final LongAdder leaseOverruns = new LongAdder();
+    }
+}
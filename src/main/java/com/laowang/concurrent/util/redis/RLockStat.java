@@ -1,14 +1,42 @@
 package com.laowang.concurrent.util.redis;
 
+import com.laowang.concurrent.util.LockStat;
 import org.redisson.api.RLock;
 
 public class RLockStat implements AutoCloseable {
     private final RLock rLock;
     private final boolean isLocked;
+    private final long leaseMillis;
+    private final long acquiredAt;
+    private final LockStat local;
+    private final RLockProfiler.Hold hold;
 
     public RLockStat(RLock rLock, boolean isLocked) {
+        this(rLock, isLocked, -1);
+    }
+
+    /**
+     * @param leaseMillis 加锁时指定的租期，小于等于0表示看门狗续期，释放时据此统计租期余量
+     */
+    RLockStat(RLock rLock, boolean isLocked, long leaseMillis) {
         this.rLock = rLock;
         this.isLocked = isLocked;
+        this.leaseMillis = leaseMillis;
+        this.acquiredAt = isLocked ? System.nanoTime() : 0;
+        this.local = null;
+        this.hold = isLocked && leaseMillis > 0 ? RLockProfiler.trackHold(rLock.getName(), leaseMillis, acquiredAt) : null;
+    }
+
+    /**
+     * Redis 熔断时降级的进程内锁，close 时释放本地锁而不访问 Redis
+     */
+    RLockStat(RLock rLock, LockStat local) {
+        this.rLock = rLock;
+        this.isLocked = local.isLocked();
+        this.leaseMillis = -1;
+        this.acquiredAt = 0;
+        this.local = local;
+        this.hold = null;
     }
 
     public RLock getLock() {
@@ -19,10 +47,33 @@ public class RLockStat implements AutoCloseable {
         return isLocked;
     }
 
+    /**
+     * 是否为降级的进程内锁，只在当前 JVM 内互斥
+     */
+    public boolean isDegraded() {
+        return local != null;
+    }
+
     @Override
     public void close() throws Exception {
+        if (local != null) {
+            local.close();
+            return;
+        }
         if (isLocked) {
-            rLock.unlock();
+            long held = System.nanoTime() - acquiredAt;
+            try {
+                rLock.unlock();
+            } catch (IllegalMonitorStateException e) {
+                // 租期已过，锁已自动释放甚至被其他节点获取
+                RLockProfiler.recordRelease(rLock.getName(), held, leaseMillis, true, hold);
+                throw e;
+            } catch (RuntimeException e) {
+                // Redis 异常时不统计本次持有，但要结束登记，锁会在租期到期后自动释放
+                RLockProfiler.untrackHold(hold);
+                throw e;
+            }
+            RLockProfiler.recordRelease(rLock.getName(), held, leaseMillis, false, hold);
         }
     }
-}
\ No newline at end of file
+}
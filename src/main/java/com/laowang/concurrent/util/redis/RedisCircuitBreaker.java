@@ -0,0 +1,193 @@
+package com.laowang.concurrent.util.redis;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis 分布式锁获取的熔断器，通过 {@link RedissonLockUtils#setCircuitBreaker} 启用
+ * <p>
+ * 传入的实例是配置模板：{@link RedissonUtils} 中注册的每个客户端各自持有一个按模板复制的熔断器（共用降级前缀），
+ * 锁名按路由到的客户端使用对应的熔断器，一个 Redis 实例故障只熔断路由到它的锁。
+ * <p>
+ * 连续 failureThreshold 次加锁调用抛出异常或超出等待时间 slowCallMillis 以上即熔断（OPEN），
+ * openMillis 内的加锁请求不再访问 Redis：锁名匹配 {@link #degradable} 前缀的降级为进程内锁，
+ * 其余立即失败（tryLock 返回未加锁，lock 抛出 IllegalStateException）。
+ * 到期后放行一次探测请求（HALF_OPEN），成功则恢复，失败则重新熔断；探测请求超过 openMillis 仍无结果（卡在 Redis 上）时，
+ * 再放行一个新的探测请求，熔断器不会因一个挂起的探测而永远停在 HALF_OPEN。
+ * 探测只由有等待上限的 tryLock 承担，无限等待的 lock() 在 OPEN 和 HALF_OPEN 期间按熔断处理，避免探测本身无限阻塞。
+ * <p>
+ * 降级后的进程内锁只在单个 JVM 内互斥，只应用于允许短时间多节点并发的业务。
+ */
+@Slf4j
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final List<String> degradablePrefixes;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+    private final AtomicLong probeStartedAt = new AtomicLong();
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder degraded = new LongAdder();
+    private final LongAdder trips = new LongAdder();
+
+    /**
+     * @param failureThreshold 连续失败（异常或慢调用）多少次后熔断
+     * @param slowCallMillis   调用耗时超出请求的等待时间多少毫秒记为慢调用
+     * @param openMillis       熔断持续时间，之后放行探测请求
+     */
+    public RedisCircuitBreaker(int failureThreshold, long slowCallMillis, long openMillis) {
+        this(failureThreshold, TimeUnit.MILLISECONDS.toNanos(slowCallMillis), TimeUnit.MILLISECONDS.toNanos(openMillis),
+                new CopyOnWriteArrayList<>());
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold 必须大于0: " + failureThreshold);
+        }
+    }
+
+    private RedisCircuitBreaker(int failureThreshold, long slowCallNanos, long openNanos,
+                                List<String> degradablePrefixes) {
+        this.failureThreshold = failureThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.degradablePrefixes = degradablePrefixes;
+    }
+
+    /**
+     * 相同配置、状态独立的熔断器，降级前缀与本实例共用，之后调用 degradable 对两者同时生效
+     */
+    RedisCircuitBreaker copy() {
+        return new RedisCircuitBreaker(failureThreshold, slowCallNanos, openNanos, degradablePrefixes);
+    }
+
+    /**
+     * 标记以 prefix 开头的锁名在熔断时降级为进程内锁
+     */
+    public RedisCircuitBreaker degradable(String prefix) {
+        degradablePrefixes.add(prefix);
+        return this;
+    }
+
+    public boolean isDegradable(String lockName) {
+        for (String prefix : degradablePrefixes) {
+            if (lockName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否允许本次调用访问 Redis；OPEN 到期后只有一个调用者能把状态切换为 HALF_OPEN 并作为探测请求，
+     * HALF_OPEN 持续 openMillis 仍未得到探测结果时再放行一个探测请求
+     *
+     * @param canProbe 调用是否有等待上限，可以作为探测请求；无限等待的 lock() 传 false
+     */
+    boolean allowRequest(boolean canProbe) {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (!canProbe) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (current == State.OPEN) {
+            if (now - openedAt < openNanos) {
+                return false;
+            }
+            // 先记录探测开始时间再切换状态，看到 HALF_OPEN 的调用者不会读到上一轮的旧值
+            probeStartedAt.set(now);
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                log.info("Redis 熔断到期，放行探测请求");
+                return true;
+            }
+            return false;
+        }
+        long started = probeStartedAt.get();
+        if (current == State.HALF_OPEN && now - started >= openNanos && probeStartedAt.compareAndSet(started, now)) {
+            log.warn("Redis 探测请求 {}ms 内没有结果，放行新的探测请求", TimeUnit.NANOSECONDS.toMillis(openNanos));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param overshootNanos 调用耗时减去请求的等待时间；无限等待的 lock() 传0
+     */
+    void onSuccess(long overshootNanos) {
+        if (overshootNanos > slowCallNanos) {
+            onFailure();
+            return;
+        }
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            log.info("Redis 探测成功，熔断恢复");
+        }
+    }
+
+    void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            trip();
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && state.get() == State.CLOSED) {
+            trip();
+        }
+    }
+
+    void onRejected(boolean degraded) {
+        if (degraded) {
+            this.degraded.increment();
+        } else {
+            rejected.increment();
+        }
+    }
+
+    private void trip() {
+        openedAt = System.nanoTime();
+        State previous = state.getAndSet(State.OPEN);
+        if (previous != State.OPEN) {
+            trips.increment();
+            log.error("Redis 加锁连续失败 {} 次，熔断 {}ms", consecutiveFailures.get(),
+                    TimeUnit.NANOSECONDS.toMillis(openNanos));
+        }
+        consecutiveFailures.set(0);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 熔断期间直接失败的加锁次数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 熔断期间或调用异常时降级为进程内锁的次数
+     */
+    public long getDegraded() {
+        return degraded.sum();
+    }
+
+    public long getTrips() {
+        return trips.sum();
+    }
+}
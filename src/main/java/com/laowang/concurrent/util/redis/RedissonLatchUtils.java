@@ -0,0 +1,238 @@
+package com.laowang.concurrent.util.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBitSet;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 跨节点的分片扇出/汇聚，用法与 LatchUtils 相同
+ * <p>
+ * 协调者用 submitShard 登记分片的派发方式（消息队列、RPC 等），waitFor 创建任务、派发所有分片并等待；
+ * 其他节点上的工作者处理完分片后调用 {@link #shardDone}。等待基于 Redis 发布/订阅通知，不轮询。
+ * <p>
+ * 每个分片的完成状态记录在 {@link RBitSet} 中，任务完成由已完成分片数等于分片总数判定：
+ * shardDone 在一个 Lua 脚本中置位、计数并在最后一个分片完成时发出通知，重复上报同一分片不会重复计数，
+ * 工作者在两步之间宕机也不会丢失进度。任务过期（或从未创建）后迟到的 shardDone 直接忽略，不会重新创建没有过期时间的键。
+ * <p>
+ * 超时后可用 {@link #pendingShards} 查出未完成的分片，按原顺序重新 submitShard 后调用 {@link #resume}，
+ * 只派发尚未完成的分片并继续等待。
+ * 两个键都使用 {jobId} 哈希标签保证在同一个集群槽位，并在 timeout + 保留时间后过期，未完成的任务不会残留在 Redis 中。
+ * <pre>
+ * // 协调者
+ * for (Range range : ranges) {
+ *     RedissonLatchUtils.submitShard((jobId, index) -> mq.send(new ShardMessage(jobId, index, range)));
+ * }
+ * boolean success = RedissonLatchUtils.waitFor("export-20240601", 10L, TimeUnit.MINUTES);
+ *
+ * // 工作者
+ * process(message);
+ * RedissonLatchUtils.shardDone(message.getJobId(), message.getIndex());
+ * </pre>
+ */
+@Slf4j
+public class RedissonLatchUtils {
+
+    private static final ThreadLocal<List<ShardTask>> THREADLOCAL = ThreadLocal.withInitial(LinkedList::new);
+
+    /**
+     * 等待结束后键继续保留的时间，供迟到的 shardDone、pendingShards 和 resume 使用
+     */
+    private static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final String DONE_MESSAGE = "done";
+
+    /**
+     * 创建任务：同名任务尚未完成时返回0；否则写入分片总数、清空完成状态并设置过期时间，返回1
+     * KEYS[1] 任务键（分片总数） KEYS[2] 完成位图 ARGV[1] 分片总数 ARGV[2] 过期毫秒数
+     */
+    static final String START_SCRIPT =
+            "local total = redis.call('get', KEYS[1]); "
+            + "if total and redis.call('bitcount', KEYS[2]) < tonumber(total) then return 0; end; "
+            + "redis.call('set', KEYS[1], ARGV[1], 'px', ARGV[2]); "
+            + "redis.call('del', KEYS[2]); "
+            + "redis.call('setbit', KEYS[2], ARGV[1], 0); "
+            + "redis.call('pexpire', KEYS[2], ARGV[2]); "
+            + "return 1;";
+
+    /**
+     * 继续已有任务：刷新两个键的过期时间，返回分片总数；任务不存在返回-1
+     * KEYS[1] 任务键 KEYS[2] 完成位图 ARGV[1] 过期毫秒数
+     */
+    static final String RESUME_SCRIPT =
+            "local total = redis.call('get', KEYS[1]); "
+            + "if not total then return -1; end; "
+            + "redis.call('pexpire', KEYS[1], ARGV[1]); "
+            + "redis.call('pexpire', KEYS[2], ARGV[1]); "
+            + "return tonumber(total);";
+
+    /**
+     * 上报分片完成：任务不存在返回-1，下标越界返回-2，重复上报返回0，首次上报返回1；最后一个分片完成时发布通知
+     * KEYS[1] 任务键 KEYS[2] 完成位图 ARGV[1] 分片下标 ARGV[2] 通知频道
+     */
+    static final String DONE_SCRIPT =
+            "local total = redis.call('get', KEYS[1]); "
+            + "if not total or redis.call('exists', KEYS[2]) == 0 then return -1; end; "
+            + "total = tonumber(total); "
+            + "local index = tonumber(ARGV[1]); "
+            + "if index < 0 or index >= total then return -2; end; "
+            + "if redis.call('setbit', KEYS[2], index, 1) == 1 then return 0; end; "
+            + "if redis.call('bitcount', KEYS[2]) >= total then redis.call('publish', ARGV[2], '" + DONE_MESSAGE + "'); end; "
+            + "return 1;";
+
+    /**
+     * 分片的派发方式，由协调者实现
+     */
+    @FunctionalInterface
+    public interface ShardTask {
+
+        void dispatch(String jobId, int shardIndex);
+    }
+
+    public static void submitShard(ShardTask task) {
+        THREADLOCAL.get().add(task);
+    }
+
+    private static List<ShardTask> popTask() {
+        List<ShardTask> shardTasks = THREADLOCAL.get();
+        THREADLOCAL.remove();
+        return shardTasks;
+    }
+
+    /**
+     * 创建任务并派发当前线程登记的所有分片，等待全部分片完成
+     *
+     * @param jobId 任务ID，同一时刻不能有两个同名任务在进行
+     * @return 所有分片在超时时间内完成返回true；超时、等待被中断或有分片派发失败返回false
+     * @throws IllegalStateException 同名任务尚未完成
+     */
+    public static boolean waitFor(String jobId, long timeout, TimeUnit timeUnit) {
+        List<ShardTask> shardTasks = popTask();
+        if (shardTasks.isEmpty()) {
+            return true;
+        }
+
+        long ttl = timeUnit.toMillis(timeout) + RETENTION_MILLIS;
+        long started = eval(jobId, START_SCRIPT, List.of(latchKey(jobId), doneKey(jobId)),
+                String.valueOf(shardTasks.size()), String.valueOf(ttl));
+        if (started == 0) {
+            throw new IllegalStateException("分布式任务正在进行: " + jobId);
+        }
+        return dispatchAndAwait(jobId, shardTasks, new BitSet(), shardTasks.size(), timeout, timeUnit);
+    }
+
+    /**
+     * 继续一个超时或派发失败的任务：当前线程按原顺序重新登记全部分片，只派发尚未完成的分片，并刷新过期时间后继续等待；
+     * 不登记分片时只等待
+     *
+     * @return 所有分片在超时时间内完成返回true；超时、等待被中断或有分片派发失败返回false
+     * @throws IllegalStateException 任务不存在或已过期，或登记的分片数与任务不一致
+     */
+    public static boolean resume(String jobId, long timeout, TimeUnit timeUnit) {
+        List<ShardTask> shardTasks = popTask();
+        long ttl = timeUnit.toMillis(timeout) + RETENTION_MILLIS;
+        long total = eval(jobId, RESUME_SCRIPT, List.of(latchKey(jobId), doneKey(jobId)), String.valueOf(ttl));
+        if (total < 0) {
+            throw new IllegalStateException("分布式任务不存在或已过期: " + jobId);
+        }
+        if (!shardTasks.isEmpty() && shardTasks.size() != total) {
+            throw new IllegalStateException(String.format("分布式任务 %s 有 %d 个分片，重新登记了 %d 个",
+                    jobId, total, shardTasks.size()));
+        }
+        BitSet completed = RedissonUtils.getBitSet(doneKey(jobId)).asBitSet();
+        return dispatchAndAwait(jobId, shardTasks, completed, (int) total, timeout, timeUnit);
+    }
+
+    /**
+     * 工作者上报分片完成，可重复调用；任务已过期或不存在时忽略
+     *
+     * @return 首次上报返回true，重复上报或任务不存在返回false
+     * @throws IllegalArgumentException 分片下标超出任务的分片总数
+     */
+    public static boolean shardDone(String jobId, int shardIndex) {
+        long result = eval(jobId, DONE_SCRIPT, List.of(latchKey(jobId), doneKey(jobId)),
+                String.valueOf(shardIndex), channel(jobId));
+        if (result == -1) {
+            log.warn("分布式任务 {} 不存在或已过期，忽略第 {} 个分片的完成上报", jobId, shardIndex);
+            return false;
+        }
+        if (result == -2) {
+            throw new IllegalArgumentException("分布式任务 " + jobId + " 没有第 " + shardIndex + " 个分片");
+        }
+        return result == 1;
+    }
+
+    /**
+     * 尚未上报完成的分片下标
+     *
+     * @param shardCount 任务的分片总数
+     */
+    public static List<Integer> pendingShards(String jobId, int shardCount) {
+        RBitSet done = RedissonUtils.getBitSet(doneKey(jobId));
+        return pending(done.asBitSet(), shardCount);
+    }
+
+    private static boolean dispatchAndAwait(String jobId, List<ShardTask> shardTasks, BitSet completed, int total,
+                                            long timeout, TimeUnit timeUnit) {
+        // 先订阅再派发和检查进度，最后一个分片在订阅之前完成也不会错过
+        RTopic topic = RedissonUtils.getClient(latchKey(jobId)).getTopic(channel(jobId), StringCodec.INSTANCE);
+        CountDownLatch finished = new CountDownLatch(1);
+        int listenerId = topic.addListener(String.class, (channel, message) -> finished.countDown());
+        try {
+            for (int i : pending(completed, shardTasks.size())) {
+                try {
+                    shardTasks.get(i).dispatch(jobId, i);
+                } catch (RuntimeException e) {
+                    // 已派发的分片继续执行，调用方可通过 pendingShards 和 resume 重新派发
+                    log.error("分布式任务 {} 第 {} 个分片派发失败", jobId, i, e);
+                    return false;
+                }
+            }
+            if (pendingShards(jobId, total).isEmpty()) {
+                return true;
+            }
+            return finished.await(timeout, timeUnit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    private static List<Integer> pending(BitSet completed, int shardCount) {
+        List<Integer> pending = new ArrayList<>();
+        for (int i = completed.nextClearBit(0); i < shardCount; i = completed.nextClearBit(i + 1)) {
+            pending.add(i);
+        }
+        return pending;
+    }
+
+    private static long eval(String jobId, String script, List<Object> keys, Object... values) {
+        RedissonClient client = RedissonUtils.getClient(latchKey(jobId));
+        Long result = client.getScript(StringCodec.INSTANCE)
+                .eval(latchKey(jobId), RScript.Mode.READ_WRITE, script, RScript.ReturnType.INTEGER, keys, values);
+        return result;
+    }
+
+    private static String latchKey(String jobId) {
+        return "latch:{" + jobId + "}";
+    }
+
+    private static String doneKey(String jobId) {
+        return "latch:{" + jobId + "}:done";
+    }
+
+    private static String channel(String jobId) {
+        return "latch:{" + jobId + "}:channel";
+    }
+}
@@ -1,73 +1,238 @@
 package com.laowang.concurrent.util.redis;
 
+import com.laowang.concurrent.util.LockStat;
+import com.laowang.concurrent.util.ReentrantLockUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 加锁等待时间与释放时的持有时间、租期余量记录到 {@link RLockProfiler}
+ * <p>
+ * 设置 {@link RedisCircuitBreaker} 后，Redis 异常或响应缓慢时按熔断器配置快速失败或降级为进程内锁；
+ * 每个 Redis 客户端有独立的熔断状态，锁名按 {@link RedissonUtils#getClientId} 的路由使用对应客户端的熔断器；
+ * 客户端在 {@link RedissonUtils} 中被替换或移除时，其熔断器一并丢弃。
+ */
+@Slf4j
 public class RedissonLockUtils {
 
-    private static RLock getLock(String key) {
-        return RedissonUtils.getLock(key);
+    /**
+     * 降级锁在 ReentrantLockUtils 中的命名空间，避免与本地同名锁互斥
+     */
+    private static final String LOCAL_PREFIX = "redis-fallback:";
+
+    private static volatile CircuitBreakers circuitBreakers;
+
+    static {
+        RedissonUtils.addClientListener(RedissonLockUtils::clientChanged);
+    }
+
+    /**
+     * 启用熔断，传 null 关闭；breaker 作为模板，每个客户端在首次加锁时复制一个独立的熔断器
+     */
+    public static void setCircuitBreaker(RedisCircuitBreaker breaker) {
+        circuitBreakers = breaker == null ? null : new CircuitBreakers(breaker);
+    }
+
+    /**
+     * 熔断器模板，未启用时为 null
+     */
+    public static RedisCircuitBreaker getCircuitBreaker() {
+        CircuitBreakers breakers = circuitBreakers;
+        return breakers == null ? null : breakers.template;
+    }
+
+    /**
+     * 各客户端的熔断器，键为客户端标识；只包含已经加过锁的客户端
+     */
+    public static Map<String, RedisCircuitBreaker> getCircuitBreakers() {
+        CircuitBreakers breakers = circuitBreakers;
+        return breakers == null ? Map.of() : Collections.unmodifiableMap(breakers.byClient);
     }
 
     public static RLockStat tryLock(RLock lock, long waitTime, long leaseTime, TimeUnit timeUnit) {
-        boolean tryLock = false;
-        try {
-            tryLock = lock.tryLock(waitTime, leaseTime, timeUnit);
-        } catch (InterruptedException e) {
-            System.err.println("Warning: lock failed due to thread interruption");
-        }
-        return new RLockStat(lock, tryLock);
+        return tryLock(lock, null, waitTime, leaseTime, timeUnit);
     }
 
     public static RLockStat lock(RLock lock, long leaseTime, TimeUnit timeUnit) {
-        lock.lock(leaseTime, timeUnit);
-        return new RLockStat(lock, true);
+        return lock(lock, null, leaseTime, timeUnit);
     }
 
+    /**
+     * 注意 leaseTime 实际作为等待时间传给 {@link RLock#tryLock(long, TimeUnit)}，获得的锁由看门狗续期
+     */
     public static RLockStat tryLock(RLock lock, long leaseTime, TimeUnit timeUnit) {
-        boolean tryLock = false;
-        try {
-            tryLock = lock.tryLock(leaseTime, timeUnit);
-        } catch (InterruptedException e) {
-            System.err.println("Warning: lock failed due to thread interruption");
-        }
-        return new RLockStat(lock, tryLock);
+        return tryLock(lock, null, leaseTime, timeUnit);
     }
 
     public static RLockStat tryLock(RLock lock) {
-        boolean tryLock = lock.tryLock();
-        return new RLockStat(lock, tryLock);
+        return tryLock(lock, null);
     }
 
     public static RLockStat lock(RLock lock) {
-        lock.lock();
-        return new RLockStat(lock, true);
+        return lock(lock, null);
     }
 
     public static RLockStat tryLock(String lockName, long leaseTime, TimeUnit timeUnit) {
-        RLock lock = getLock(lockName);
-        return tryLock(lock, leaseTime, timeUnit);
+        RedissonUtils.Node node = RedissonUtils.route(lockName);
+        return tryLock(node.getClient().getLock(lockName), node.getId(), leaseTime, timeUnit);
     }
 
     public static RLockStat tryLock(String lockName) {
-        RLock lock = getLock(lockName);
-        return tryLock(lock);
+        RedissonUtils.Node node = RedissonUtils.route(lockName);
+        return tryLock(node.getClient().getLock(lockName), node.getId());
     }
 
     public static RLockStat lock(String lockName) {
-        RLock lock = getLock(lockName);
-        return lock(lock);
+        RedissonUtils.Node node = RedissonUtils.route(lockName);
+        return lock(node.getClient().getLock(lockName), node.getId());
     }
 
     public static RLockStat tryLock(String lockName, long waitTime, long leaseTime, TimeUnit timeUnit) {
-        RLock lock = getLock(lockName);
-        return tryLock(lock, waitTime, leaseTime, timeUnit);
+        RedissonUtils.Node node = RedissonUtils.route(lockName);
+        return tryLock(node.getClient().getLock(lockName), node.getId(), waitTime, leaseTime, timeUnit);
     }
 
     public static RLockStat lock(String lockName, long leaseTime, TimeUnit timeUnit) {
-        RLock lock = getLock(lockName);
-        return lock(lock, leaseTime, timeUnit);
+        RedissonUtils.Node node = RedissonUtils.route(lockName);
+        return lock(node.getClient().getLock(lockName), node.getId(), leaseTime, timeUnit);
+    }
+
+    /*
+     * 以下 clientId 为锁所在客户端的标识；按锁名加锁时与取锁来自同一次路由，直接传入 RLock 时为 null，需要熔断器时再路由
+     */
+
+    private static RLockStat tryLock(RLock lock, String clientId, long waitTime, long leaseTime, TimeUnit timeUnit) {
+        return acquire(lock, clientId, timeUnit.toMillis(waitTime), leaseMillis(leaseTime, timeUnit),
+                () -> lock.tryLock(waitTime, leaseTime, timeUnit));
     }
 
+    private static RLockStat lock(RLock lock, String clientId, long leaseTime, TimeUnit timeUnit) {
+        return acquire(lock, clientId, -1, leaseMillis(leaseTime, timeUnit), () -> {
+            lock.lock(leaseTime, timeUnit);
+            return true;
+        });
+    }
+
+    private static RLockStat tryLock(RLock lock, String clientId, long leaseTime, TimeUnit timeUnit) {
+        return acquire(lock, clientId, timeUnit.toMillis(leaseTime), -1, () -> lock.tryLock(leaseTime, timeUnit));
+    }
+
+    private static RLockStat tryLock(RLock lock, String clientId) {
+        return acquire(lock, clientId, 0, -1, lock::tryLock);
+    }
+
+    private static RLockStat lock(RLock lock, String clientId) {
+        return acquire(lock, clientId, -1, -1, () -> {
+            lock.lock();
+            return true;
+        });
+    }
+
+    @FunctionalInterface
+    private interface Acquisition {
+        boolean acquire() throws InterruptedException;
+    }
+
+    /**
+     * @param waitMillis 请求的等待时间，0 为不等待，-1 为无限等待
+     */
+    private static RLockStat acquire(RLock lock, String clientId, long waitMillis, long leaseMillis,
+                                     Acquisition acquisition) {
+        CircuitBreakers breakers = circuitBreakers;
+        RedisCircuitBreaker breaker = breakers == null ? null
+                : breakers.forClient(clientId != null ? clientId : RedissonUtils.getClientId(lock.getName()));
+        // 无限等待的 lock() 不作为熔断探测请求，探测卡住时会一直占用调用线程
+        if (breaker != null && !breaker.allowRequest(waitMillis >= 0)) {
+            return rejected(breaker, lock, waitMillis);
+        }
+        boolean locked = false;
+        long start = System.nanoTime();
+        try {
+            locked = acquisition.acquire();
+        } catch (InterruptedException e) {
+            // 被中断不能说明 Redis 是否正常，熔断器保持原状态；若本次是探测请求，探测名额在 openMillis 后重新放出
+            Thread.currentThread().interrupt();
+            log.warn("等待 Redis 锁 {} 时被中断", lock.getName());
+            RLockProfiler.recordAcquire(lock.getName(), System.nanoTime() - start, false);
+            return new RLockStat(lock, false, leaseMillis);
+        } catch (RuntimeException e) {
+            if (breaker == null) {
+                throw e;
+            }
+            breaker.onFailure();
+            if (!breaker.isDegradable(lock.getName())) {
+                throw e;
+            }
+            log.warn("Redis 加锁 {} 失败，降级为进程内锁", lock.getName(), e);
+            breaker.onRejected(true);
+            return degraded(lock, waitMillis);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (breaker != null) {
+            breaker.onSuccess(waitMillis < 0 ? 0 : elapsed - TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        }
+        RLockProfiler.recordAcquire(lock.getName(), elapsed, locked);
+        return new RLockStat(lock, locked, leaseMillis);
+    }
+
+    private static RLockStat rejected(RedisCircuitBreaker breaker, RLock lock, long waitMillis) {
+        boolean degradable = breaker.isDegradable(lock.getName());
+        breaker.onRejected(degradable);
+        if (degradable) {
+            return degraded(lock, waitMillis);
+        }
+        if (waitMillis < 0) {
+            throw new IllegalStateException("Redis 熔断中，拒绝加锁: " + lock.getName());
+        }
+        return new RLockStat(lock, false);
+    }
+
+    private static RLockStat degraded(RLock lock, long waitMillis) {
+        String name = LOCAL_PREFIX + lock.getName();
+        LockStat local;
+        if (waitMillis < 0) {
+            local = ReentrantLockUtils.lock(name);
+        } else if (waitMillis == 0) {
+            local = ReentrantLockUtils.tryLock(name);
+        } else {
+            local = ReentrantLockUtils.tryLock(name, waitMillis, TimeUnit.MILLISECONDS);
+        }
+        return new RLockStat(lock, local);
+    }
+
+    /**
+     * 客户端被替换或移除后丢弃它的熔断器，同一标识的新客户端从模板重新开始，不继承旧客户端的熔断状态和计数
+     */
+    private static void clientChanged(String clientId) {
+        CircuitBreakers breakers = circuitBreakers;
+        if (breakers != null) {
+            breakers.byClient.remove(clientId);
+        }
+    }
+
+    private static long leaseMillis(long leaseTime, TimeUnit timeUnit) {
+        return leaseTime > 0 ? timeUnit.toMillis(leaseTime) : -1;
+    }
+
+    /**
+     * 一次 setCircuitBreaker 的模板和按客户端复制出的熔断器，整体替换，不会混用新旧模板
+     */
+    private static final class CircuitBreakers {
+        private final RedisCircuitBreaker template;
+        private final Map<String, RedisCircuitBreaker> byClient = new ConcurrentHashMap<>();
+
+        CircuitBreakers(RedisCircuitBreaker template) {
+            this.template = template;
+        }
+
+        RedisCircuitBreaker forClient(String clientId) {
+            RedisCircuitBreaker breaker = byClient.get(clientId);
+            return breaker != null ? breaker : byClient.computeIfAbsent(clientId, id -> template.copy());
+        }
+    }
 }
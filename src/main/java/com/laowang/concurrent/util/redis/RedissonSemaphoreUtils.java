@@ -0,0 +1,337 @@
+package com.laowang.concurrent.util.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RPermitExpirableSemaphore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 集群范围的并发限制，用法与 SemaphoreUtils 相同，许可来自 Redis 上的 {@link RPermitExpirableSemaphore}
+ * <p>
+ * 每个许可带租期，节点宕机后许可到期自动归还集群；租期应大于单个任务的最长执行时间，
+ * 否则任务执行期间许可可能过期并被其他节点取走。每个任务开始时都持有完整的租期：
+ * 本地交接的许可会先在 Redis 上续期为完整租期，续期失败（已过期）的许可直接丢弃。
+ * <p>
+ * 同一个信号量在本节点只有一个许可池：等待者较多时一次从 Redis 批量取得多个许可，
+ * 任务结束后若本节点仍有等待者，许可直接交给下一个任务而不经过获取等待；没有等待者时立即归还，不会囤积许可。
+ * 本节点同一时刻只有一个等待者在 Redis 上阻塞等待，其余等待者在本地等待，本地释放的许可会立即唤醒它们。
+ * 同名信号量在本节点的 batchSize 和租期以首次调用为准，之后传入不同的值会抛出 IllegalArgumentException。
+ * <pre>
+ * for (Order order : orders) {
+ *     RedissonSemaphoreUtils.submitTask(executor, () -> callBackend(order));
+ * }
+ * RedissonSemaphoreUtils.start("backend:permits", 100, 8, 30L, TimeUnit.SECONDS).join();
+ * </pre>
+ */
+@Slf4j
+public class RedissonSemaphoreUtils {
+
+    /**
+     * 当前线程已提交未启动的任务，只在提交后绑定，start 或 reset 时解除
+     */
+    private static final ThreadLocal<List<TaskInfo>> THREADLOCAL = new ThreadLocal<>();
+    private static final Map<String, PermitPool> POOLS = new ConcurrentHashMap<>();
+
+    public static void submitTask(Executor executor, Runnable after) {
+        submitTask(executor, null, after);
+    }
+
+    public static void submitTask(Executor executor, Runnable before, Runnable after) {
+        List<TaskInfo> taskInfos = THREADLOCAL.get();
+        if (taskInfos == null) {
+            taskInfos = new ArrayList<>();
+            THREADLOCAL.set(taskInfos);
+        }
+        taskInfos.add(new TaskInfo(executor, before, after));
+    }
+
+    /**
+     * 丢弃当前线程已提交但尚未 start 的任务，提交后因异常无法 start 时调用
+     */
+    public static void reset() {
+        THREADLOCAL.remove();
+    }
+
+    private static List<TaskInfo> popTask() {
+        List<TaskInfo> taskInfos = THREADLOCAL.get();
+        THREADLOCAL.remove();
+        return taskInfos == null ? List.of() : taskInfos;
+    }
+
+    /**
+     * 启动已提交的任务，整个集群同时执行的任务数不超过 totalPermits
+     *
+     * @param name         信号量名称
+     * @param totalPermits 集群总许可数，仅在信号量尚未初始化时生效
+     * @param batchSize    每次从 Redis 批量获取的最大许可数
+     * @param leaseTime    许可租期
+     * @return 所有任务结束后完成；任务异常只记录日志
+     */
+    public static CompletableFuture<Void> start(String name, int totalPermits, int batchSize,
+                                                long leaseTime, TimeUnit timeUnit) {
+        List<TaskInfo> taskInfos = popTask();
+        if (taskInfos.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        PermitPool pool = pool(name, totalPermits, batchSize, timeUnit.toMillis(leaseTime));
+        AtomicInteger remaining = new AtomicInteger(taskInfos.size());
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        for (TaskInfo taskInfo : taskInfos) {
+            try {
+                taskInfo.executor.execute(() -> {
+                    try {
+                        run(pool, taskInfo);
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            future.complete(null);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.error("任务被线程池拒绝，信号量: {}", name, e);
+                if (remaining.decrementAndGet() == 0) {
+                    future.complete(null);
+                }
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 本节点当前持有但未使用的许可数
+     */
+    public static int idlePermits(String name) {
+        PermitPool pool = POOLS.get(name);
+        return pool == null ? 0 : pool.idleCount();
+    }
+
+    private static PermitPool pool(String name, int totalPermits, int batchSize, long leaseMillis) {
+        int batch = Math.max(1, batchSize);
+        PermitPool pool = POOLS.computeIfAbsent(name, key -> {
+            RPermitExpirableSemaphore semaphore = RedissonUtils.getPermitExpirableSemaphore(key);
+            if (semaphore.trySetPermits(totalPermits)) {
+                log.info("初始化分布式信号量 {}，总许可数: {}", key, totalPermits);
+            }
+            return new PermitPool(semaphore, batch, leaseMillis);
+        });
+        if (pool.batchSize != batch || pool.leaseMillis != leaseMillis) {
+            throw new IllegalArgumentException(String.format(
+                    "分布式信号量 %s 已按 batchSize=%d、租期=%dms 创建，不能改为 batchSize=%d、租期=%dms",
+                    name, pool.batchSize, pool.leaseMillis, batch, leaseMillis));
+        }
+        return pool;
+    }
+
+    private static void run(PermitPool pool, TaskInfo taskInfo) {
+        Permit permit;
+        try {
+            if (taskInfo.before != null) {
+                taskInfo.before.run();
+            }
+            permit = pool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("等待分布式许可时被中断", e);
+            return;
+        } catch (RuntimeException e) {
+            log.error("获取分布式许可失败", e);
+            return;
+        }
+
+        try {
+            if (taskInfo.after != null) {
+                taskInfo.after.run();
+            }
+        } catch (RuntimeException e) {
+            log.error("任务执行失败", e);
+        } finally {
+            pool.release(permit);
+        }
+    }
+
+    private static final class PermitPool {
+
+        private static final long POLL_MILLIS = 1000L;
+
+        private final RPermitExpirableSemaphore semaphore;
+        private final int batchSize;
+        private final long leaseMillis;
+        // 以下字段由 this 保护
+        private final Deque<Permit> idle = new ArrayDeque<>();
+        private int waiters;
+        /**
+         * 是否有等待者正在 Redis 上阻塞等待
+         */
+        private boolean polling;
+
+        PermitPool(RPermitExpirableSemaphore semaphore, int batchSize, long leaseMillis) {
+            this.semaphore = semaphore;
+            this.batchSize = batchSize;
+            this.leaseMillis = leaseMillis;
+        }
+
+        Permit acquire() throws InterruptedException {
+            synchronized (this) {
+                waiters++;
+            }
+            try {
+                while (true) {
+                    Permit permit = pollIdle();
+                    if (permit != null) {
+                        return permit;
+                    }
+                    int want;
+                    synchronized (this) {
+                        if (!idle.isEmpty()) {
+                            continue;
+                        }
+                        if (polling) {
+                            // 已有等待者在 Redis 上等待，本地等待 release 交接或轮到自己去 Redis 等待
+                            wait(POLL_MILLIS);
+                            continue;
+                        }
+                        polling = true;
+                        want = Math.min(batchSize, waiters);
+                    }
+                    try {
+                        if (want > 1) {
+                            // 批量获取是全有或全无的，失败后退化为单个等待
+                            List<String> ids = semaphore.tryAcquire(want, 0, leaseMillis, TimeUnit.MILLISECONDS);
+                            if (ids != null && !ids.isEmpty()) {
+                                return keepRest(ids);
+                            }
+                        }
+                        String id = semaphore.tryAcquire(POLL_MILLIS, leaseMillis, TimeUnit.MILLISECONDS);
+                        if (id != null) {
+                            return new Permit(id, System.currentTimeMillis() + leaseMillis);
+                        }
+                    } finally {
+                        synchronized (this) {
+                            polling = false;
+                            // 由一个本地等待者接替在 Redis 上等待
+                            notify();
+                        }
+                    }
+                }
+            } finally {
+                List<Permit> surplus = null;
+                synchronized (this) {
+                    waiters--;
+                    if (waiters == 0 && !idle.isEmpty()) {
+                        surplus = new ArrayList<>(idle);
+                        idle.clear();
+                    }
+                }
+                if (surplus != null) {
+                    releaseToRedis(surplus);
+                }
+            }
+        }
+
+        /**
+         * 本节点有本地等待者且许可尚未过期时留给下一个任务（取用时续期）并唤醒它，否则归还 Redis；
+         * 只剩在 Redis 上等待的等待者时归还 Redis，由 Redis 的释放通知唤醒它
+         */
+        void release(Permit permit) {
+            synchronized (this) {
+                int parked = polling ? waiters - 1 : waiters;
+                if (parked > idle.size() && permit.remainingMillis() > 0) {
+                    idle.push(permit);
+                    notify();
+                    return;
+                }
+            }
+            releaseToRedis(List.of(permit));
+        }
+
+        synchronized int idleCount() {
+            return idle.size();
+        }
+
+        private Permit keepRest(List<String> ids) {
+            long expiresAt = System.currentTimeMillis() + leaseMillis;
+            synchronized (this) {
+                for (int i = 1; i < ids.size(); i++) {
+                    idle.push(new Permit(ids.get(i), expiresAt));
+                }
+                notifyAll();
+            }
+            return new Permit(ids.get(0), expiresAt);
+        }
+
+        /**
+         * 取一个空闲许可并在 Redis 上续期为完整租期，保证任务开始时剩余租期不少于 leaseMillis；
+         * 续期失败说明许可已在 Redis 上过期，可能已被其他节点取得，直接丢弃
+         */
+        private Permit pollIdle() {
+            while (true) {
+                Permit permit;
+                synchronized (this) {
+                    permit = idle.poll();
+                }
+                if (permit == null) {
+                    return null;
+                }
+                if (permit.remainingMillis() > 0) {
+                    try {
+                        if (semaphore.updateLeaseTime(permit.id, leaseMillis, TimeUnit.MILLISECONDS)) {
+                            return new Permit(permit.id, System.currentTimeMillis() + leaseMillis);
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("续期分布式许可失败，丢弃该许可", e);
+                    }
+                }
+            }
+        }
+
+        private void releaseToRedis(List<Permit> permits) {
+            List<String> ids = new ArrayList<>(permits.size());
+            for (Permit permit : permits) {
+                ids.add(permit.id);
+            }
+            try {
+                // 已过期的许可会被忽略
+                semaphore.tryRelease(ids);
+            } catch (RuntimeException e) {
+                log.warn("归还分布式许可失败，许可将在租期到期后自动释放", e);
+            }
+        }
+    }
+
+    private static final class Permit {
+        private final String id;
+        private final long expiresAt;
+
+        Permit(String id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+
+        long remainingMillis() {
+            return expiresAt - System.currentTimeMillis();
+        }
+    }
+
+    private static final class TaskInfo {
+        private final Executor executor;
+        private final Runnable before;
+        private final Runnable after;
+
+        TaskInfo(Executor executor, Runnable before, Runnable after) {
+            this.executor = executor;
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
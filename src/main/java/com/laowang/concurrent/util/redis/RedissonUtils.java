@@ -1,23 +1,135 @@
 package com.laowang.concurrent.util.redis;
 
+import org.redisson.api.RBitSet;
+import org.redisson.api.RCountDownLatch;
 import org.redisson.api.RLock;
+import org.redisson.api.RPermitExpirableSemaphore;
 import org.redisson.api.RReadWriteLock;
 import org.redisson.api.RedissonClient;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Redisson 客户端注册表
+ * <p>
+ * 可注册多个相互独立的 Redis 实例，每个键按一致性哈希（{@link ConsistentHashRing}）路由到其中一个，
+ * 分布式锁的吞吐随实例数水平扩展。增删实例会使约 1/N 的锁名改变归属，
+ * 正在持有的锁在新实例上不再互斥，应在启动时或业务低峰期调整。
+ */
 public class RedissonUtils {
 
-    private static RedissonClient redissonClient;
+    private static final int VIRTUAL_NODES = 160;
+    private static final String DEFAULT_CLIENT = "default";
+
+    private static volatile ConsistentHashRing<Node> ring = new ConsistentHashRing<>(Map.of(), VIRTUAL_NODES);
+    /**
+     * 客户端被替换或移除时按客户端标识回调，用于丢弃与旧客户端绑定的状态（如熔断器）
+     */
+    private static final List<Consumer<String>> CLIENT_LISTENERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * 只使用一个客户端，替换之前注册的所有客户端
+     */
+    public static synchronized void setUp(RedissonClient redissonClient) {
+        Set<String> previous = new HashSet<>(ring.members().keySet());
+        previous.add(DEFAULT_CLIENT);
+        ring = new ConsistentHashRing<>(Map.of(DEFAULT_CLIENT, new Node(DEFAULT_CLIENT, redissonClient)), VIRTUAL_NODES);
+        previous.forEach(RedissonUtils::clientChanged);
+    }
+
+    /**
+     * 注册或替换一个客户端
+     *
+     * @param id 实例标识，决定其在哈希环上的位置，重启后应保持不变
+     */
+    public static synchronized void addClient(String id, RedissonClient redissonClient) {
+        ring = ring.with(id, new Node(id, redissonClient));
+        clientChanged(id);
+    }
+
+    public static synchronized void removeClient(String id) {
+        ring = ring.without(id);
+        clientChanged(id);
+    }
+
+    static void addClientListener(Consumer<String> listener) {
+        CLIENT_LISTENERS.add(listener);
+    }
+
+    private static void clientChanged(String id) {
+        for (Consumer<String> listener : CLIENT_LISTENERS) {
+            listener.accept(id);
+        }
+    }
+
+    /**
+     * 键所在的客户端
+     *
+     * @throws IllegalStateException 尚未注册任何客户端
+     */
+    public static RedissonClient getClient(String key) {
+        return ring.route(key).client;
+    }
 
-    public static void setUp(RedissonClient redissonClient) {
-        RedissonUtils.redissonClient = redissonClient;
+    /**
+     * 键所在客户端的标识，即 addClient 时的 id；setUp 注册的客户端为 "default"
+     *
+     * @throws IllegalStateException 尚未注册任何客户端
+     */
+    public static String getClientId(String key) {
+        return ring.route(key).id;
+    }
+
+    /**
+     * 键所在的客户端及其标识，两者来自同一次路由
+     *
+     * @throws IllegalStateException 尚未注册任何客户端
+     */
+    static Node route(String key) {
+        return ring.route(key);
     }
 
     public static RLock getLock(String key) {
-        RLock lock = redissonClient.getLock(key);
+        RLock lock = getClient(key).getLock(key);
         return lock;
     }
 
     public static RReadWriteLock getRWLock(String key) {
-        return redissonClient.getReadWriteLock(key);
+        return getClient(key).getReadWriteLock(key);
+    }
+
+    public static RPermitExpirableSemaphore getPermitExpirableSemaphore(String key) {
+        return getClient(key).getPermitExpirableSemaphore(key);
+    }
+
+    public static RCountDownLatch getCountDownLatch(String key) {
+        return getClient(key).getCountDownLatch(key);
+    }
+
+    public static RBitSet getBitSet(String key) {
+        return getClient(key).getBitSet(key);
+    }
+
+    static final class Node {
+        private final String id;
+        private final RedissonClient client;
+
+        Node(String id, RedissonClient client) {
+            this.id = id;
+            this.client = client;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        RedissonClient getClient() {
+            return client;
+        }
     }
 }
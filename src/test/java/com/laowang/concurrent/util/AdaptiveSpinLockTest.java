@@ -0,0 +1,97 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveSpinLockTest {
+
+    private long counter;
+
+    @Test
+    @DisplayName("通过LockStat使用时保持互斥，可重入")
+    void testMutualExclusion() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try (LockStat outer = AdaptiveLockUtils.lock("test:adaptive");
+                         LockStat inner = AdaptiveLockUtils.lock("test:adaptive")) {
+                        counter++;
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        assertEquals((long) threads * perThread, counter);
+        assertFalse(AdaptiveLockUtils.getLock("test:adaptive").isLocked());
+    }
+
+    @Test
+    @DisplayName("长临界区使平均持有时间超过上限后不再自旋")
+    void testSpinBudgetAdapts() throws InterruptedException {
+        AdaptiveSpinLock lock = new AdaptiveSpinLock();
+        for (int i = 0; i < 64; i++) {
+            lock.lock();
+            try {
+                Thread.sleep(1);
+            } finally {
+                lock.unlock();
+            }
+        }
+        assertTrue(lock.getAverageHoldNanos() > AdaptiveSpinLock.MAX_SPIN_NANOS);
+        assertEquals(0, lock.spinBudgetNanos());
+    }
+
+    @Test
+    @DisplayName("条件等待期间不计入持有时间，等待队列查询可用于包装后的条件")
+    void testConditionWaitNotCountedAsHold() throws Exception {
+        AdaptiveSpinLock lock = new AdaptiveSpinLock();
+        Condition ready = lock.newCondition();
+        lock.lock();
+        try {
+            assertFalse(lock.hasWaiters(ready));
+            assertEquals(0, lock.getWaitQueueLength(ready));
+            // 等待超时，期间没有其他线程获得锁
+            assertFalse(ready.await(300, TimeUnit.MILLISECONDS));
+        } finally {
+            lock.unlock();
+        }
+        assertTrue(lock.getAverageHoldNanos() < TimeUnit.MILLISECONDS.toNanos(10),
+                "平均持有时间: " + lock.getAverageHoldNanos());
+    }
+
+    @Test
+    @DisplayName("tryLock超时为0时不自旋，线程已被中断时抛出InterruptedException")
+    void testTimedTryLock() throws Exception {
+        AdaptiveSpinLock lock = new AdaptiveSpinLock();
+        Thread holder = new Thread(lock::lock);
+        holder.start();
+        holder.join();
+        assertFalse(lock.tryLock(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, lock.getSpinAcquired());
+
+        AdaptiveSpinLock free = new AdaptiveSpinLock();
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> free.tryLock(1, TimeUnit.SECONDS));
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertFalse(free.isLocked());
+    }
+}
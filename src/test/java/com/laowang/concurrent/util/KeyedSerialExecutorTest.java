@@ -0,0 +1,121 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedSerialExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("同一key按提交顺序串行执行，空闲key自动回收")
+    void testSerialPerKey() throws InterruptedException {
+        KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(pool, 4);
+        int keys = 16;
+        int tasksPerKey = 2000;
+        List<List<Integer>> seen = new ArrayList<>();
+        AtomicInteger[] running = new AtomicInteger[keys];
+        AtomicInteger overlaps = new AtomicInteger();
+        for (int k = 0; k < keys; k++) {
+            seen.add(new ArrayList<>());
+            running[k] = new AtomicInteger();
+        }
+        CountDownLatch done = new CountDownLatch(keys * tasksPerKey);
+
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                int key = k;
+                int seq = i;
+                executor.execute(key, () -> {
+                    if (running[key].incrementAndGet() != 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    // 串行执行保证了对非线程安全列表的写入不会并发
+                    seen.get(key).add(seq);
+                    running[key].decrementAndGet();
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (List<Integer> list : seen) {
+            assertEquals(tasksPerKey, list.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, list.get(i));
+            }
+        }
+        // 最后一个任务完成后才退役
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.activeKeys() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.activeKeys());
+    }
+
+    @Test
+    @DisplayName("不同key并行执行，任务异常不影响后续任务")
+    void testParallelAcrossKeys() throws InterruptedException {
+        KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool, 16);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CountDownLatch after = new CountDownLatch(1);
+        for (String key : List.of("a", "b")) {
+            executor.execute(key, () -> {
+                bothRunning.countDown();
+                try {
+                    bothRunning.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                throw new IllegalStateException("boom");
+            });
+        }
+        executor.execute("a", after::countDown);
+
+        assertTrue(after.await(5, TimeUnit.SECONDS));
+        assertEquals(0, bothRunning.getCount());
+    }
+
+    @Test
+    @DisplayName("任务抛出Error后计数仍然递减，同一key的后续任务继续执行，队列最终退役")
+    void testErrorDoesNotStallKey() throws InterruptedException {
+        KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool, 16);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch after = new CountDownLatch(2);
+        executor.execute("a", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            throw new AssertionError("fatal");
+        });
+        executor.execute("a", after::countDown);
+        release.countDown();
+
+        executor.execute("a", after::countDown);
+        assertTrue(after.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.activeKeys() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.activeKeys());
+        assertEquals(0, executor.pendingTasks("a"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockHandleTest {
+
+    @Test
+    @DisplayName("句柄与按名称加锁操作同一把锁，同名句柄复用同一实例")
+    void testHandleSharesNamedLock() throws Exception {
+        LockHandle handle = ReentrantLockUtils.handle("handle-test");
+        assertSame(handle, ReentrantLockUtils.handle("handle-test"));
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            try (LockStat ignored = handle.lock()) {
+                assertFalse(other.submit(() -> ReentrantLockUtils.tryLock("handle-test").isLocked()).get());
+            }
+            try (LockStat ignored = ReentrantLockUtils.lock("handle-test")) {
+                assertFalse(other.submit(() -> handle.tryLock().isLocked()).get());
+            }
+
+            ReadWriteLockHandle rw = ReadWriteLockUtils.handle("handle-rw-test");
+            try (LockStat read = rw.readLock()) {
+                assertTrue(read.isLocked());
+                assertTrue(other.submit(() -> {
+                    try (LockStat second = ReadWriteLockUtils.tryReadLock("handle-rw-test")) {
+                        return second.isLocked();
+                    }
+                }).get());
+                assertFalse(other.submit(() -> ReadWriteLockUtils.tryWriteLock("handle-rw-test").isLocked()).get());
+            }
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("注册轨迹监听器后句柄、long键锁和可升级锁都会采集")
+    void testHandlesAreTraced() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        LockTracing.setListener((lockName, mode, startNanos, waitNanos, holdNanos, acquired) -> {
+            if (lockName.startsWith("trace-handle:")) {
+                events.add(lockName + "/" + mode + "/" + acquired);
+            }
+        });
+        try {
+            try (LockStat ignored = ReentrantLockUtils.handle("trace-handle:a").lock()) {
+                assertTrue(ignored.isLocked());
+            }
+            try (LockStat ignored = ReadWriteLockUtils.handle("trace-handle:b").tryReadLock()) {
+                assertTrue(ignored.isLocked());
+            }
+            try (LockStat ignored = ReentrantLockUtils.lock("trace-handle:c", 42L)) {
+                assertTrue(ignored.isLocked());
+            }
+            ReadWriteLockUtils.writelockAll("trace-handle:d", 1L, 1L).close();
+            try (UpgradableLockStat stat = ReadWriteLockUtils.upgradableReadLock("trace-handle:e")) {
+                assertTrue(stat.tryUpgrade());
+                stat.downgrade();
+            }
+        } finally {
+            LockTracing.setListener(null);
+        }
+        assertEquals(List.of("trace-handle:a/EXCLUSIVE/true", "trace-handle:b/READ/true",
+                "trace-handle:c/EXCLUSIVE/true", "trace-handle:d/WRITE/true",
+                "trace-handle:e/READ/true", "trace-handle:e/WRITE/true", "trace-handle:e/READ/true"), events);
+    }
+}
@@ -0,0 +1,170 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockStripesTest {
+
+    @Test
+    @DisplayName("long键锁对同一键互斥，重复加锁复用同一个LockStat")
+    void testReentrantStripes() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        long[] counters = new long[16];
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    int key = i % counters.length;
+                    try (LockStat ignored = ReentrantLockUtils.lock("stripe-test", key)) {
+                        counters[key]++;
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        for (long counter : counters) {
+            assertEquals(8 * 10000 / counters.length, counter);
+        }
+
+        LockStat first = ReentrantLockUtils.lock("stripe-test", 42L);
+        first.close();
+        LockStat second = ReentrantLockUtils.tryLock("stripe-test", 42L);
+        assertSame(first, second);
+        second.close();
+    }
+
+    @Test
+    @DisplayName("long键读写锁：写锁被持有时其他线程拿不到读锁")
+    void testReadWriteStripes() throws Exception {
+        try (LockStat write = ReadWriteLockUtils.writelock("stripe-rw-test", 7L)) {
+            assertTrue(write.isLocked());
+            ExecutorService other = Executors.newSingleThreadExecutor();
+            try {
+                assertFalse(other.submit(() -> ReadWriteLockUtils.tryReadLock("stripe-rw-test", 7L).isLocked()).get());
+            } finally {
+                other.shutdownNow();
+            }
+        }
+        try (LockStat read = ReadWriteLockUtils.tryReadLock("stripe-rw-test", 7L, 1, TimeUnit.SECONDS)) {
+            assertTrue(read.isLocked());
+        }
+    }
+
+    @Test
+    @DisplayName("持有读锁时获取同一条带上另一个键的写锁直接抛出异常，而不是自死锁")
+    void testWriteWhileReadingSameStripeThrows() throws Exception {
+        String namespace = "stripe-rw-self-test";
+        try (LockStat read = ReadWriteLockUtils.readlock(namespace, 1L)) {
+            assertTrue(read.isLocked());
+            // 非阻塞的 tryLock 在本线程持有同一条带的读锁时失败，借此找到与键1同条带的另一个键
+            long sameStripe = 2L;
+            while (true) {
+                try (LockStat probe = ReadWriteLockUtils.tryWriteLock(namespace, sameStripe)) {
+                    if (!probe.isLocked()) {
+                        break;
+                    }
+                }
+                sameStripe++;
+            }
+            long key = sameStripe;
+            assertThrows(IllegalStateException.class, () -> ReadWriteLockUtils.writelock(namespace, key));
+            assertThrows(IllegalStateException.class,
+                    () -> ReadWriteLockUtils.tryWriteLock(namespace, key, 1, TimeUnit.SECONDS));
+            assertThrows(IllegalStateException.class, () -> ReadWriteLockUtils.writelockAll(namespace, 3L, key));
+        }
+        // 读锁释放后正常获取，写锁内重入读锁再重入写锁也不受影响
+        try (LockStat write = ReadWriteLockUtils.writelock(namespace, 1L);
+             LockStat read = ReadWriteLockUtils.readlock(namespace, 1L);
+             LockStat reentrant = ReadWriteLockUtils.writelock(namespace, 1L)) {
+            assertTrue(reentrant.isLocked());
+        }
+    }
+
+    @Test
+    @DisplayName("long键锁条带计入持有数和等待线程数指标")
+    void testStripesCountedInMetrics() throws Exception {
+        int held = ReentrantLockUtils.heldCount();
+        int writeHeld = ReadWriteLockUtils.writeHeldCount();
+        int reads = ReadWriteLockUtils.readHolds();
+        try (LockStat lock = ReentrantLockUtils.lock("stripe-metrics-test", 1L);
+             LockStat write = ReadWriteLockUtils.writelock("stripe-rw-metrics-test", 1L);
+             LockStat read = ReadWriteLockUtils.readlock("stripe-rw-metrics-test", 2L)) {
+            assertEquals(held + 1, ReentrantLockUtils.heldCount());
+            // 键1和键2可能落在同一条带，写锁内的读锁是重入
+            assertEquals(writeHeld + 1, ReadWriteLockUtils.writeHeldCount());
+            assertEquals(reads + 1, ReadWriteLockUtils.readHolds());
+        }
+        assertEquals(held, ReentrantLockUtils.heldCount());
+        assertEquals(writeHeld, ReadWriteLockUtils.writeHeldCount());
+    }
+
+    @Test
+    @DisplayName("lockAll按条带顺序加锁：相反顺序同时锁两个键的线程不会死锁")
+    void testLockAllNoDeadlock() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        long[] balances = new long[64];
+        try {
+            Future<?> forward = pool.submit(() -> transfer(balances, 1));
+            Future<?> backward = pool.submit(() -> transfer(balances, -1));
+            forward.get(10, TimeUnit.SECONDS);
+            backward.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        assertEquals(0, total);
+    }
+
+    @Test
+    @DisplayName("lockAll对同一条带只加一次锁，关闭后全部释放")
+    void testLockAllDeduplicates() throws Exception {
+        LockHandle[] handles = {new LockHandle("dedup", new ReentrantLock()), new LockHandle("dedup", new ReentrantLock())};
+        LockStripes stripes = new LockStripes(handles);
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            try (MultiLockStat all = stripes.lockAll(1L, 2L, 3L, 4L, 5L, 1L)) {
+                assertEquals(2, all.size());
+                for (LockHandle handle : handles) {
+                    assertEquals(1, ((ReentrantLock) handle.getLock()).getHoldCount());
+                }
+                assertFalse(other.submit(() -> stripes.tryLock(1L).isLocked()).get());
+            }
+            for (LockHandle handle : handles) {
+                assertFalse(((ReentrantLock) handle.getLock()).isLocked());
+            }
+            try (MultiLockStat single = ReentrantLockUtils.lockAll("stripe-all-test", 9L, 9L)) {
+                assertEquals(1, single.size());
+            }
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    private static void transfer(long[] balances, int direction) {
+        for (int i = 0; i < 20000; i++) {
+            int from = i % balances.length;
+            int to = (from + direction + balances.length) % balances.length;
+            try (MultiLockStat ignored = ReentrantLockUtils.lockAll("stripe-transfer-test", from, to)) {
+                balances[from]--;
+                balances[to]++;
+            }
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package com.laowang.concurrent.util;
 
+import com.laowang.concurrent.util.pg.MetricHistory;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  * PostgreSQL一致性监控工具使用示例
@@ -292,4 +304,66 @@ public class PostgreSQLConsistencyMonitorTest {
         
         log.info("性能优化建议：\n{}", optimizationTips);
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("表发现不再看到的表停止调度并删除其指标序列")
+    void testDiscoveryForgetsDroppedTables() {
+        AtomicReference<List<String>> tables = new AtomicReference<>(List.of("orders", "users"));
+        PostgreSQLConsistencyMonitor monitor = new PostgreSQLConsistencyMonitor(userTables(tables));
+        try {
+            MetricHistory history = monitor.getMetricHistory();
+            monitor.discoverTables();
+            assertNotNull(history.find(MetricHistory.tableSeries("n_dead_tup", "public", "users")));
+
+            tables.set(List.of("orders"));
+            monitor.discoverTables();
+            assertNull(history.find(MetricHistory.tableSeries("n_dead_tup", "public", "users")));
+            assertNull(history.find(MetricHistory.tableSeries("n_live_tup", "public", "users")));
+            assertNotNull(history.find(MetricHistory.tableSeries("n_dead_tup", "public", "orders")));
+        } finally {
+            monitor.shutdown();
+        }
+    }
+
+    /**
+     * 表发现查询返回 public 下的给定表，统计值均为0
+     */
+    private static DataSource userTables(AtomicReference<List<String>> tables) {
+        return proxy(DataSource.class, (method, args) -> switch (method) {
+            case "getConnection" -> proxy(Connection.class, (connMethod, connArgs) -> switch (connMethod) {
+                case "prepareStatement" -> proxy(PreparedStatement.class, (stmtMethod, stmtArgs) -> switch (stmtMethod) {
+                    case "executeQuery" -> resultSet(tables.get().iterator());
+                    case "close" -> null;
+                    default -> throw new UnsupportedOperationException(stmtMethod);
+                });
+                case "close" -> null;
+                default -> throw new UnsupportedOperationException(connMethod);
+            });
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private static ResultSet resultSet(Iterator<String> tableNames) {
+        String[] current = new String[1];
+        return proxy(ResultSet.class, (method, args) -> switch (method) {
+            case "next" -> {
+                current[0] = tableNames.hasNext() ? tableNames.next() : null;
+                yield current[0] != null;
+            }
+            case "getString" -> "schemaname".equals(args[0]) ? "public" : current[0];
+            case "getLong" -> 0L;
+            case "close" -> null;
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(PostgreSQLConsistencyMonitorTest.class.getClassLoader(),
+                new Class<?>[]{type}, (p, method, args) -> handler.invoke(method.getName(), args)));
+    }
+}
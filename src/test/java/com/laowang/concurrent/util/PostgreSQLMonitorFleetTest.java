@@ -0,0 +1,145 @@
+package com.laowang.concurrent.util;
+
+import com.laowang.concurrent.util.pg.LogAlertSink;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 调度周期以毫秒为单位运行：WAL检查每60ms、状态检查每300ms、表发现每600ms
+ */
+@DisplayName("PostgreSQLMonitorFleet 集群调度测试")
+class PostgreSQLMonitorFleetTest {
+
+    @Test
+    @DisplayName("上一轮检查未结束时同类检查跳过，不会叠加占用连接")
+    void testOverrunningCheckSkipped() throws Exception {
+        FakeDataSource db = new FakeDataSource(true);
+        PostgreSQLMonitorFleet fleet = fleet(4);
+        try {
+            fleet.addDatabase("slow-db", db.proxy());
+            fleet.start();
+            waitUntil(() -> fleet.getSkippedChecks() >= 5);
+
+            // WAL、状态、表发现各至多一轮在执行，WAL检查已到期多次
+            assertTrue(db.calls.get() <= 3, "连接请求次数: " + db.calls.get());
+            assertTrue(db.maxActive.get() <= 3, "最大并发: " + db.maxActive.get());
+
+            int stuck = db.calls.get();
+            db.gate.countDown();
+            waitUntil(() -> db.calls.get() > stuck);
+        } finally {
+            db.gate.countDown();
+            fleet.close();
+        }
+    }
+
+    @Test
+    @DisplayName("单库并发达到上限时其他检查跳过，不影响其他数据库")
+    void testPerDatabaseCap() throws Exception {
+        FakeDataSource slow = new FakeDataSource(true);
+        FakeDataSource fast = new FakeDataSource(false);
+        PostgreSQLMonitorFleet fleet = fleet(1);
+        try {
+            fleet.addDatabase("slow-db", slow.proxy());
+            fleet.addDatabase("fast-db", fast.proxy());
+            fleet.start();
+            // 等到三种检查都至少到期过一次
+            waitUntil(() -> fleet.getSkippedChecks() >= 10 && fast.calls.get() >= 3);
+            Thread.sleep(600);
+
+            assertEquals(1, slow.calls.get());
+            assertEquals(1, slow.maxActive.get());
+            assertEquals(1, fast.maxActive.get());
+            assertTrue(fast.calls.get() >= 3, "fast-db 连接请求次数: " + fast.calls.get());
+        } finally {
+            slow.gate.countDown();
+            fleet.close();
+        }
+    }
+
+    @Test
+    @DisplayName("移除数据库后取消其周期任务，不再发起查询")
+    void testRemoveCancelsTasks() throws Exception {
+        FakeDataSource db = new FakeDataSource(false);
+        PostgreSQLMonitorFleet fleet = fleet(2);
+        try {
+            fleet.addDatabase("removed-db", db.proxy());
+            fleet.start();
+            waitUntil(() -> db.calls.get() >= 2);
+
+            fleet.removeDatabase("removed-db");
+            assertFalse(fleet.getDatabaseNames().contains("removed-db"));
+            // 已派发到工作线程的检查可能还在执行
+            Thread.sleep(100);
+            int calls = db.calls.get();
+            Thread.sleep(400);
+            assertEquals(calls, db.calls.get());
+        } finally {
+            fleet.close();
+        }
+    }
+
+    private static PostgreSQLMonitorFleet fleet(int perDatabaseConcurrency) {
+        return new PostgreSQLMonitorFleet(8, 64, perDatabaseConcurrency, new LogAlertSink(), TimeUnit.MILLISECONDS);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 每次检查都从 getConnection 开始：记录请求次数和同时进行的请求数，
+     * blocking 为 true 时阻塞到 gate 打开，之后抛出 SQLException 让检查按失败处理
+     */
+    private static final class FakeDataSource {
+        private final boolean blocking;
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+
+        FakeDataSource(boolean blocking) {
+            this.blocking = blocking;
+        }
+
+        DataSource proxy() {
+            return (DataSource) Proxy.newProxyInstance(PostgreSQLMonitorFleetTest.class.getClassLoader(),
+                    new Class<?>[]{DataSource.class}, (p, method, args) -> switch (method.getName()) {
+                        case "getConnection" -> connect();
+                        case "toString" -> "fake data source";
+                        case "hashCode" -> System.identityHashCode(p);
+                        case "equals" -> p == args[0];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private Object connect() throws Exception {
+            calls.incrementAndGet();
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                if (blocking) {
+                    gate.await();
+                }
+                throw new SQLException("模拟数据库不可用");
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SemaphoreUtilsTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("按权重占用许可，同时占用的许可数不超过上限")
+    void testWeightedPermits() throws Exception {
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        int[] weights = {3, 1, 1, 2, 4, 1, 10};
+        for (int weight : weights) {
+            // 超过上限的权重按上限计算
+            int effective = Math.min(weight, 4);
+            SemaphoreUtils.submitTask(executor, weight, () -> {
+                maxInUse.accumulateAndGet(inUse.addAndGet(effective), Math::max);
+                sleep(20);
+                inUse.addAndGet(-effective);
+            });
+        }
+
+        List<SemaphoreUtils.TaskOutcome> outcomes = SemaphoreUtils.start(4).get(10, TimeUnit.SECONDS);
+        assertEquals(weights.length, outcomes.size());
+        assertTrue(outcomes.stream().allMatch(SemaphoreUtils.TaskOutcome::isSuccess));
+        assertEquals(4, outcomes.get(6).getWeight());
+        assertTrue(maxInUse.get() <= 4, "同时占用许可数: " + maxInUse.get());
+    }
+
+    @Test
+    @DisplayName("权重大的任务排队后，后来的小任务不能插队")
+    void testHeavyTaskNotStarved() throws Exception {
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch heavyQueued = new CountDownLatch(1);
+        List<String> started = new CopyOnWriteArrayList<>();
+        SemaphoreUtils.submitTask(executor, () -> {
+            holding.countDown();
+            await(release);
+        });
+        SemaphoreUtils.submitTask(executor, 2, () -> {
+            await(holding);
+            heavyQueued.countDown();
+        }, () -> started.add("heavy"));
+        for (int i = 0; i < 3; i++) {
+            SemaphoreUtils.submitTask(executor, () -> {
+                await(heavyQueued);
+                // 等权重为2的任务进入许可等待队列
+                sleep(50);
+            }, () -> started.add("light"));
+        }
+
+        CompletableFuture<List<SemaphoreUtils.TaskOutcome>> future = SemaphoreUtils.start(2);
+        // 还剩一个空闲许可，非公平时小任务会在此期间全部插队执行
+        sleep(200);
+        release.countDown();
+        future.get(10, TimeUnit.SECONDS);
+
+        assertEquals("heavy", started.get(0), "执行顺序: " + started);
+    }
+
+    @Test
+    @DisplayName("任务异常记录在结果中，不影响其他任务和整体完成")
+    void testOutcomes() throws Exception {
+        SemaphoreUtils.submitTask(executor, () -> {
+        });
+        SemaphoreUtils.submitTask(executor, () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        List<SemaphoreUtils.TaskOutcome> outcomes = SemaphoreUtils.start(1).get(10, TimeUnit.SECONDS);
+        assertTrue(outcomes.get(0).isSuccess());
+        assertFalse(outcomes.get(1).isSuccess());
+        assertEquals(1, outcomes.get(1).getIndex());
+        assertInstanceOf(IllegalStateException.class, outcomes.get(1).getError());
+        assertTrue(SemaphoreUtils.start(1).isDone());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskGroupTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("超出预分配容量后扩容，waitFor后清空可复用")
+    void testGrowAndReuse() {
+        TaskGroup group = new TaskGroup(2);
+        AtomicInteger counter = new AtomicInteger();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 5; i++) {
+                group.submitTask(executor, counter::incrementAndGet);
+            }
+            assertEquals(5, group.size());
+            assertTrue(group.waitFor(5L, TimeUnit.SECONDS));
+            assertEquals(0, group.size());
+        }
+        assertEquals(15, counter.get());
+    }
+
+    @Test
+    @DisplayName("嵌套的任务组互不干扰，reset丢弃未派发的任务")
+    void testNestedAndReset() {
+        AtomicInteger inner = new AtomicInteger();
+        TaskGroup outer = new TaskGroup();
+        outer.submitTask(executor, () -> {
+            TaskGroup nested = new TaskGroup();
+            nested.submitTask(Runnable::run, inner::incrementAndGet);
+            nested.waitFor(1L, TimeUnit.SECONDS);
+        });
+
+        TaskGroup abandoned = new TaskGroup();
+        abandoned.submitTask(executor, inner::incrementAndGet);
+        abandoned.reset();
+
+        assertTrue(outer.waitFor(5L, TimeUnit.SECONDS));
+        assertTrue(abandoned.waitFor(1L, TimeUnit.SECONDS));
+        assertEquals(1, inner.get());
+    }
+
+    @Test
+    @DisplayName("任务在调用线程上执行并嵌套使用LatchUtils，外层任务全部执行且不会等到超时")
+    void testNestedLatchUtilsOnCallerThread() {
+        Executor sameThread = Runnable::run;
+        AtomicInteger outer = new AtomicInteger();
+        AtomicInteger inner = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            LatchUtils.submitTask(sameThread, () -> {
+                outer.incrementAndGet();
+                LatchUtils.submitTask(sameThread, inner::incrementAndGet);
+                LatchUtils.submitTask(sameThread, inner::incrementAndGet);
+                assertTrue(LatchUtils.waitFor(1L, TimeUnit.SECONDS));
+            });
+        }
+        long start = System.nanoTime();
+        assertTrue(LatchUtils.waitFor(5L, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(3, outer.get());
+        assertEquals(6, inner.get());
+    }
+
+    @Test
+    @DisplayName("超时返回false，时间单位为null时按秒计算")
+    void testTimeout() throws InterruptedException {
+        TaskGroup group = new TaskGroup(1);
+        group.submitTask(executor, () -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertFalse(group.waitFor(100L, TimeUnit.MILLISECONDS));
+
+        group.submitTask(executor, () -> {
+        });
+        assertTrue(group.waitFor(1L, null));
+    }
+
+    @Test
+    @DisplayName("超时后取消未完成任务：运行中的被中断，未开始的不再执行，线程中断标记被清除")
+    void testCancelOnTimeout() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            AtomicInteger started = new AtomicInteger();
+            AtomicInteger interrupted = new AtomicInteger();
+            TaskGroup group = new TaskGroup(2);
+            group.submitTask(single, token -> {
+                started.incrementAndGet();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    if (token.isCancelled()) {
+                        interrupted.incrementAndGet();
+                    }
+                }
+            });
+            group.submitTask(single, started::incrementAndGet);
+
+            assertFalse(group.waitForOrCancel(200L, TimeUnit.MILLISECONDS));
+            assertEquals(List.of(0, 1), group.getCancelledTasks());
+
+            // 同一个线程上的下一个任务不应看到残留的中断
+            boolean staleInterrupt = single.submit(() -> Thread.currentThread().isInterrupted()).get(5, TimeUnit.SECONDS);
+            assertFalse(staleInterrupt);
+            assertEquals(1, started.get());
+            assertEquals(1, interrupted.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("取消后等待被取消的任务真正退出")
+    void testAwaitTerminationAfterCancel() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        TaskGroup group = new TaskGroup(1);
+        assertTrue(group.awaitTermination(0L, TimeUnit.MILLISECONDS));
+        group.submitTask(executor, token -> {
+            running.incrementAndGet();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                // 收到取消后还要一段时间才能退出，如等待服务端取消查询
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        assertFalse(group.waitForOrCancel(100L, TimeUnit.MILLISECONDS));
+        assertTrue(group.awaitTermination(5L, TimeUnit.SECONDS));
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    @DisplayName("按时完成时没有被取消的任务")
+    void testNoCancelWhenCompleted() {
+        TaskGroup group = new TaskGroup();
+        group.submitTask(executor, token -> token.throwIfCancelled());
+        assertTrue(group.waitForOrCancel(5L, TimeUnit.SECONDS));
+        assertTrue(group.getCancelledTasks().isEmpty());
+    }
+
+    @Test
+    @DisplayName("快速失败：第一个异常立即结束等待，取消其余任务并带上失败任务下标")
+    void testFailFast() {
+        TaskGroup group = new TaskGroup(3);
+        group.submitTask(executor, token -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        group.submitTask(executor, () -> {
+            throw new IllegalStateException("boom");
+        });
+        group.submitTask(executor, () -> {
+        });
+
+        long start = System.nanoTime();
+        TaskGroupException e = assertThrows(TaskGroupException.class,
+                () -> group.waitForFailFast(10L, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, e.getTaskIndex());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(group.getCancelledTasks().contains(0));
+        assertFalse(group.getCancelledTasks().contains(1));
+    }
+
+    @Test
+    @DisplayName("稳态下反复提交、派发和等待不分配对象")
+    void testSteadyStateDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Executor sameThread = Runnable::run;
+        AtomicInteger counter = new AtomicInteger();
+        Runnable task = counter::incrementAndGet;
+        CancellableTask cancellable = token -> counter.incrementAndGet();
+        TaskGroup group = new TaskGroup(4);
+        int rounds = 20_000;
+        long allocated = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < rounds; i++) {
+                group.submitTask(sameThread, task);
+                group.submitTask(sameThread, cancellable);
+                group.submitTask(sameThread, task);
+                group.waitFor(1L, TimeUnit.SECONDS);
+            }
+            allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        assertEquals(6L * rounds, counter.get());
+        assertTrue(allocated < rounds, "每轮平均分配 " + allocated / rounds + " 字节");
+    }
+
+    @Test
+    @DisplayName("超时后仍在运行的一轮不被复用，迟到的完成不影响后续批次")
+    void testTimedOutRoundNotReused() throws Exception {
+        TaskGroup group = new TaskGroup(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger late = new AtomicInteger();
+        group.submitTask(executor, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            late.incrementAndGet();
+        });
+        assertFalse(group.waitFor(50L, TimeUnit.MILLISECONDS));
+
+        CountDownLatch blocking = new CountDownLatch(1);
+        group.submitTask(executor, () -> {
+            try {
+                blocking.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        release.countDown();
+        // 第一轮的任务此时结束，不能提前唤醒第二轮的等待
+        assertFalse(group.waitFor(200L, TimeUnit.MILLISECONDS));
+        assertEquals(1, late.get());
+        blocking.countDown();
+
+        for (int i = 0; i < 3; i++) {
+            group.submitTask(executor, late::incrementAndGet);
+            assertTrue(group.waitFor(5L, TimeUnit.SECONDS));
+        }
+        assertEquals(4, late.get());
+
+        LatchUtils.submitTask(executor, token -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertFalse(LatchUtils.waitForOrCancel(50L, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(0), LatchUtils.getCancelledTasks());
+        assertTrue(LatchUtils.waitFor(1L, TimeUnit.SECONDS));
+        assertTrue(LatchUtils.getCancelledTasks().isEmpty());
+    }
+}
@@ -1,6 +1,10 @@
 package com.laowang.concurrent.util;
 
 import com.laowang.concurrent.util.LockUtils;
+import com.laowang.concurrent.util.simulator.LockStrategy;
+import com.laowang.concurrent.util.simulator.LockTrace;
+import com.laowang.concurrent.util.simulator.ReplayReport;
+import com.laowang.concurrent.util.simulator.TraceReplayer;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -130,48 +134,27 @@ public class TestRunner {
     }
     
     /**
-     * 测试并发访问场景
+     * 测试并发访问场景：用锁竞争模拟器回放5个线程争用同一把锁的负载
      */
     public void testConcurrentAccess() throws Exception {
         System.out.println("\n5. 测试并发访问场景...");
-        Lock testLock = new ReentrantLock();
         final int threadCount = 5;
-        final boolean[] results = new boolean[threadCount];
-        final Thread[] threads = new Thread[threadCount];
-        
-        // 创建多个线程同时使用LockUtils
-        for (int i = 0; i < threadCount; i++) {
-            final int index = i;
-            threads[i] = new Thread(() -> {
-                try (LockStat lockStat = LockUtils.lock(testLock)) {
-                    // 模拟一些工作
-                    Thread.sleep(10);
-                    results[index] = lockStat.isLocked();
-                } catch (Exception e) {
-                    results[index] = false;
-                }
-            });
-        }
-        
-        // 启动所有线程
-        for (Thread thread : threads) {
-            thread.start();
-        }
-        
-        // 等待所有线程完成
-        for (Thread thread : threads) {
-            thread.join();
-        }
-        
+        final int eventsPerThread = 20;
+
+        // 单个锁名、每次持有1ms，与原来5个线程各sleep 10ms的负载量级相当
+        LockTrace trace = LockTrace.synthetic(threadCount, eventsPerThread, 1, 0, 1_000_000, 0, 0, 1);
+        ReplayReport report = new TraceReplayer(trace, threadCount, 1.0).replay(LockStrategy.named());
+        System.out.println("   " + report);
+
         // 验证所有线程都成功获取了锁
-        for (int i = 0; i < threadCount; i++) {
-            assert results[i] : "线程 " + i + " 应该成功获取锁";
-        }
-        
+        assert report.getOperations() == threadCount * eventsPerThread : "所有事件都应获得锁";
+        assert report.getFailed() == 0 : "不应有加锁失败";
+
         // 验证最终锁被释放
-        assert testLock.tryLock() : "所有线程完成后锁应该被释放";
-        testLock.unlock();
-        
+        try (LockStat lockStat = ReentrantLockUtils.tryLock("replay:sim:0")) {
+            assert lockStat.isLocked() : "所有线程完成后锁应该被释放";
+        }
+
         System.out.println("   ✅ 并发访问场景测试通过");
     }
 } 
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpgradableLockStatTest {
+
+    private final ExecutorService other = Executors.newSingleThreadExecutor();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final ExecutorService owner = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        other.shutdownNow();
+        writer.shutdownNow();
+        owner.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("写锁降级为读锁后其他线程可读不可写，关闭后全部释放")
+    void testDowngrade() throws Exception {
+        try (UpgradableLockStat stat = ReadWriteLockUtils.upgradableWriteLock("upgrade-test:downgrade")) {
+            assertTrue(stat.isWriteLocked());
+            assertFalse(tryRead("upgrade-test:downgrade"));
+
+            stat.downgrade();
+            assertFalse(stat.isWriteLocked());
+            assertTrue(tryRead("upgrade-test:downgrade"));
+            assertFalse(tryWrite("upgrade-test:downgrade"));
+            assertThrows(IllegalStateException.class, stat::downgrade);
+        }
+        assertTrue(tryWrite("upgrade-test:downgrade"));
+    }
+
+    @Test
+    @DisplayName("有其他读者时升级立即失败并保留读锁，读者离开后升级成功")
+    void testTryUpgrade() throws Exception {
+        String name = "upgrade-test:upgrade";
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> reader = other.submit(() -> {
+            try (LockStat ignored = ReadWriteLockUtils.readlock(name)) {
+                reading.countDown();
+                release.await();
+            }
+            return null;
+        });
+        assertTrue(reading.await(1, TimeUnit.SECONDS));
+
+        try (UpgradableLockStat stat = ReadWriteLockUtils.upgradableReadLock(name)) {
+            assertFalse(stat.tryUpgrade());
+            assertTrue(stat.isLocked());
+            assertFalse(stat.isWriteLocked());
+
+            release.countDown();
+            reader.get(1, TimeUnit.SECONDS);
+            assertTrue(stat.tryUpgrade());
+            assertTrue(stat.isWriteLocked());
+            assertFalse(tryRead(name));
+
+            stat.downgrade();
+            try (LockStat reentrant = ReadWriteLockUtils.readlock(name)) {
+                // 重入的读锁无法释放，不能升级
+                assertFalse(stat.tryUpgrade());
+            }
+        }
+        assertTrue(tryWrite(name));
+    }
+
+    @Test
+    @DisplayName("有写者排队时升级失败也立即返回，并保留读锁")
+    void testTryUpgradeWithQueuedWriter() throws Exception {
+        String name = "upgrade-test:queued";
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> reader = other.submit(() -> {
+            try (LockStat ignored = ReadWriteLockUtils.readlock(name)) {
+                reading.countDown();
+                release.await();
+            }
+            return null;
+        });
+        assertTrue(reading.await(1, TimeUnit.SECONDS));
+
+        CountDownLatch upgraded = new CountDownLatch(1);
+        CountDownLatch close = new CountDownLatch(1);
+        // 锁状态只能在获取它的线程上使用，放在单独的线程上，测试线程可以限时等待
+        Future<String> upgrade = owner.submit(() -> {
+            try (UpgradableLockStat stat = ReadWriteLockUtils.upgradableReadLock(name)) {
+                writer.submit(() -> {
+                    try (LockStat ignored = ReadWriteLockUtils.writelock(name)) {
+                        return null;
+                    }
+                });
+                while (ReadWriteLockUtils.queuedThreads() == 0) {
+                    Thread.onSpinWait();
+                }
+                // 读锁放开后阻塞的 lock() 会排在写者之后，而写者在等另一个读者
+                String result = stat.tryUpgrade() + "/" + stat.isLocked() + "/" + stat.isWriteLocked();
+                upgraded.countDown();
+                close.await();
+                return result;
+            }
+        });
+        try {
+            assertTrue(upgraded.await(1, TimeUnit.SECONDS), "tryUpgrade 阻塞在排队的写者之后");
+        } finally {
+            close.countDown();
+            release.countDown();
+        }
+        assertEquals("false/true/false", upgrade.get(1, TimeUnit.SECONDS));
+        reader.get(1, TimeUnit.SECONDS);
+        assertTrue(tryWrite(name));
+    }
+
+    private boolean tryRead(String name) throws Exception {
+        return other.submit(() -> {
+            try (LockStat stat = ReadWriteLockUtils.tryReadLock(name)) {
+                return stat.isLocked();
+            }
+        }).get(1, TimeUnit.SECONDS);
+    }
+
+    private boolean tryWrite(String name) throws Exception {
+        return other.submit(() -> {
+            try (LockStat stat = ReadWriteLockUtils.tryWriteLock(name)) {
+                return stat.isLocked();
+            }
+        }).get(1, TimeUnit.SECONDS);
+    }
+}
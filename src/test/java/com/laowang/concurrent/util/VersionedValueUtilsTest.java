@@ -0,0 +1,93 @@
+package com.laowang.concurrent.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VersionedValueUtilsTest {
+
+    @Test
+    @DisplayName("未发布时版本为0，每次发布版本加1")
+    void testPublish() {
+        VersionedValue<String> value = VersionedValueUtils.value("test:versioned");
+        assertEquals(0, value.version());
+        assertNull(value.get());
+
+        VersionedValueUtils.publish("test:versioned", "a");
+        VersionedValue.Snapshot<String> snapshot = VersionedValueUtils.publish("test:versioned", "b");
+        assertEquals(2, snapshot.getVersion());
+        assertEquals("b", VersionedValueUtils.get("test:versioned"));
+    }
+
+    @Test
+    @DisplayName("持有同名读锁时更新直接抛出异常而不是自死锁，持有写锁时可重入")
+    void testUpdateUnderReadLockThrows() throws Exception {
+        VersionedValue<String> value = VersionedValueUtils.value("test:versioned-read");
+        try (LockStat read = ReadWriteLockUtils.readlock("test:versioned-read")) {
+            assertThrows(IllegalStateException.class, () -> value.publish("a"));
+        }
+        assertEquals(0, value.version());
+
+        try (LockStat write = ReadWriteLockUtils.writelock("test:versioned-read");
+             LockStat read = ReadWriteLockUtils.readlock("test:versioned-read")) {
+            assertEquals(1, value.publish("a").getVersion());
+        }
+        assertEquals("a", value.get());
+    }
+
+    @Test
+    @DisplayName("并发写入串行执行，读者只看到完整的版本")
+    void testConcurrentUpdates() throws InterruptedException {
+        int writers = 4;
+        int updatesPerWriter = 500;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger inconsistent = new AtomicInteger();
+
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                VersionedValue.Snapshot<Map<String, Long>> snapshot = VersionedValueUtils.snapshot("test:routing");
+                Map<String, Long> map = snapshot.getValue();
+                // 每个版本中两个键总是同时写入，且等于版本号
+                if (map != null && (!map.get("a").equals(map.get("b")) || map.get("a") != snapshot.getVersion())) {
+                    inconsistent.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < updatesPerWriter; i++) {
+                    VersionedValueUtils.<String, Long>updateMap("test:routing", map -> {
+                        long next = map.getOrDefault("a", 0L) + 1;
+                        map.put("a", next);
+                        map.put("b", next);
+                    });
+                }
+            });
+            threads.add(writer);
+            writer.start();
+        }
+        for (Thread writer : threads) {
+            writer.join();
+        }
+        running.set(false);
+        reader.join();
+
+        VersionedValue.Snapshot<Map<String, Long>> last = VersionedValueUtils.snapshot("test:routing");
+        assertEquals(writers * updatesPerWriter, last.getVersion());
+        assertEquals(writers * updatesPerWriter, last.getValue().get("a"));
+        assertEquals(0, inconsistent.get());
+        assertThrows(UnsupportedOperationException.class, () -> last.getValue().put("c", 1L));
+    }
+}
@@ -0,0 +1,73 @@
+package com.laowang.concurrent.util.benchmark;
+
+import com.laowang.concurrent.util.AdaptiveSpinLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 短临界区下 AdaptiveSpinLock 与 ReentrantLock 的竞争吞吐对比
+ * <p>
+ * work 为临界区内 Blackhole.consumeCPU 的令牌数，约对应几十纳秒到一微秒；
+ * 运行 main 方法分别以 4、8、16、32 线程执行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdaptiveLockBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int work;
+
+    private final Lock reentrantLock = new ReentrantLock();
+    private final Lock adaptiveLock = new AdaptiveSpinLock();
+
+    @Benchmark
+    public void reentrantLock() {
+        reentrantLock.lock();
+        try {
+            Blackhole.consumeCPU(work);
+        } finally {
+            reentrantLock.unlock();
+        }
+    }
+
+    @Benchmark
+    public void adaptiveSpinLock() {
+        adaptiveLock.lock();
+        try {
+            Blackhole.consumeCPU(work);
+        } finally {
+            adaptiveLock.unlock();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{4, 8, 16, 32}) {
+            Options options = new OptionsBuilder()
+                    .include(AdaptiveLockBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.laowang.concurrent.util.benchmark;
+
+import com.laowang.concurrent.util.LockHandle;
+import com.laowang.concurrent.util.LockStat;
+import com.laowang.concurrent.util.ReentrantLockUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 命名锁热路径的单次加解锁开销及分配率对比：拼接字符串锁名、固定锁名查表、预解析句柄、long 键锁
+ * <p>
+ * 运行 main 方法时附带 GC profiler，句柄与 long 键版本的 gc.alloc.rate.norm 应为 0 B/op。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongKeyedLockBenchmark {
+
+    private static final LockHandle HANDLE = ReentrantLockUtils.handle("order:hot");
+
+    private long id;
+
+    @Benchmark
+    public boolean stringName() throws Exception {
+        id = (id + 1) & 4095;
+        try (LockStat lock = ReentrantLockUtils.lock("order:" + id)) {
+            return lock.isLocked();
+        }
+    }
+
+    @Benchmark
+    public boolean namedLookup() throws Exception {
+        try (LockStat lock = ReentrantLockUtils.lock("order:hot")) {
+            return lock.isLocked();
+        }
+    }
+
+    @Benchmark
+    public boolean handle() throws Exception {
+        try (LockStat lock = HANDLE.lock()) {
+            return lock.isLocked();
+        }
+    }
+
+    @Benchmark
+    public boolean longKey() throws Exception {
+        id = (id + 1) & 4095;
+        try (LockStat lock = ReentrantLockUtils.lock("order", id)) {
+            return lock.isLocked();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            Options options = new OptionsBuilder()
+                    .include(LongKeyedLockBenchmark.class.getSimpleName())
+                    .addProfiler(GCProfiler.class)
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.laowang.concurrent.util.benchmark;
+
+import com.laowang.concurrent.util.LockStat;
+import com.laowang.concurrent.util.ReadWriteLockUtils;
+import com.laowang.concurrent.util.VersionedValue;
+import com.laowang.concurrent.util.VersionedValueUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读多写少的配置读取：命名读锁与版本化快照的读吞吐对比，运行 main 方法分别以 1、4、16、64 线程执行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionedValueBenchmark {
+
+    private static final String NAME = "benchmark:routing";
+
+    private final Map<String, String> lockedRoutes = new HashMap<>();
+    private VersionedValue<Map<String, String>> versionedRoutes;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < 100; i++) {
+            lockedRoutes.put("table-" + i, "shard-" + (i % 8));
+        }
+        versionedRoutes = VersionedValueUtils.value(NAME);
+        versionedRoutes.publish(Map.copyOf(lockedRoutes));
+    }
+
+    @Benchmark
+    public String readLock() throws Exception {
+        try (LockStat ignored = ReadWriteLockUtils.readlock(NAME)) {
+            return lockedRoutes.get("table-42");
+        }
+    }
+
+    @Benchmark
+    public String versionedSnapshot() {
+        return versionedRoutes.get().get("table-42");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            Options options = new OptionsBuilder()
+                    .include(VersionedValueBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
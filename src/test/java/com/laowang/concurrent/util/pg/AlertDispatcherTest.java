@@ -0,0 +1,105 @@
+package com.laowang.concurrent.util.pg;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AlertDispatcher 告警分发测试")
+class AlertDispatcherTest {
+
+    @Test
+    @DisplayName("同一key的告警被去重合并并按key限流")
+    void testDedupAndRateLimit() {
+        List<Alert> delivered = new CopyOnWriteArrayList<>();
+        AlertDispatcher dispatcher = new AlertDispatcher(delivered::addAll, 100, 100, 50L, TimeUnit.HOURS.toMillis(1));
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.fire("dead_tuples:public.orders", AlertLevel.WARNING, "orders " + i);
+        }
+        dispatcher.fire("in_recovery", AlertLevel.CRITICAL, "recovery");
+        dispatcher.close();
+
+        assertEquals(2, delivered.stream().map(Alert::getKey).distinct().count());
+        long ordersDelivered = delivered.stream().filter(a -> a.getKey().startsWith("dead_tuples")).count();
+        assertEquals(1, ordersDelivered, "限流窗口内同一key只投递一次");
+        assertEquals(0, dispatcher.getDropped());
+    }
+
+    @Test
+    @DisplayName("投递阻塞时fire不阻塞，队列满后直接丢弃")
+    void testFireNeverBlocks() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AlertDispatcher dispatcher = new AlertDispatcher(alerts -> release.await(), 4, 1, 10L, 0L);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            dispatcher.fire("key" + i, AlertLevel.WARNING, "message");
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 1000, "fire不应等待投递完成");
+        assertTrue(dispatcher.getDropped() > 0);
+        release.countDown();
+        dispatcher.close();
+    }
+
+    @Test
+    @DisplayName("关闭时等待正在进行的投递完成，不中断投递")
+    void testCloseWaitsForInFlightDelivery() throws InterruptedException {
+        List<Alert> delivered = new CopyOnWriteArrayList<>();
+        CountDownLatch delivering = new CountDownLatch(1);
+        AlertDispatcher dispatcher = new AlertDispatcher(alerts -> {
+            delivering.countDown();
+            // 与阻塞的网络 I/O 一样，被中断时抛出异常，整批丢失
+            Thread.sleep(200);
+            delivered.addAll(alerts);
+        }, 100, 100, 10L, 0L);
+
+        assertTrue(dispatcher.fire("in_recovery", AlertLevel.CRITICAL, "recovery"));
+        assertTrue(delivering.await(1, TimeUnit.SECONDS));
+        assertTrue(dispatcher.fire("replication_lag", AlertLevel.WARNING, "lag"));
+        dispatcher.close();
+
+        assertEquals(List.of("in_recovery", "replication_lag"), delivered.stream().map(Alert::getKey).toList());
+        assertFalse(dispatcher.fire("late", AlertLevel.WARNING, "late"));
+    }
+
+    @Test
+    @DisplayName("与close并发的fire返回true时告警一定被投递")
+    void testAcceptedAlertsDeliveredAcrossClose() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            AtomicInteger delivered = new AtomicInteger();
+            AlertDispatcher dispatcher = new AlertDispatcher(
+                    alerts -> delivered.addAndGet(alerts.size()), 10_000, 100, 1L, 0L);
+            AtomicInteger accepted = new AtomicInteger();
+            AtomicBoolean closing = new AtomicBoolean();
+            CountDownLatch firing = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                for (int i = 0; ; i++) {
+                    boolean ok = dispatcher.fire("key" + i, AlertLevel.WARNING, "message");
+                    if (ok) {
+                        accepted.incrementAndGet();
+                        firing.countDown();
+                    } else if (closing.get()) {
+                        return;
+                    }
+                }
+            });
+            producer.start();
+            assertTrue(firing.await(1, TimeUnit.SECONDS));
+            closing.set(true);
+            dispatcher.close();
+            producer.join(TimeUnit.SECONDS.toMillis(5));
+
+            assertEquals(accepted.get(), delivered.get(), "第 " + round + " 轮");
+        }
+    }
+}
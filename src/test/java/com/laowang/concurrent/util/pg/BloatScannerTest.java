@@ -0,0 +1,214 @@
+package com.laowang.concurrent.util.pg;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloatScannerTest {
+
+    private static final long MB = 1024L * 1024;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("未使用的索引只按DROP INDEX计入一次，不再作为膨胀索引重复计算")
+    void testUnusedIndexNotDoubleCounted() throws Exception {
+        DataSource dataSource = dataSource(sql -> {
+            if (sql.contains("FROM pg_namespace")) {
+                return List.of(Map.of("nspname", "public"));
+            }
+            if (sql.contains("pg_am")) {
+                return List.of(
+                        Map.of("index_name", "idx_a", "table_name", "t", "actual_bytes", 10 * MB, "expected_bytes", 2 * MB),
+                        Map.of("index_name", "idx_b", "table_name", "t", "actual_bytes", 10 * MB, "expected_bytes", MB));
+            }
+            if (sql.contains("s.indexrelname")) {
+                return List.of(Map.of("index_name", "idx_a", "table_name", "t", "actual_bytes", 10 * MB));
+            }
+            return List.of();
+        }, null);
+
+        List<BloatScanner.ReclaimableItem> items = new BloatScanner(dataSource, executor, 3, 0, MB).scan();
+
+        assertEquals(2, items.size());
+        assertEquals(BloatScanner.Kind.UNUSED_INDEX, items.get(0).getKind());
+        assertEquals("DROP INDEX public.idx_a", items.get(0).getSuggestion());
+        assertEquals(BloatScanner.Kind.INDEX_BLOAT, items.get(1).getKind());
+        assertEquals("idx_b", items.get(1).getIndexName());
+        assertEquals(19 * MB, items.stream().mapToLong(BloatScanner.ReclaimableItem::getReclaimableBytes).sum());
+    }
+
+    @Test
+    @DisplayName("一批查询超时后被取消，不会与下一批同时执行")
+    void testTimedOutBatchIsCancelled() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        DataSource dataSource = dataSource(sql -> {
+            if (sql.contains("FROM pg_namespace")) {
+                return List.of(Map.of("nspname", "public"));
+            }
+            return List.of();
+        }, sql -> {
+            if (sql.contains("FROM pg_namespace")) {
+                return;
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (sql.contains("c.relkind = 'r'")) {
+                    // 表膨胀查询挂起，直到被取消
+                    Thread.sleep(10_000);
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("查询被中断", e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        long start = System.nanoTime();
+        List<BloatScanner.ReclaimableItem> items = new BloatScanner(dataSource, executor, 1, 0, MB, 100L).scan();
+
+        assertTrue(items.isEmpty());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    @DisplayName("超时的查询通过Statement.cancel()在服务端取消，不依赖中断")
+    void testTimedOutStatementIsCancelled() throws Exception {
+        CountDownLatch serverCancelled = new CountDownLatch(1);
+        List<String> cancelledSql = new CopyOnWriteArrayList<>();
+        DataSource dataSource = dataSource(sql -> {
+            if (sql.contains("FROM pg_namespace")) {
+                return List.of(Map.of("nspname", "public"));
+            }
+            return List.of();
+        }, sql -> {
+            if (!sql.contains("c.relkind = 'r'")) {
+                return;
+            }
+            // 与 PgJDBC 一样，中断不会让查询返回，只有 Statement.cancel() 能让它结束
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (serverCancelled.getCount() > 0 && System.nanoTime() < deadline) {
+                try {
+                    serverCancelled.await(10, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ignored) {
+                    // 忽略中断
+                }
+            }
+            if (serverCancelled.getCount() == 0) {
+                throw new IllegalStateException("canceling statement due to user request");
+            }
+        }, sql -> {
+            cancelledSql.add(sql);
+            serverCancelled.countDown();
+        });
+
+        long start = System.nanoTime();
+        List<BloatScanner.ReclaimableItem> items = new BloatScanner(dataSource, executor, 1, 0, MB, 100L).scan();
+
+        assertTrue(items.isEmpty());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, cancelledSql.size());
+        assertTrue(cancelledSql.get(0).contains("c.relkind = 'r'"));
+    }
+
+    private static DataSource dataSource(Function<String, List<Map<String, Object>>> rows,
+                                         Consumer<String> beforeQuery) {
+        return dataSource(rows, beforeQuery, null);
+    }
+
+    /**
+     * 按SQL内容返回固定结果的 DataSource；beforeQuery 在 executeQuery 中执行，可用来模拟慢查询，
+     * onCancel 在 Statement.cancel() 时执行
+     */
+    private static DataSource dataSource(Function<String, List<Map<String, Object>>> rows,
+                                         Consumer<String> beforeQuery, Consumer<String> onCancel) {
+        return proxy(DataSource.class, (method, args) -> {
+            if (!method.equals("getConnection")) {
+                throw new UnsupportedOperationException(method);
+            }
+            return proxy(Connection.class, (connMethod, connArgs) -> switch (connMethod) {
+                case "prepareStatement" -> statement((String) connArgs[0], rows, beforeQuery, onCancel);
+                case "close" -> null;
+                default -> throw new UnsupportedOperationException(connMethod);
+            });
+        });
+    }
+
+    private static PreparedStatement statement(String sql, Function<String, List<Map<String, Object>>> rows,
+                                               Consumer<String> beforeQuery, Consumer<String> onCancel) {
+        return proxy(PreparedStatement.class, (method, args) -> switch (method) {
+            case "setQueryTimeout", "setString", "close" -> null;
+            case "cancel" -> {
+                if (onCancel != null) {
+                    onCancel.accept(sql);
+                }
+                yield null;
+            }
+            case "executeQuery" -> {
+                try {
+                    if (beforeQuery != null) {
+                        beforeQuery.accept(sql);
+                    }
+                } catch (IllegalStateException e) {
+                    throw new SQLException(e.getMessage(), e);
+                }
+                yield resultSet(rows.apply(sql).iterator());
+            }
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private static ResultSet resultSet(Iterator<Map<String, Object>> rows) {
+        Object[] current = new Object[1];
+        return proxy(ResultSet.class, (method, args) -> switch (method) {
+            case "next" -> {
+                current[0] = rows.hasNext() ? rows.next() : null;
+                yield current[0] != null;
+            }
+            case "getString" -> args[0] instanceof Integer
+                    ? ((Map<?, ?>) current[0]).values().iterator().next()
+                    : ((Map<?, ?>) current[0]).get(args[0]);
+            case "getLong" -> ((Map<?, ?>) current[0]).get(args[0]);
+            case "close" -> null;
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(BloatScannerTest.class.getClassLoader(), new Class<?>[]{type},
+                (p, method, args) -> handler.invoke(method.getName(), args)));
+    }
+}
@@ -0,0 +1,51 @@
+package com.laowang.concurrent.util.pg;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BlockingChainSampler 阻塞链分析测试")
+class BlockingChainSamplerTest {
+
+    @Test
+    @DisplayName("阻塞边组装为以根阻塞者为单位的链")
+    void testAnalyzeChain() {
+        // 100 阻塞 200、300；200 阻塞 400；400 阻塞 500
+        List<BlockingChainSampler.Edge> edges = List.of(
+                new BlockingChainSampler.Edge(200, 100, 5_000, "UPDATE orders SET status = 'PAID' WHERE id = 1", "idle in transaction"),
+                new BlockingChainSampler.Edge(300, 100, 3_000, "UPDATE orders SET status = 'PAID' WHERE id = 1", "idle in transaction"),
+                new BlockingChainSampler.Edge(400, 200, 2_000, "UPDATE orders SET amount = 2 WHERE id = 1", "active"),
+                new BlockingChainSampler.Edge(500, 400, 1_000, "DELETE FROM orders WHERE id = 1", "active"));
+
+        List<BlockingChainSampler.BlockingChain> chains = BlockingChainSampler.analyze(edges);
+
+        assertEquals(1, chains.size());
+        BlockingChainSampler.BlockingChain chain = chains.get(0);
+        assertEquals(100, chain.getRootPid());
+        assertEquals(3, chain.getDepth());
+        assertEquals(4, chain.getWaiterCount());
+        assertEquals(5_000, chain.getMaxWaitMillis());
+        assertEquals("UPDATE orders SET status = ? WHERE id = ?", chain.getFingerprint());
+    }
+
+    @Test
+    @DisplayName("互相等待（死锁）时不产生根阻塞链")
+    void testCycleHasNoRoot() {
+        List<BlockingChainSampler.Edge> edges = List.of(
+                new BlockingChainSampler.Edge(1, 2, 100, "q2", "active"),
+                new BlockingChainSampler.Edge(2, 1, 100, "q1", "active"));
+
+        assertTrue(BlockingChainSampler.analyze(edges).isEmpty());
+    }
+
+    @Test
+    @DisplayName("SQL指纹折叠字面量和IN列表")
+    void testFingerprint() {
+        assertEquals("SELECT * FROM t WHERE id IN (...) AND name = ?",
+                BlockingChainSampler.fingerprint("SELECT *  FROM t\n WHERE id IN (1, 2, 3) AND name = 'it''s'"));
+        assertEquals("<unknown>", BlockingChainSampler.fingerprint(null));
+    }
+}
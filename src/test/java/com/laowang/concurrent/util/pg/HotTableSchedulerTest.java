@@ -0,0 +1,53 @@
+package com.laowang.concurrent.util.pg;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("HotTableScheduler 热表调度测试")
+class HotTableSchedulerTest {
+
+    private static final long MIN = 30_000L;
+    private static final long MAX = 1_800_000L;
+
+    @Test
+    @DisplayName("变更越快检查间隔越短")
+    void testIntervalFollowsChurn() {
+        HotTableScheduler scheduler = new HotTableScheduler(60, MIN, MAX, 100D);
+
+        assertEquals(MAX, scheduler.intervalFor(0D));
+        assertEquals(MIN, scheduler.intervalFor(100D));
+        assertEquals(MIN, scheduler.intervalFor(10_000D));
+        long warm = scheduler.intervalFor(1D);
+        assertTrue(warm > MIN && warm < MAX);
+    }
+
+    @Test
+    @DisplayName("热表先于冷表被调度，且不超过查询预算")
+    void testHotTablesFirstWithinBudget() {
+        HotTableScheduler scheduler = new HotTableScheduler(2, MIN, MAX, 100D);
+        long t0 = 1_700_000_000_000L;
+        for (int i = 0; i < 5; i++) {
+            scheduler.recordSample("public", "cold" + i, 0, 0, 0, 1000, t0);
+            scheduler.recordSample("public", "cold" + i, 0, 0, 0, 1000, t0 + 60_000L);
+        }
+        scheduler.recordSample("public", "orders", 0, 0, 0, 1000, t0);
+        scheduler.recordSample("public", "orders", 300_000, 0, 0, 1000, t0 + 60_000L);
+
+        // 新纳入的表都处于到期状态，预算只允许取出2张，热表 orders 超期得分最高
+        List<HotTableScheduler.TableRef> first = scheduler.pollDue(t0 + 60_000L);
+        assertEquals(2, first.size());
+        assertEquals("orders", first.get(0).getTableName());
+
+        // 预算耗尽，立即再取为空
+        assertTrue(scheduler.pollDue(t0 + 60_000L).isEmpty());
+
+        // 一分钟后预算恢复，继续调度剩余的表
+        List<HotTableScheduler.TableRef> second = scheduler.pollDue(t0 + 120_000L);
+        assertEquals(2, second.size());
+        assertTrue(second.stream().noneMatch(t -> t.getTableName().equals("orders")), "orders 刚检查过，冷表优先");
+    }
+}
@@ -0,0 +1,184 @@
+package com.laowang.concurrent.util.pg;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LogicalWalStreamer WAL流式消费测试")
+class LogicalWalStreamerTest {
+
+    @Test
+    @DisplayName("按关系OID统计 pgoutput 的行变更，忽略事务边界和未知关系")
+    void testHandlePgoutputMessages() {
+        LogicalWalStreamer streamer = new LogicalWalStreamer("jdbc:postgresql://localhost/test", new Properties(),
+                "wal_handle_slot", "wal_handle_pub", 1000);
+        streamer.handle(message('B', new byte[20]));
+        streamer.handle(relation(16384, "public", "orders"));
+        streamer.handle(relation(16390, "My Schema", "odd.\"name"));
+        streamer.handle(change('I', 16384));
+        streamer.handle(change('I', 16384));
+        streamer.handle(change('U', 16384));
+        streamer.handle(change('D', 16390));
+        // 没有 Relation 消息的 OID 不计数
+        streamer.handle(change('I', 99999));
+        streamer.handle(message('C', new byte[25]));
+
+        LogicalWalStreamer.TableChanges orders = streamer.getTables().get("public.orders");
+        assertEquals(2, orders.getInserts().sum());
+        assertEquals(1, orders.getUpdates().sum());
+        assertEquals(0, orders.getDeletes().sum());
+        LogicalWalStreamer.TableChanges odd = streamer.getTables().get("My Schema.odd.\"name");
+        assertEquals("My Schema", odd.getSchemaName());
+        assertEquals("odd.\"name", odd.getTableName());
+        assertEquals(1, odd.getDeletes().sum());
+        assertEquals(2, streamer.getTables().size());
+        assertEquals(9, streamer.getMessages());
+
+        // 同一 OID 重新发送 Relation（如重命名）后计入新表名
+        streamer.handle(relation(16384, "public", "orders_v2"));
+        streamer.handle(change('I', 16384));
+        assertEquals(1, streamer.getTables().get("public.orders_v2").getInserts().sum());
+        assertEquals(2, orders.getInserts().sum());
+    }
+
+    @Test
+    @DisplayName("驱动抛出运行时异常时消费线程继续重连，不会静默退出")
+    void testReconnectAfterRuntimeException() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        Driver driver = (Driver) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Driver.class},
+                (p, method, args) -> switch (method.getName()) {
+                    case "acceptsURL" -> ((String) args[0]).startsWith("jdbc:wal-runtime-failure:");
+                    case "connect" -> {
+                        if (!((String) args[0]).startsWith("jdbc:wal-runtime-failure:")) {
+                            yield null;
+                        }
+                        attempts.incrementAndGet();
+                        throw new IllegalStateException("协议异常");
+                    }
+                    case "getMajorVersion", "getMinorVersion" -> 1;
+                    case "jdbcCompliant" -> false;
+                    case "toString" -> "wal-runtime-failure driver";
+                    case "hashCode" -> System.identityHashCode(p);
+                    case "equals" -> p == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        DriverManager.registerDriver(driver);
+        try (LogicalWalStreamer streamer = new LogicalWalStreamer("jdbc:wal-runtime-failure://test", new Properties(),
+                "wal_runtime_failure_slot", "wal_runtime_failure_pub", 10)) {
+            streamer.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (attempts.get() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(attempts.get() >= 3, "重连次数: " + attempts.get());
+            assertTrue(streamer.isRunning());
+        } finally {
+            DriverManager.deregisterDriver(driver);
+        }
+    }
+
+    /**
+     * 需要本地 PostgreSQL（wal_level=logical，账号有 REPLICATION 权限），例如：
+     * PG_TEST_URL=jdbc:postgresql://localhost:5432/postgres PG_TEST_USER=postgres PG_TEST_PASSWORD=postgres
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "PG_TEST_URL", matches = ".+")
+    @DisplayName("连接本地PostgreSQL，流式统计表变更并确认位置")
+    void testStreamAgainstLocalPostgres() throws Exception {
+        String url = System.getenv("PG_TEST_URL");
+        Properties properties = new Properties();
+        properties.setProperty("user", System.getenv().getOrDefault("PG_TEST_USER", "postgres"));
+        properties.setProperty("password", System.getenv().getOrDefault("PG_TEST_PASSWORD", ""));
+
+        try (Connection conn = DriverManager.getConnection(url, properties);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS wal_stream_test (id serial PRIMARY KEY, v int)");
+            stmt.execute("DROP PUBLICATION IF EXISTS wal_stream_test_pub");
+            stmt.execute("CREATE PUBLICATION wal_stream_test_pub FOR TABLE wal_stream_test");
+
+            try (LogicalWalStreamer streamer = new LogicalWalStreamer(url, properties, "wal_stream_test_slot",
+                    "wal_stream_test_pub", 1000)) {
+                streamer.start();
+                // 等待临时槽创建完成，之前的写入不会被消费
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (!slotExists(stmt) && System.nanoTime() < deadline) {
+                    Thread.sleep(50);
+                }
+                assertTrue(slotExists(stmt), "复制槽未创建");
+
+                for (int i = 0; i < 10; i++) {
+                    stmt.executeUpdate("INSERT INTO wal_stream_test (v) VALUES (" + i + ")");
+                }
+                stmt.executeUpdate("UPDATE wal_stream_test SET v = v + 1 WHERE v < 5");
+
+                LogicalWalStreamer.TableChanges changes = null;
+                while (System.nanoTime() < deadline) {
+                    changes = streamer.getTables().get("public.wal_stream_test");
+                    if (changes != null && changes.getInserts().sum() >= 10 && changes.getUpdates().sum() >= 5) {
+                        break;
+                    }
+                    Thread.sleep(50);
+                }
+                assertNotNull(changes);
+                assertTrue(changes.getInserts().sum() >= 10);
+                assertTrue(changes.getUpdates().sum() >= 5);
+                assertTrue(streamer.getFlushedLsn() > 0);
+                assertTrue(streamer.getWalBytes() > 0);
+
+                MetricHistory history = new MetricHistory();
+                streamer.publish(history);
+                assertNotNull(history.find(MetricHistory.tableSeries("wal_stream_changes", "public", "wal_stream_test")));
+            }
+            // 临时槽随复制连接关闭而删除
+            Thread.sleep(500);
+            assertFalse(slotExists(stmt));
+        }
+    }
+
+    private static ByteBuffer message(char type, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + body.length);
+        buffer.put((byte) type).put(body).flip();
+        return buffer;
+    }
+
+    /**
+     * Relation 消息，列定义部分只写列数0
+     */
+    private static ByteBuffer relation(int oid, String schema, String table) {
+        byte[] schemaBytes = schema.getBytes(StandardCharsets.UTF_8);
+        byte[] tableBytes = table.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + schemaBytes.length + 1 + tableBytes.length + 1 + 1 + 2);
+        buffer.put((byte) 'R').putInt(oid).put(schemaBytes).put((byte) 0).put(tableBytes).put((byte) 0)
+                .put((byte) 'd').putShort((short) 0).flip();
+        return buffer;
+    }
+
+    /**
+     * Insert/Update/Delete 消息，元组数据部分只写一个 'N' 和列数0
+     */
+    private static ByteBuffer change(char type, int oid) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + 2);
+        buffer.put((byte) type).putInt(oid).put((byte) 'N').putShort((short) 0).flip();
+        return buffer;
+    }
+
+    private static boolean slotExists(Statement stmt) throws Exception {
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM pg_replication_slots WHERE slot_name = 'wal_stream_test_slot'")) {
+            return rs.next();
+        }
+    }
+}
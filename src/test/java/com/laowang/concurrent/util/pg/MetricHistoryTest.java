@@ -0,0 +1,45 @@
+package com.laowang.concurrent.util.pg;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MetricHistory 指标历史测试")
+class MetricHistoryTest {
+
+    @Test
+    @DisplayName("按表删除全部表级序列，不影响同名前缀的其他表")
+    void testRemoveTable() {
+        MetricHistory history = new MetricHistory(8);
+        history.record(MetricHistory.tableSeries("n_dead_tup", "public", "orders"), 1000L, 1L);
+        history.record(MetricHistory.tableSeries("wal_stream_changes", "public", "orders"), 1000L, 2L);
+        history.record(MetricHistory.tableSeries("n_dead_tup", "public", "old_orders"), 1000L, 3L);
+        history.record("wal_bytes", 1000L, 4L);
+
+        history.removeTable("public", "orders");
+        assertNull(history.find(MetricHistory.tableSeries("n_dead_tup", "public", "orders")));
+        assertNull(history.find(MetricHistory.tableSeries("wal_stream_changes", "public", "orders")));
+        assertNotNull(history.find(MetricHistory.tableSeries("n_dead_tup", "public", "old_orders")));
+        assertEquals(2, history.size());
+
+        history.remove("wal_bytes");
+        assertNull(history.find("wal_bytes"));
+    }
+
+    @Test
+    @DisplayName("淘汰长期没有新样本的序列，包括从未写入的序列")
+    void testEvictIdle() {
+        MetricHistory history = new MetricHistory(8);
+        history.record("wal_bytes", 1000L, 1L);
+        history.record("wal_bytes", 9000L, 2L);
+        history.record("blocking_chains", 2000L, 0L);
+        history.ring("never_written");
+
+        assertEquals(2, history.evictIdle(10000L, 5000L));
+        assertNotNull(history.find("wal_bytes"));
+        assertNull(history.find("blocking_chains"));
+        assertNull(history.find("never_written"));
+        assertEquals(0, history.evictIdle(10000L, 5000L));
+    }
+}
@@ -0,0 +1,68 @@
+package com.laowang.concurrent.util.pg;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MetricRing 环形缓冲区测试")
+class MetricRingTest {
+
+    @Test
+    @DisplayName("窗口内的最小值、最大值和速率")
+    void testWindowQueries() {
+        MetricRing ring = new MetricRing(8);
+        for (int i = 0; i < 5; i++) {
+            ring.record(i * 1000L, 100L + i * 10);
+        }
+
+        assertEquals(140L, ring.latest(-1L));
+        assertEquals(4000L, ring.latestTimestamp());
+        assertEquals(120L, ring.min(4000L, 2000L, -1L), "窗口[2000,4000]内最小值");
+        assertEquals(140L, ring.max(4000L, 2000L, -1L));
+        assertEquals(10D, ring.ratePerSecond(4000L, 4000L), 0.0001D);
+        assertEquals(-1L, ring.min(100000L, 1000L, -1L), "窗口内无样本时返回默认值");
+    }
+
+    @Test
+    @DisplayName("写满后覆盖最旧的样本")
+    void testOverwrite() {
+        MetricRing ring = new MetricRing(4);
+        for (int i = 0; i < 10; i++) {
+            ring.record(i, i);
+        }
+
+        assertEquals(3, ring.size());
+        assertEquals(7L, ring.min(9L, 100L, -1L), "只保留最近 capacity-1 个样本");
+        assertEquals(9L, ring.max(9L, 100L, -1L));
+    }
+
+    @Test
+    @DisplayName("单写者并发写入时读线程不会读到被覆盖的数据")
+    void testConcurrentReader() throws InterruptedException {
+        MetricRing ring = new MetricRing(16);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                // 值恒为时间戳的两倍，读到被覆盖的槽位时速率会偏离 2000/s
+                double rate = ring.ratePerSecond(Long.MAX_VALUE, Long.MAX_VALUE);
+                if (rate != 0D && rate != 2000D) {
+                    error.set("rate=" + rate);
+                }
+            }
+        });
+        reader.start();
+        for (long i = 1; i <= 200_000; i++) {
+            ring.record(i, i * 2);
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(error.get());
+    }
+}
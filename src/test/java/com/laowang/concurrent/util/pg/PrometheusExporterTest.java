@@ -0,0 +1,62 @@
+package com.laowang.concurrent.util.pg;
+
+import com.laowang.concurrent.util.PrometheusWriter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PrometheusExporter 指标端点测试")
+class PrometheusExporterTest {
+
+    @Test
+    @DisplayName("按Prometheus文本格式导出最新采样，同名指标共用一组HELP/TYPE")
+    void testRenderHistory() {
+        MetricHistory history = new MetricHistory();
+        history.record("wal_bytes", 1000L, 100L);
+        history.record("wal_bytes", 2000L, 250L);
+        history.record(MetricHistory.tableSeries("n_dead_tup", "public", "orders"), 2000L, 42L);
+        history.record(MetricHistory.tableSeries("n_dead_tup", "public", "users"), 2000L, 7L);
+
+        PrometheusWriter writer = new PrometheusWriter();
+        new MonitorMetricsCollector("order-db", history).collect(writer);
+        String text = writer.render();
+
+        assertTrue(text.contains("pg_monitor_wal_bytes{database=\"order-db\"} 250\n"));
+        assertTrue(text.contains("pg_monitor_n_dead_tup{database=\"order-db\",schema=\"public\",table=\"orders\"} 42\n"));
+        assertEquals(1, text.split("# TYPE pg_monitor_n_dead_tup gauge", -1).length - 1);
+    }
+
+    @Test
+    @DisplayName("HTTP抓取返回预先生成的快照")
+    void testServeSnapshot() throws Exception {
+        MetricHistory history = new MetricHistory();
+        history.record("in_recovery", System.currentTimeMillis(), 1L);
+
+        try (PrometheusExporter exporter = new PrometheusExporter(0, 60_000L)
+                .register(new MonitorMetricsCollector(null, history))) {
+            exporter.start();
+
+            HttpURLConnection conn = (HttpURLConnection) new URL(
+                    "http://127.0.0.1:" + exporter.getPort() + "/metrics").openConnection();
+            assertEquals(200, conn.getResponseCode());
+            assertTrue(conn.getContentType().startsWith("text/plain"));
+            try (InputStream in = conn.getInputStream()) {
+                String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(body.contains("pg_monitor_in_recovery 1\n"));
+            }
+
+            // 抓取之间不刷新，新数据要等下一次快照
+            history.record("in_recovery", System.currentTimeMillis(), 0L);
+            assertTrue(exporter.snapshot().contains("pg_monitor_in_recovery 1\n"));
+            exporter.refresh();
+            assertTrue(exporter.snapshot().contains("pg_monitor_in_recovery 0\n"));
+        }
+    }
+}
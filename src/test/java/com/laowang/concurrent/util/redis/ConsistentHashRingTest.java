@@ -0,0 +1,65 @@
+package com.laowang.concurrent.util.redis;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 20000;
+
+    @Test
+    @DisplayName("键在各节点间大致均匀，新增节点只迁移约1/N的键且全部迁往新节点")
+    void testDistributionAndRebalance() {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.put("redis-" + i, "redis-" + i);
+        }
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes, 160);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.route("order:lock:" + i), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        counts.values().forEach(count ->
+                assertTrue(count > KEYS / 4 * 0.7 && count < KEYS / 4 * 1.3, "分布不均: " + counts));
+
+        ConsistentHashRing<String> grown = ring.with("redis-4", "redis-4");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "order:lock:" + i;
+            String before = ring.route(key);
+            String after = grown.route(key);
+            if (!before.equals(after)) {
+                moved++;
+                assertEquals("redis-4", after);
+            }
+        }
+        assertTrue(moved > KEYS / 5 * 0.7 && moved < KEYS / 5 * 1.3, "迁移键数: " + moved);
+    }
+
+    @Test
+    @DisplayName("哈希标签相同的键路由到同一节点，空环路由抛出异常")
+    void testHashTag() {
+        Map<String, Integer> nodes = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            nodes.put("redis-" + i, i);
+        }
+        ConsistentHashRing<Integer> ring = new ConsistentHashRing<>(nodes, 64);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ring.route("latch:{job" + i + "}"), ring.route("latch:{job" + i + "}:done"));
+        }
+        assertEquals("key{}", ConsistentHashRing.hashTag("key{}"));
+
+        ConsistentHashRing<Integer> empty = new ConsistentHashRing<>(Map.of(), 64);
+        assertThrows(IllegalStateException.class, () -> empty.route("any"));
+    }
+}
@@ -0,0 +1,136 @@
+package com.laowang.concurrent.util.redis;
+
+import org.redisson.api.RBitSet;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.listener.MessageListener;
+
+import java.lang.reflect.Proxy;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存中的 RScript / RBitSet / RTopic，按 RedissonLatchUtils 脚本的语义执行，不模拟过期时间
+ */
+class FakeLatchStore {
+
+    private final Map<String, Integer> totals = new HashMap<>();
+    private final Map<String, BitSet> bitsets = new HashMap<>();
+    private final Map<String, Map<Integer, MessageListener<Object>>> listeners = new HashMap<>();
+    private final AtomicInteger listenerIds = new AtomicInteger();
+
+    FakeRedissonClient client() {
+        return new FakeRedissonClient()
+                .onCall("getScript", args -> script())
+                .on("getBitSet", this::bitSet)
+                .onCall("getTopic", args -> topic((String) args[0]));
+    }
+
+    /**
+     * 模拟任务的两个键过期
+     */
+    synchronized void expire(String latchKey) {
+        totals.remove(latchKey);
+        bitsets.remove(latchKey + ":done");
+    }
+
+    synchronized boolean exists(String key) {
+        return totals.containsKey(key) || bitsets.containsKey(key);
+    }
+
+    synchronized int listenerCount() {
+        return listeners.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private RScript script() {
+        return (RScript) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RScript.class},
+                (p, method, args) -> {
+                    if (!method.getName().equals("eval") || args.length != 6) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<Object> keys = (List<Object>) args[4];
+                    return eval((String) args[2], (String) keys.get(0), (String) keys.get(1), (Object[]) args[5]);
+                });
+    }
+
+    private synchronized Long eval(String script, String latchKey, String doneKey, Object[] argv) {
+        Integer total = totals.get(latchKey);
+        if (script.equals(RedissonLatchUtils.START_SCRIPT)) {
+            if (total != null && bitsets.get(doneKey).cardinality() < total) {
+                return 0L;
+            }
+            totals.put(latchKey, Integer.parseInt((String) argv[0]));
+            bitsets.put(doneKey, new BitSet());
+            return 1L;
+        }
+        if (script.equals(RedissonLatchUtils.RESUME_SCRIPT)) {
+            return total == null ? -1L : (long) total;
+        }
+        if (script.equals(RedissonLatchUtils.DONE_SCRIPT)) {
+            BitSet done = bitsets.get(doneKey);
+            if (total == null || done == null) {
+                return -1L;
+            }
+            int index = Integer.parseInt((String) argv[0]);
+            if (index < 0 || index >= total) {
+                return -2L;
+            }
+            if (done.get(index)) {
+                return 0L;
+            }
+            done.set(index);
+            if (done.cardinality() >= total) {
+                publish((String) argv[1]);
+            }
+            return 1L;
+        }
+        throw new UnsupportedOperationException(script);
+    }
+
+    private void publish(String channel) {
+        Map<Integer, MessageListener<Object>> subscribers = listeners.getOrDefault(channel, Map.of());
+        for (MessageListener<Object> listener : List.copyOf(subscribers.values())) {
+            // 与 Redisson 一样在其他线程上回调
+            new Thread(() -> listener.onMessage(channel, "done")).start();
+        }
+    }
+
+    private RBitSet bitSet(String key) {
+        return (RBitSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RBitSet.class},
+                (p, method, args) -> {
+                    if (!method.getName().equals("asBitSet")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    synchronized (this) {
+                        BitSet bits = bitsets.get(key);
+                        return bits == null ? new BitSet() : (BitSet) bits.clone();
+                    }
+                });
+    }
+
+    private RTopic topic(String channel) {
+        return (RTopic) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RTopic.class},
+                (p, method, args) -> {
+                    synchronized (this) {
+                        if (method.getName().equals("addListener") && args.length == 2) {
+                            @SuppressWarnings("unchecked")
+                            MessageListener<Object> listener = (MessageListener<Object>) args[1];
+                            int id = listenerIds.incrementAndGet();
+                            listeners.computeIfAbsent(channel, k -> new HashMap<>()).put(id, listener);
+                            return id;
+                        }
+                        if (method.getName().equals("removeListener") && args[0] instanceof Integer[] ids) {
+                            for (Integer id : ids) {
+                                listeners.getOrDefault(channel, new HashMap<>()).remove(id);
+                            }
+                            return null;
+                        }
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,117 @@
+package com.laowang.concurrent.util.redis;
+
+import org.redisson.api.RPermitExpirableSemaphore;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存中的 RPermitExpirableSemaphore，只实现 RedissonSemaphoreUtils 用到的方法，许可按租期到期
+ */
+class FakePermitSemaphore {
+
+    private final Map<String, Long> leases = new HashMap<>();
+    private int permits;
+    final AtomicInteger renewals = new AtomicInteger();
+
+    RPermitExpirableSemaphore proxy() {
+        return (RPermitExpirableSemaphore) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RPermitExpirableSemaphore.class}, (p, method, args) -> {
+                    switch (method.getName()) {
+                        case "trySetPermits":
+                            return trySetPermits((Integer) args[0]);
+                        case "tryAcquire":
+                            if (args.length == 4) {
+                                return tryAcquire((Integer) args[0], (Long) args[2], (TimeUnit) args[3]);
+                            }
+                            return tryAcquire((Long) args[0], (Long) args[1], (TimeUnit) args[2]);
+                        case "tryRelease":
+                            return tryRelease((List<?>) args[0]);
+                        case "updateLeaseTime":
+                            return updateLeaseTime((String) args[0], (Long) args[1], (TimeUnit) args[2]);
+                        case "availablePermits":
+                            return available();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    synchronized int available() {
+        purge();
+        return permits - leases.size();
+    }
+
+    private synchronized boolean trySetPermits(int count) {
+        if (permits > 0) {
+            return false;
+        }
+        permits = count;
+        return true;
+    }
+
+    private synchronized List<String> tryAcquire(int count, long lease, TimeUnit unit) {
+        purge();
+        List<String> ids = new ArrayList<>();
+        if (permits - leases.size() >= count) {
+            for (int i = 0; i < count; i++) {
+                ids.add(grant(lease, unit));
+            }
+        }
+        return ids;
+    }
+
+    private String tryAcquire(long wait, long lease, TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(wait);
+        while (true) {
+            synchronized (this) {
+                purge();
+                if (leases.size() < permits) {
+                    return grant(lease, unit);
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return null;
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private synchronized int tryRelease(List<?> ids) {
+        purge();
+        int released = 0;
+        for (Object id : ids) {
+            if (leases.remove(id) != null) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    private synchronized boolean updateLeaseTime(String id, long lease, TimeUnit unit) {
+        purge();
+        if (!leases.containsKey(id)) {
+            return false;
+        }
+        renewals.incrementAndGet();
+        leases.put(id, System.currentTimeMillis() + unit.toMillis(lease));
+        return true;
+    }
+
+    private String grant(long lease, TimeUnit unit) {
+        String id = UUID.randomUUID().toString();
+        leases.put(id, System.currentTimeMillis() + unit.toMillis(lease));
+        return id;
+    }
+
+    private void purge() {
+        long now = System.currentTimeMillis();
+        leases.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+}
@@ -0,0 +1,39 @@
+package com.laowang.concurrent.util.redis;
+
+import org.redisson.api.RedissonClient;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 按方法名返回预置对象的 RedissonClient，未预置的调用抛出 UnsupportedOperationException
+ */
+class FakeRedissonClient {
+
+    private final Map<String, Function<Object[], Object>> factories = new ConcurrentHashMap<>();
+
+    /**
+     * 以键为唯一参数的方法，如 getPermitExpirableSemaphore(key)
+     */
+    FakeRedissonClient on(String method, Function<String, Object> factory) {
+        return onCall(method, args -> factory.apply((String) args[0]));
+    }
+
+    FakeRedissonClient onCall(String method, Function<Object[], Object> factory) {
+        factories.put(method, factory);
+        return this;
+    }
+
+    RedissonClient proxy() {
+        return (RedissonClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedissonClient.class}, (p, method, args) -> {
+                    Function<Object[], Object> factory = factories.get(method.getName());
+                    if (factory == null) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return factory.apply(args == null ? new Object[0] : args);
+                });
+    }
+}
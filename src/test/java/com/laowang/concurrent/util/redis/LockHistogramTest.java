@@ -0,0 +1,47 @@
+package com.laowang.concurrent.util.redis;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LockHistogramTest {
+
+    @Test
+    @DisplayName("按以2为底的对数分桶，分位数取所在桶上界")
+    void testBucketsAndPercentiles() {
+        LockHistogram histogram = new LockHistogram();
+        assertEquals(0, histogram.percentileMicros(0.99));
+
+        // 0微秒和负值进第0桶，3微秒进[2,4)即第2桶，1000微秒进[512,1024)即第10桶
+        histogram.record(0);
+        histogram.record(-5);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        for (int i = 0; i < 97; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(1000));
+        }
+
+        long[] buckets = histogram.buckets();
+        assertEquals(2, buckets[0]);
+        assertEquals(1, buckets[2]);
+        assertEquals(97, buckets[10]);
+        assertEquals(100, histogram.count());
+
+        assertEquals(1, histogram.percentileMicros(0.01));
+        assertEquals(4, histogram.percentileMicros(0.03));
+        assertEquals(1024, histogram.percentileMicros(0.5));
+        assertEquals(1024, histogram.percentileMicros(1.0));
+    }
+
+    @Test
+    @DisplayName("超出范围的值计入最后一个桶")
+    void testOverflowBucket() {
+        LockHistogram histogram = new LockHistogram();
+        histogram.record(Long.MAX_VALUE);
+        long[] buckets = histogram.buckets();
+        assertEquals(1, buckets[buckets.length - 1]);
+        assertEquals(LockHistogram.upperBoundMicros(buckets.length - 1), histogram.percentileMicros(0.5));
+    }
+}
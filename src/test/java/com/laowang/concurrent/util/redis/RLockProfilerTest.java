@@ -0,0 +1,104 @@
+package com.laowang.concurrent.util.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RLockProfilerTest {
+
+    private final List<String> overruns = new CopyOnWriteArrayList<>();
+    private final LeaseOverrunListener listener =
+            (lockName, holdMillis, leaseMillis, expired) -> overruns.add(lockName + "/" + holdMillis + "/" + expired);
+
+    @BeforeEach
+    void setUp() {
+        RLockProfiler.reset();
+        RLockProfiler.configure(1000, 0.5);
+        RLockProfiler.addListener(listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RLockProfiler.removeListener(listener);
+        RLockProfiler.stopLeaseMonitor();
+        RLockProfiler.configure(1000, 0.8);
+        RLockProfiler.setPrefixExtractor(null);
+        RLockProfiler.reset();
+    }
+
+    @Test
+    @DisplayName("按锁名前缀聚合加锁结果、持有时间和慢锁次数")
+    void testPrefixStats() {
+        RLockProfiler.recordAcquire("order:lock:1", TimeUnit.MILLISECONDS.toNanos(2), true);
+        RLockProfiler.recordAcquire("order:lock:2", TimeUnit.MILLISECONDS.toNanos(3), false);
+        RLockProfiler.recordRelease("order:lock:1", TimeUnit.MILLISECONDS.toNanos(1500), -1, false, null);
+
+        RLockProfiler.PrefixStats stats = RLockProfiler.stats().get("order:lock");
+        assertNotNull(stats);
+        assertEquals(1, stats.getAcquired().sum());
+        assertEquals(1, stats.getFailed().sum());
+        assertEquals(2, stats.getWait().count());
+        assertEquals(1, stats.getHold().count());
+        assertEquals(1, stats.getSlow().sum());
+        // 看门狗续期的锁不统计租期余量
+        assertEquals(0, stats.getHeadroom().count());
+        assertEquals(0, stats.getLeaseOverruns().sum());
+
+        RLockProfiler.setPrefixExtractor(name -> "all");
+        RLockProfiler.recordAcquire("user:lock:1", 0, true);
+        assertNotNull(RLockProfiler.stats().get("all"));
+        assertNull(RLockProfiler.stats().get("user:lock"));
+    }
+
+    @Test
+    @DisplayName("释放时持有时间达到租期比例或已过期时通知监听器")
+    void testOverrunOnRelease() {
+        RLockProfiler.recordRelease("pay:1", TimeUnit.MILLISECONDS.toNanos(40), 100, false, null);
+        RLockProfiler.recordRelease("pay:2", TimeUnit.MILLISECONDS.toNanos(60), 100, false, null);
+        RLockProfiler.recordRelease("pay:3", TimeUnit.MILLISECONDS.toNanos(120), 100, true, null);
+
+        assertEquals(List.of("pay:2/60/false", "pay:3/120/true"), overruns);
+        RLockProfiler.PrefixStats stats = RLockProfiler.stats().get("pay");
+        assertEquals(2, stats.getLeaseOverruns().sum());
+        assertEquals(3, stats.getHeadroom().count());
+    }
+
+    @Test
+    @DisplayName("持有期间定时检查发现超时的持有者，每个级别只通知一次，释放时不重复通知")
+    void testOverrunWhileHeld() {
+        RLockProfiler.startLeaseMonitor(TimeUnit.HOURS.toMillis(1));
+        long acquiredAt = System.nanoTime();
+        RLockProfiler.Hold hold = RLockProfiler.trackHold("stuck:1", 100, acquiredAt);
+        assertNotNull(hold);
+        assertEquals(1, RLockProfiler.heldCount());
+
+        RLockProfiler.checkHolds(acquiredAt + TimeUnit.MILLISECONDS.toNanos(30));
+        RLockProfiler.checkHolds(acquiredAt + TimeUnit.MILLISECONDS.toNanos(60));
+        RLockProfiler.checkHolds(acquiredAt + TimeUnit.MILLISECONDS.toNanos(70));
+        assertEquals(List.of("stuck:1/60/false"), overruns);
+
+        RLockProfiler.checkHolds(acquiredAt + TimeUnit.MILLISECONDS.toNanos(120));
+        assertEquals(List.of("stuck:1/60/false", "stuck:1/120/true"), overruns);
+
+        RLockProfiler.recordRelease("stuck:1", TimeUnit.MILLISECONDS.toNanos(130), 100, true, hold);
+        assertEquals(2, overruns.size());
+        assertEquals(0, RLockProfiler.heldCount());
+        assertEquals(1, RLockProfiler.stats().get("stuck").getLeaseOverruns().sum());
+    }
+
+    @Test
+    @DisplayName("租期监控未开启时不登记持有")
+    void testNoTrackingWithoutMonitor() {
+        assertNull(RLockProfiler.trackHold("idle:1", 100, System.nanoTime()));
+        assertEquals(0, RLockProfiler.heldCount());
+    }
+}
@@ -0,0 +1,230 @@
+package com.laowang.concurrent.util.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisCircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 100L;
+
+    @AfterEach
+    void tearDown() {
+        RedissonLockUtils.setCircuitBreaker(null);
+    }
+
+    @Test
+    @DisplayName("连续失败达到阈值后熔断，成功调用清零连续失败计数")
+    void testTripAfterConsecutiveFailures() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(3, 1000L, OPEN_MILLIS);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess(0);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTrips());
+        assertFalse(breaker.allowRequest(true));
+    }
+
+    @Test
+    @DisplayName("超出等待时间 slowCallMillis 以上的调用记为失败")
+    void testSlowCallCountsAsFailure() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 50L, OPEN_MILLIS);
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(60));
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("熔断到期后只放行一个有等待上限的探测请求，无限等待的lock不作为探测")
+    void testSingleBoundedProbe() throws InterruptedException {
+        RedisCircuitBreaker breaker = tripped();
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        assertFalse(breaker.allowRequest(false));
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest(true));
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(true));
+        assertFalse(breaker.allowRequest(false));
+
+        breaker.onSuccess(0);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest(false));
+    }
+
+    @Test
+    @DisplayName("探测失败重新熔断")
+    void testProbeFailureReopens() throws InterruptedException {
+        RedisCircuitBreaker breaker = tripped();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(breaker.allowRequest(true));
+
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTrips());
+        assertFalse(breaker.allowRequest(true));
+    }
+
+    @Test
+    @DisplayName("探测请求挂起超过openMillis后放行新的探测，不会永远停在HALF_OPEN")
+    void testStuckProbeIsReplaced() throws InterruptedException {
+        RedisCircuitBreaker breaker = tripped();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(breaker.allowRequest(true));
+        assertFalse(breaker.allowRequest(true));
+
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertFalse(breaker.allowRequest(false));
+        assertTrue(breaker.allowRequest(true));
+        assertFalse(breaker.allowRequest(true));
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(0);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("按前缀判断是否可降级，拒绝与降级分别计数")
+    void testDegradableAndCounters() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 1000L, OPEN_MILLIS).degradable("cache:");
+        assertTrue(breaker.isDegradable("cache:user:1"));
+        assertFalse(breaker.isDegradable("order:1"));
+
+        breaker.onRejected(true);
+        breaker.onRejected(false);
+        breaker.onRejected(false);
+        assertEquals(1, breaker.getDegraded());
+        assertEquals(2, breaker.getRejected());
+    }
+
+    @Test
+    @DisplayName("每个客户端独立熔断：一个实例故障只影响路由到它的锁")
+    void testBreakerPerClient() throws Exception {
+        RedissonUtils.setUp(client(false));
+        RedissonUtils.addClient("broken", client(true));
+        String brokenKey = keyRoutedTo("broken");
+        String healthyKey = keyRoutedTo("default");
+        RedissonLockUtils.setCircuitBreaker(new RedisCircuitBreaker(1, 1000L, 60_000L));
+
+        assertThrows(IllegalStateException.class, () -> RedissonLockUtils.tryLock(brokenKey));
+        assertEquals(RedisCircuitBreaker.State.OPEN, RedissonLockUtils.getCircuitBreakers().get("broken").getState());
+        assertFalse(RedissonLockUtils.tryLock(brokenKey).isLocked());
+        assertEquals(1, RedissonLockUtils.getCircuitBreakers().get("broken").getRejected());
+
+        try (RLockStat stat = RedissonLockUtils.tryLock(healthyKey)) {
+            assertTrue(stat.isLocked());
+        }
+        assertEquals(RedisCircuitBreaker.State.CLOSED, RedissonLockUtils.getCircuitBreakers().get("default").getState());
+    }
+
+    @Test
+    @DisplayName("客户端被替换或移除时丢弃其熔断器，新客户端不继承熔断状态")
+    void testBreakerDroppedWithClient() throws Exception {
+        RedissonUtils.setUp(client(false));
+        RedissonUtils.addClient("replaced", client(true));
+        String key = keyRoutedTo("replaced");
+        RedissonLockUtils.setCircuitBreaker(new RedisCircuitBreaker(1, 1000L, 60_000L));
+
+        assertThrows(IllegalStateException.class, () -> RedissonLockUtils.tryLock(key));
+        assertFalse(RedissonLockUtils.tryLock(key).isLocked());
+        assertEquals(RedisCircuitBreaker.State.OPEN, RedissonLockUtils.getCircuitBreakers().get("replaced").getState());
+
+        RedissonUtils.addClient("replaced", client(false));
+        assertFalse(RedissonLockUtils.getCircuitBreakers().containsKey("replaced"));
+        try (RLockStat stat = RedissonLockUtils.tryLock(key)) {
+            assertTrue(stat.isLocked());
+        }
+        RedisCircuitBreaker breaker = RedissonLockUtils.getCircuitBreakers().get("replaced");
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getRejected());
+
+        try (RLockStat stat = RedissonLockUtils.tryLock(keyRoutedTo("default"))) {
+            assertTrue(stat.isLocked());
+        }
+        RedissonUtils.removeClient("replaced");
+        assertFalse(RedissonLockUtils.getCircuitBreakers().containsKey("replaced"));
+        assertTrue(RedissonLockUtils.getCircuitBreakers().containsKey("default"));
+    }
+
+    @Test
+    @DisplayName("探测请求被中断时不恢复熔断，并保留中断标记")
+    void testInterruptedProbeKeepsBreakerState() throws Exception {
+        AtomicReference<Exception> failure = new AtomicReference<>(new IllegalStateException("Redis 不可用"));
+        RedissonUtils.setUp(new FakeRedissonClient().on("getLock", name -> Proxy.newProxyInstance(
+                RedisCircuitBreakerTest.class.getClassLoader(), new Class<?>[]{RLock.class}, (p, method, args) ->
+                        switch (method.getName()) {
+                            case "getName" -> name;
+                            case "tryLock" -> throw failure.get();
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        })).proxy());
+        RedissonLockUtils.setCircuitBreaker(new RedisCircuitBreaker(1, 1000L, OPEN_MILLIS));
+
+        String key = "breaker-test:interrupt";
+        assertThrows(IllegalStateException.class, () -> RedissonLockUtils.tryLock(key, 1L, TimeUnit.SECONDS));
+        RedisCircuitBreaker breaker = RedissonLockUtils.getCircuitBreakers().get(RedissonUtils.getClientId(key));
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(OPEN_MILLIS + 20);
+        failure.set(new InterruptedException());
+        try {
+            assertFalse(RedissonLockUtils.tryLock(key, 1L, TimeUnit.SECONDS).isLocked());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    private static String keyRoutedTo(String clientId) {
+        for (int i = 0; ; i++) {
+            String key = "breaker-test:" + i;
+            if (RedissonUtils.getClientId(key).equals(clientId)) {
+                return key;
+            }
+        }
+    }
+
+    /**
+     * getLock 返回的锁 tryLock 总是成功，broken 为 true 时抛出 Redis 异常
+     */
+    private static RedissonClient client(boolean broken) {
+        return new FakeRedissonClient().on("getLock", name -> Proxy.newProxyInstance(
+                RedisCircuitBreakerTest.class.getClassLoader(), new Class<?>[]{RLock.class}, (p, method, args) ->
+                        switch (method.getName()) {
+                            case "getName" -> name;
+                            case "tryLock" -> {
+                                if (broken) {
+                                    throw new IllegalStateException("Redis 不可用");
+                                }
+                                yield true;
+                            }
+                            case "unlock" -> null;
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        })).proxy();
+    }
+
+    private static RedisCircuitBreaker tripped() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, 1000L, OPEN_MILLIS);
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
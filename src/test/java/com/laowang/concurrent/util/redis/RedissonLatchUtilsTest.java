@@ -0,0 +1,109 @@
+package com.laowang.concurrent.util.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedissonLatchUtilsTest {
+
+    private final FakeLatchStore store = new FakeLatchStore();
+    private final ExecutorService workers = Executors.newFixedThreadPool(4);
+
+    @BeforeEach
+    void setUp() {
+        RedissonUtils.setUp(store.client().proxy());
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("工作者上报全部分片后等待结束，重复上报不计数，越界下标被拒绝")
+    void testAllShardsDone() throws InterruptedException {
+        // 在测试线程上断言，工作线程上的断言失败会被线程池吞掉
+        List<Boolean> firstReports = new CopyOnWriteArrayList<>();
+        List<Boolean> duplicateReports = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            RedissonLatchUtils.submitShard((jobId, index) -> workers.execute(() -> {
+                firstReports.add(RedissonLatchUtils.shardDone(jobId, index));
+                duplicateReports.add(RedissonLatchUtils.shardDone(jobId, index));
+            }));
+        }
+        assertTrue(RedissonLatchUtils.waitFor("job-all", 5L, TimeUnit.SECONDS));
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(5L, TimeUnit.SECONDS));
+        assertEquals(List.of(true, true, true, true), firstReports);
+        assertEquals(List.of(false, false, false, false), duplicateReports);
+        assertTrue(RedissonLatchUtils.pendingShards("job-all", 4).isEmpty());
+        assertEquals(0, store.listenerCount());
+        assertThrows(IllegalArgumentException.class, () -> RedissonLatchUtils.shardDone("job-all", 4));
+    }
+
+    @Test
+    @DisplayName("同名任务未完成时不能再次创建")
+    void testJobInProgress() {
+        RedissonLatchUtils.submitShard((jobId, index) -> { });
+        assertFalse(RedissonLatchUtils.waitFor("job-busy", 50L, TimeUnit.MILLISECONDS));
+
+        RedissonLatchUtils.submitShard((jobId, index) -> { });
+        assertThrows(IllegalStateException.class,
+                () -> RedissonLatchUtils.waitFor("job-busy", 50L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("超时后resume只重新派发未完成的分片并继续等待")
+    void testResume() {
+        for (int i = 0; i < 3; i++) {
+            // 第一轮只有分片0完成
+            RedissonLatchUtils.submitShard((jobId, index) -> {
+                if (index == 0) {
+                    RedissonLatchUtils.shardDone(jobId, index);
+                }
+            });
+        }
+        assertFalse(RedissonLatchUtils.waitFor("job-resume", 100L, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(1, 2), RedissonLatchUtils.pendingShards("job-resume", 3));
+
+        List<Integer> redispatched = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RedissonLatchUtils.submitShard((jobId, index) -> {
+                redispatched.add(index);
+                workers.execute(() -> RedissonLatchUtils.shardDone(jobId, index));
+            });
+        }
+        assertTrue(RedissonLatchUtils.resume("job-resume", 5L, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2), redispatched);
+
+        RedissonLatchUtils.submitShard((jobId, index) -> { });
+        RedissonLatchUtils.submitShard((jobId, index) -> { });
+        assertThrows(IllegalStateException.class,
+                () -> RedissonLatchUtils.resume("job-resume", 1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("任务过期后迟到的上报被忽略，不会重新创建键")
+    void testLateShardDoneAfterExpiry() {
+        RedissonLatchUtils.submitShard((jobId, index) -> { });
+        assertFalse(RedissonLatchUtils.waitFor("job-late", 50L, TimeUnit.MILLISECONDS));
+        store.expire("latch:{job-late}");
+
+        assertFalse(RedissonLatchUtils.shardDone("job-late", 0));
+        assertFalse(store.exists("latch:{job-late}:done"));
+        assertThrows(IllegalStateException.class,
+                () -> RedissonLatchUtils.resume("job-late", 1L, TimeUnit.SECONDS));
+    }
+}
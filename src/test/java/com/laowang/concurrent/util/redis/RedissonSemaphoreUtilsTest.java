@@ -0,0 +1,131 @@
+package com.laowang.concurrent.util.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedissonSemaphoreUtilsTest {
+
+    private final Map<String, FakePermitSemaphore> semaphores = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @BeforeEach
+    void setUp() {
+        RedissonUtils.setUp(new FakeRedissonClient()
+                .on("getPermitExpirableSemaphore", key -> semaphores.computeIfAbsent(key, k -> new FakePermitSemaphore()).proxy())
+                .proxy());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("集群并发数不超过总许可数，结束后许可全部归还")
+    void testLimit() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        for (int i = 0; i < 12; i++) {
+            RedissonSemaphoreUtils.submitTask(executor, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                done.incrementAndGet();
+            });
+        }
+        RedissonSemaphoreUtils.start("sem-test:limit", 2, 4, 5, TimeUnit.SECONDS).join();
+
+        assertEquals(12, done.get());
+        assertTrue(maxRunning.get() <= 2, "最大并发: " + maxRunning.get());
+        assertEquals(0, RedissonSemaphoreUtils.idlePermits("sem-test:limit"));
+        assertEquals(2, semaphores.get("sem-test:limit").available());
+    }
+
+    @Test
+    @DisplayName("本地交接的许可先续期为完整租期，长任务执行期间不会过期被他人取走")
+    void testHandoffRenewsLease() {
+        AtomicInteger order = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            RedissonSemaphoreUtils.submitTask(executor, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                // 第一个任务很快结束，许可剩余大部分租期时交给第二个任务；第二个任务的执行时间超过剩余租期
+                int index = order.getAndIncrement();
+                sleep(index == 0 ? 100 : index == 1 ? 2500 : 10);
+                running.decrementAndGet();
+            });
+        }
+        RedissonSemaphoreUtils.start("sem-test:handoff", 1, 1, 3, TimeUnit.SECONDS).join();
+
+        assertEquals(1, maxRunning.get());
+        assertTrue(semaphores.get("sem-test:handoff").renewals.get() > 0);
+    }
+
+    @Test
+    @DisplayName("本地释放的许可立即唤醒本节点的等待者，不等到下一次 Redis 轮询")
+    void testLocalHandoffWakesWaiter() {
+        AtomicInteger done = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            RedissonSemaphoreUtils.submitTask(executor, () -> {
+                sleep(20);
+                done.incrementAndGet();
+            });
+        }
+        long start = System.nanoTime();
+        RedissonSemaphoreUtils.start("sem-test:wakeup", 1, 1, 5, TimeUnit.SECONDS).join();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(4, done.get());
+        // 每次交接若等 Redis 轮询超时（1秒）才能取到本地许可，总耗时会超过 2 秒
+        assertTrue(elapsed < 800, "耗时: " + elapsed + "ms");
+        assertEquals(1, semaphores.get("sem-test:wakeup").available());
+    }
+
+    @Test
+    @DisplayName("reset 丢弃未启动的任务，之后的 start 不会执行它们")
+    void testReset() {
+        AtomicInteger done = new AtomicInteger();
+        RedissonSemaphoreUtils.submitTask(executor, done::incrementAndGet);
+        RedissonSemaphoreUtils.reset();
+        RedissonSemaphoreUtils.start("sem-test:reset", 1, 1, 5, TimeUnit.SECONDS).join();
+
+        assertEquals(0, done.get());
+    }
+
+    @Test
+    @DisplayName("同名信号量传入不同的batchSize或租期时拒绝")
+    void testRejectMismatchedParameters() {
+        RedissonSemaphoreUtils.submitTask(executor, () -> { });
+        RedissonSemaphoreUtils.start("sem-test:params", 2, 4, 5, TimeUnit.SECONDS).join();
+
+        RedissonSemaphoreUtils.submitTask(executor, () -> { });
+        assertThrows(IllegalArgumentException.class,
+                () -> RedissonSemaphoreUtils.start("sem-test:params", 2, 8, 5, TimeUnit.SECONDS));
+        RedissonSemaphoreUtils.submitTask(executor, () -> { });
+        assertThrows(IllegalArgumentException.class,
+                () -> RedissonSemaphoreUtils.start("sem-test:params", 2, 4, 10, TimeUnit.SECONDS));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.laowang.concurrent.util.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 锁竞争模拟器入口：回放轨迹文件，逐一比较各加锁方式
+ * <pre>
+ * java ... LockSimulator trace.bin [线程数...] [-scale 0.5]
+ * java ... LockSimulator -synthetic [线程数...]
+ * </pre>
+ * 轨迹文件由 {@link TraceRecorder} 采集后用 {@link LockTrace#write} 写出；-synthetic 使用 Zipf 分布的合成负载。
+ */
+public class LockSimulator {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("用法: LockSimulator <trace.bin | -synthetic> [线程数...] [-scale 系数]");
+            return;
+        }
+        LockTrace trace;
+        if ("-synthetic".equals(args[0])) {
+            trace = LockTrace.synthetic(8, 2000, 64, 1.1, 2_000, 20_000, 0.8, 42);
+        } else {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(Path.of(args[0])))) {
+                trace = LockTrace.read(in);
+            }
+        }
+        double scale = 1.0;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if ("-scale".equals(args[i]) && i + 1 < args.length) {
+                scale = Double.parseDouble(args[++i]);
+            } else {
+                threadCounts.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (threadCounts.isEmpty()) {
+            threadCounts.add(Math.max(1, trace.threadCount()));
+        }
+
+        System.out.printf("轨迹: %d 个锁名, %d 个事件, %d 个线程, 时间缩放 %.2f%n",
+                trace.getNames().size(), trace.getEvents().size(), trace.threadCount(), scale);
+        List<LockStrategy> strategies = List.of(LockStrategy.named(), LockStrategy.exclusive(),
+                LockStrategy.striped(), LockStrategy.global());
+        for (int threads : threadCounts) {
+            TraceReplayer replayer = new TraceReplayer(trace, threads, scale);
+            for (LockStrategy strategy : strategies) {
+                System.out.println(replayer.replay(strategy));
+            }
+        }
+    }
+}
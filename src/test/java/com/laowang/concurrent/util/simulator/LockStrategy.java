@@ -0,0 +1,97 @@
+package com.laowang.concurrent.util.simulator;
+
+import com.laowang.concurrent.util.LockStat;
+import com.laowang.concurrent.util.LockTraceListener.Mode;
+import com.laowang.concurrent.util.ReadWriteLockUtils;
+import com.laowang.concurrent.util.ReentrantLockUtils;
+
+/**
+ * 回放时使用的加锁方式，用于比较不同锁粒度
+ */
+public interface LockStrategy {
+
+    String name();
+
+    /**
+     * @param blocking true 时阻塞等待；false 时只尝试一次，对应轨迹中 tryLock 失败的事件
+     */
+    LockStat acquire(String lockName, Mode mode, boolean blocking);
+
+    /**
+     * 按轨迹原样使用命名锁：互斥锁走 ReentrantLockUtils，读写锁走 ReadWriteLockUtils
+     */
+    static LockStrategy named() {
+        return new LockStrategy() {
+            @Override
+            public String name() {
+                return "named";
+            }
+
+            @Override
+            public LockStat acquire(String lockName, Mode mode, boolean blocking) {
+                String name = "replay:" + lockName;
+                switch (mode) {
+                    case READ:
+                        return blocking ? ReadWriteLockUtils.readlock(name) : ReadWriteLockUtils.tryReadLock(name);
+                    case WRITE:
+                        return blocking ? ReadWriteLockUtils.writelock(name) : ReadWriteLockUtils.tryWriteLock(name);
+                    default:
+                        return blocking ? ReentrantLockUtils.lock(name) : ReentrantLockUtils.tryLock(name);
+                }
+            }
+        };
+    }
+
+    /**
+     * 读锁也按互斥锁处理，评估读写锁带来的收益
+     */
+    static LockStrategy exclusive() {
+        return new LockStrategy() {
+            @Override
+            public String name() {
+                return "exclusive";
+            }
+
+            @Override
+            public LockStat acquire(String lockName, Mode mode, boolean blocking) {
+                String name = "replay-x:" + lockName;
+                return blocking ? ReentrantLockUtils.lock(name) : ReentrantLockUtils.tryLock(name);
+            }
+        };
+    }
+
+    /**
+     * 所有锁名共用一把锁，粒度最粗的基线
+     */
+    static LockStrategy global() {
+        return new LockStrategy() {
+            @Override
+            public String name() {
+                return "global";
+            }
+
+            @Override
+            public LockStat acquire(String lockName, Mode mode, boolean blocking) {
+                return blocking ? ReentrantLockUtils.lock("replay-global") : ReentrantLockUtils.tryLock("replay-global");
+            }
+        };
+    }
+
+    /**
+     * 锁名哈希到 long 键条带锁上（{@link ReentrantLockUtils#lock(String, long)}），评估条带化的伪共享
+     */
+    static LockStrategy striped() {
+        return new LockStrategy() {
+            @Override
+            public String name() {
+                return "striped";
+            }
+
+            @Override
+            public LockStat acquire(String lockName, Mode mode, boolean blocking) {
+                long key = lockName.hashCode();
+                return blocking ? ReentrantLockUtils.lock("replay-striped", key) : ReentrantLockUtils.tryLock("replay-striped", key);
+            }
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package com.laowang.concurrent.util.simulator;
+
+import com.laowang.concurrent.util.LockTraceListener.Mode;
+import lombok.Getter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 锁访问轨迹，可序列化为紧凑的二进制格式
+ * <p>
+ * 格式（除魔数外的整数均为无符号 varint）：
+ * <pre>
+ * int 魔数 'LKTR'，byte 版本
+ * 锁名个数，每个锁名：UTF-8 字节长度 + 字节
+ * 事件个数，每个事件：锁名下标、标志字节（低两位模式，第3位是否获得锁）、线程下标、
+ *                     与上一事件开始时间的差、等待时间、持有时间
+ * </pre>
+ * 事件按开始时间排序，时间均为纳秒，典型事件只占 8~12 字节。
+ */
+@Getter
+public class LockTrace {
+
+    private static final int MAGIC = 0x4C4B5452;
+    private static final int VERSION = 1;
+
+    private final List<String> names;
+    private final List<Event> events;
+
+    public LockTrace(List<String> names, List<Event> events) {
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparingLong(Event::getStartNanos));
+        this.events = Collections.unmodifiableList(sorted);
+    }
+
+    public int threadCount() {
+        int max = -1;
+        for (Event event : events) {
+            max = Math.max(max, event.getThread());
+        }
+        return max + 1;
+    }
+
+    /**
+     * 按原线程拆分，各线程内保持时间顺序
+     */
+    public List<List<Event>> byThread() {
+        List<List<Event>> streams = new ArrayList<>();
+        for (int i = 0; i < threadCount(); i++) {
+            streams.add(new ArrayList<>());
+        }
+        for (Event event : events) {
+            streams.get(event.getThread()).add(event);
+        }
+        return streams;
+    }
+
+    public void write(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, names.size());
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+        writeVarLong(out, events.size());
+        long previous = events.isEmpty() ? 0 : events.get(0).getStartNanos();
+        for (Event event : events) {
+            writeVarLong(out, event.getName());
+            out.writeByte(event.getMode().ordinal() | (event.isAcquired() ? 4 : 0));
+            writeVarLong(out, event.getThread());
+            writeVarLong(out, event.getStartNanos() - previous);
+            writeVarLong(out, event.getWaitNanos());
+            writeVarLong(out, event.getHoldNanos());
+            previous = event.getStartNanos();
+        }
+        out.flush();
+    }
+
+    public static LockTrace read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是锁轨迹文件");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("不支持的轨迹版本: " + version);
+        }
+        int nameCount = (int) readVarLong(in);
+        List<String> names = new ArrayList<>(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            byte[] bytes = new byte[(int) readVarLong(in)];
+            in.readFully(bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        int eventCount = (int) readVarLong(in);
+        List<Event> events = new ArrayList<>(eventCount);
+        long start = 0;
+        Mode[] modes = Mode.values();
+        for (int i = 0; i < eventCount; i++) {
+            int name = (int) readVarLong(in);
+            int flags = in.readUnsignedByte();
+            int thread = (int) readVarLong(in);
+            start += readVarLong(in);
+            long wait = readVarLong(in);
+            long hold = readVarLong(in);
+            events.add(new Event(name, modes[flags & 3], (flags & 4) != 0, thread, start, wait, hold));
+        }
+        return new LockTrace(names, events);
+    }
+
+    /**
+     * 生成合成轨迹：锁名按 Zipf 分布访问，skew 越大热点越集中，0 为均匀分布
+     *
+     * @param readRatio 读锁比例，0 表示全部为互斥锁
+     */
+    public static LockTrace synthetic(int threads, int eventsPerThread, int nameCount, double skew,
+                                      long holdNanos, long thinkNanos, double readRatio, long seed) {
+        List<String> names = new ArrayList<>(nameCount);
+        double[] cumulative = new double[nameCount];
+        double total = 0;
+        for (int i = 0; i < nameCount; i++) {
+            names.add("sim:" + i);
+            total += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<>(threads * eventsPerThread);
+        for (int t = 0; t < threads; t++) {
+            long clock = 0;
+            for (int i = 0; i < eventsPerThread; i++) {
+                double target = random.nextDouble() * total;
+                int name = 0;
+                while (cumulative[name] < target) {
+                    name++;
+                }
+                Mode mode = readRatio <= 0 ? Mode.EXCLUSIVE : random.nextDouble() < readRatio ? Mode.READ : Mode.WRITE;
+                events.add(new Event(name, mode, true, t, clock, 0, holdNanos));
+                clock += holdNanos + thinkNanos;
+            }
+        }
+        return new LockTrace(names, events);
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("varint 过长");
+    }
+
+    @Getter
+    public static class Event {
+        private final int name;
+        private final Mode mode;
+        private final boolean acquired;
+        private final int thread;
+        private final long startNanos;
+        private final long waitNanos;
+        private final long holdNanos;
+
+        public Event(int name, Mode mode, boolean acquired, int thread, long startNanos, long waitNanos, long holdNanos) {
+            this.name = name;
+            this.mode = mode;
+            this.acquired = acquired;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.waitNanos = Math.max(0, waitNanos);
+            this.holdNanos = Math.max(0, holdNanos);
+        }
+    }
+}
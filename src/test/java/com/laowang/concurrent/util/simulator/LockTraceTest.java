@@ -0,0 +1,120 @@
+package com.laowang.concurrent.util.simulator;
+
+import com.laowang.concurrent.util.LockStat;
+import com.laowang.concurrent.util.LockTraceListener.Mode;
+import com.laowang.concurrent.util.ReadWriteLockUtils;
+import com.laowang.concurrent.util.ReentrantLockUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockTraceTest {
+
+    @Test
+    @DisplayName("采集命名锁轨迹并通过二进制格式往返")
+    void testRecordAndRoundTrip() throws Exception {
+        TraceRecorder recorder = TraceRecorder.start();
+        Thread other = new Thread(() -> {
+            try (LockStat ignored = ReadWriteLockUtils.readlock("trace-test:b")) {
+                Thread.sleep(1);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            for (int i = 0; i < 10; i++) {
+                try (LockStat ignored = ReentrantLockUtils.lock("trace-test:a")) {
+                    Thread.sleep(1);
+                }
+            }
+            other.start();
+            other.join();
+            try (LockStat ignored = ReadWriteLockUtils.writelock("trace-test:b")) {
+                assertTrue(ignored.isLocked());
+            }
+        } finally {
+            LockTrace trace = recorder.stop();
+            assertEquals(12, trace.getEvents().size());
+            assertEquals(2, trace.getNames().size());
+            assertEquals(2, trace.threadCount());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            trace.write(out);
+            LockTrace copy = LockTrace.read(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(trace.getNames(), copy.getNames());
+            for (int i = 0; i < trace.getEvents().size(); i++) {
+                LockTrace.Event expected = trace.getEvents().get(i);
+                LockTrace.Event actual = copy.getEvents().get(i);
+                assertEquals(expected.getName(), actual.getName());
+                assertEquals(expected.getMode(), actual.getMode());
+                assertEquals(expected.getThread(), actual.getThread());
+                assertEquals(expected.getStartNanos(), actual.getStartNanos());
+                assertEquals(expected.getHoldNanos(), actual.getHoldNanos());
+            }
+            assertTrue(copy.getEvents().stream().anyMatch(e -> e.getMode() == Mode.READ));
+        }
+    }
+
+    @Test
+    @DisplayName("按不同加锁方式回放合成负载，统计完整")
+    void testReplayStrategies() throws InterruptedException {
+        LockTrace trace = LockTrace.synthetic(4, 200, 16, 1.0, 1_000, 5_000, 0.5, 7);
+        TraceReplayer replayer = new TraceReplayer(trace, 6, 1.0);
+        for (LockStrategy strategy : new LockStrategy[]{LockStrategy.named(), LockStrategy.exclusive(),
+                LockStrategy.striped(), LockStrategy.global()}) {
+            ReplayReport report = replayer.replay(strategy);
+            // 6 个回放线程循环复用 4 条事件流
+            assertEquals(6 * 200, report.getOperations(), report.toString());
+            assertEquals(0, report.getFailed());
+            assertTrue(report.getFairness() > 0 && report.getFairness() <= 1.0);
+            assertTrue(report.waitPercentileNanos(0.5) <= report.waitPercentileNanos(0.99));
+        }
+        assertEquals(1.0, ReplayReport.jain(new double[]{3, 3, 3}), 1e-9);
+        assertEquals(0.25, ReplayReport.jain(new double[]{8, 0, 0, 0}), 1e-9);
+    }
+
+    @Test
+    @DisplayName("持有锁期间开始的事件按嵌套方式回放，外层锁直到原释放时间才释放")
+    void testReplayNested() throws InterruptedException {
+        long ms = 1_000_000L;
+        // 持有a的20ms内，第5ms获取b并持有5ms
+        LockTrace trace = new LockTrace(List.of("a", "b"), List.of(
+                new LockTrace.Event(0, Mode.EXCLUSIVE, true, 0, 0, 0, 20 * ms),
+                new LockTrace.Event(1, Mode.EXCLUSIVE, true, 0, 5 * ms, 0, 5 * ms)));
+        Map<String, ReentrantLock> locks = Map.of("a", new ReentrantLock(), "b", new ReentrantLock());
+        List<String> observed = new CopyOnWriteArrayList<>();
+        LockStrategy strategy = new LockStrategy() {
+            @Override
+            public String name() {
+                return "observed";
+            }
+
+            @Override
+            public LockStat acquire(String lockName, Mode mode, boolean blocking) {
+                ReentrantLock lock = locks.get(lockName);
+                lock.lock();
+                observed.add(lockName + (locks.get("a").isHeldByCurrentThread() && !lockName.equals("a") ? "(in a)" : ""));
+                return new LockStat(lock, true);
+            }
+        };
+
+        ReplayReport report = new TraceReplayer(trace, 1, 1.0).replay(strategy);
+
+        assertEquals(List.of("a", "b(in a)"), observed);
+        assertEquals(0, report.getFailed());
+        // a 在原释放时间释放：整条时间线约 20ms，而不是顺序回放的 25ms
+        assertTrue(report.getElapsedNanos() < 25 * ms, report.toString());
+        assertFalse(locks.get("a").isLocked());
+        assertFalse(locks.get("b").isLocked());
+    }
+}
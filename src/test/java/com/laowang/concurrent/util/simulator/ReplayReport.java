@@ -0,0 +1,72 @@
+package com.laowang.concurrent.util.simulator;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次回放的结果：吞吐、等待时间分位数和线程间公平性
+ */
+@Getter
+public class ReplayReport {
+
+    private final String strategy;
+    private final int threads;
+    private final long operations;
+    private final long failed;
+    private final long elapsedNanos;
+    /**
+     * 已排序的每次加锁等待时间
+     */
+    private final long[] waitNanos;
+    /**
+     * Jain 公平性指数，基于各线程的吞吐计算，1 为完全公平，1/n 为只有一个线程在推进
+     */
+    private final double fairness;
+
+    ReplayReport(String strategy, int threads, long failed, long elapsedNanos, long[] waitNanos, double[] threadThroughput) {
+        this.strategy = strategy;
+        this.threads = threads;
+        this.operations = waitNanos.length;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.waitNanos = waitNanos.clone();
+        Arrays.sort(this.waitNanos);
+        this.fairness = jain(threadThroughput);
+    }
+
+    public double throughputPerSecond() {
+        return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+    }
+
+    public long waitPercentileNanos(double quantile) {
+        if (waitNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * waitNanos.length) - 1;
+        return waitNanos[Math.max(0, Math.min(waitNanos.length - 1, index))];
+    }
+
+    static double jain(double[] values) {
+        double sum = 0;
+        double squares = 0;
+        for (double value : values) {
+            sum += value;
+            squares += value * value;
+        }
+        return squares == 0 ? 1 : sum * sum / (values.length * squares);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-10s threads=%-3d ops=%-8d failed=%-6d %,.0f ops/s  wait p50=%dus p90=%dus p99=%dus max=%dus  fairness=%.3f",
+                strategy, threads, operations, failed, throughputPerSecond(),
+                micros(waitPercentileNanos(0.5)), micros(waitPercentileNanos(0.9)),
+                micros(waitPercentileNanos(0.99)), micros(waitPercentileNanos(1.0)), fairness);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,81 @@
+package com.laowang.concurrent.util.simulator;
+
+import com.laowang.concurrent.util.LockTraceListener;
+import com.laowang.concurrent.util.LockTracing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 采集 ReentrantLockUtils/ReadWriteLockUtils 按名称加锁的轨迹
+ * <pre>
+ * TraceRecorder recorder = TraceRecorder.start();
+ * ... 运行业务负载 ...
+ * recorder.stop().write(outputStream);
+ * </pre>
+ */
+public class TraceRecorder implements LockTraceListener {
+
+    private final Queue<Raw> raw = new ConcurrentLinkedQueue<>();
+
+    public static TraceRecorder start() {
+        TraceRecorder recorder = new TraceRecorder();
+        LockTracing.setListener(recorder);
+        return recorder;
+    }
+
+    @Override
+    public void onLockEvent(String lockName, Mode mode, long startNanos, long waitNanos, long holdNanos, boolean acquired) {
+        raw.add(new Raw(lockName, mode, Thread.currentThread().getId(), startNanos, waitNanos, holdNanos, acquired));
+    }
+
+    /**
+     * 停止采集，锁名与线程映射为稠密下标，开始时间改为相对第一个事件
+     */
+    public LockTrace stop() {
+        LockTracing.setListener(null);
+        List<Raw> snapshot = new ArrayList<>(raw);
+        long origin = Long.MAX_VALUE;
+        for (Raw event : snapshot) {
+            origin = Math.min(origin, event.startNanos);
+        }
+        Map<String, Integer> names = new HashMap<>();
+        List<String> nameList = new ArrayList<>();
+        Map<Long, Integer> threads = new HashMap<>();
+        List<LockTrace.Event> events = new ArrayList<>(snapshot.size());
+        for (Raw event : snapshot) {
+            int name = names.computeIfAbsent(event.lockName, k -> {
+                nameList.add(k);
+                return nameList.size() - 1;
+            });
+            int thread = threads.computeIfAbsent(event.threadId, k -> threads.size());
+            events.add(new LockTrace.Event(name, event.mode, event.acquired, thread,
+                    event.startNanos - origin, event.waitNanos, event.holdNanos));
+        }
+        return new LockTrace(nameList, events);
+    }
+
+    private static final class Raw {
+        private final String lockName;
+        private final Mode mode;
+        private final long threadId;
+        private final long startNanos;
+        private final long waitNanos;
+        private final long holdNanos;
+        private final boolean acquired;
+
+        Raw(String lockName, Mode mode, long threadId, long startNanos, long waitNanos, long holdNanos, boolean acquired) {
+            this.lockName = lockName;
+            this.mode = mode;
+            this.threadId = threadId;
+            this.startNanos = startNanos;
+            this.waitNanos = waitNanos;
+            this.holdNanos = holdNanos;
+            this.acquired = acquired;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.laowang.concurrent.util.simulator;
+
+import com.laowang.concurrent.util.LockStat;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 用指定的线程数、时间缩放和加锁方式回放锁轨迹
+ * <p>
+ * 原轨迹的每个线程是一条事件流，按轮转分配给回放线程；回放线程多于原线程数时循环复用事件流以放大并发。
+ * 回放线程按原轨迹的时间线推进：每个事件在原开始时间加锁，在原释放时间解锁，事件之间的间隔（思考时间）
+ * 和持有时间都乘以 timeScale。持有一把锁期间开始的事件在持有状态下嵌套加锁，
+ * 因此能重现原轨迹的加锁顺序以及由嵌套持有引起的护航和死锁风险。
+ * 等待时间为回放中实测值，原轨迹中的等待时间不参与回放：实际等待多久，之后的时间线就整体顺延多久。
+ */
+@Slf4j
+public class TraceReplayer {
+
+    /**
+     * 短于该值的模拟时间用自旋，避免 park 的唤醒延迟淹没微秒级临界区
+     */
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LockTrace trace;
+    private final int threads;
+    private final double timeScale;
+
+    /**
+     * @param threads   回放线程数
+     * @param timeScale 持有时间与思考时间的缩放系数，0.5 表示临界区缩短一半
+     */
+    public TraceReplayer(LockTrace trace, int threads, double timeScale) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads 必须大于0: " + threads);
+        }
+        this.trace = trace;
+        this.threads = threads;
+        this.timeScale = timeScale;
+    }
+
+    public ReplayReport replay(LockStrategy strategy) throws InterruptedException {
+        List<List<LockTrace.Event>> streams = trace.byThread();
+        List<String> names = trace.getNames();
+        long[][] waits = new long[threads][];
+        long[] failed = new long[threads];
+        long[] elapsed = new long[threads];
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            List<LockTrace.Event> stream = streams.isEmpty() ? List.of() : streams.get(t % streams.size());
+            workers[t] = new Thread(() -> {
+                long[] threadWaits = new long[stream.size()];
+                int acquired = 0;
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long begin = System.nanoTime();
+                // 已加锁未释放的事件，按原轨迹的释放时间依次释放
+                List<OpenEvent> open = new ArrayList<>();
+                long now = stream.isEmpty() ? 0 : stream.get(0).getStartNanos();
+                for (LockTrace.Event event : stream) {
+                    now = closeUntil(open, now, event.getStartNanos());
+                    pause((long) ((event.getStartNanos() - now) * timeScale));
+                    now = event.getStartNanos();
+
+                    long requested = System.nanoTime();
+                    LockStat lock;
+                    try {
+                        lock = strategy.acquire(names.get(event.getName()), event.getMode(), event.isAcquired());
+                    } catch (RuntimeException e) {
+                        log.error("回放事件失败", e);
+                        failed[index]++;
+                        continue;
+                    }
+                    if (!lock.isLocked()) {
+                        failed[index]++;
+                        continue;
+                    }
+                    threadWaits[acquired++] = System.nanoTime() - requested;
+                    // 实测等待已经过去，时间线从原轨迹中获得锁的时刻继续
+                    now = event.getStartNanos() + event.getWaitNanos();
+                    open.add(new OpenEvent(lock, now + event.getHoldNanos()));
+                }
+                closeUntil(open, now, Long.MAX_VALUE);
+                elapsed[index] = System.nanoTime() - begin;
+                waits[index] = Arrays.copyOf(threadWaits, acquired);
+            }, "replay-" + t);
+            workers[t].start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long totalElapsed = System.nanoTime() - begin;
+
+        int total = 0;
+        for (long[] threadWaits : waits) {
+            total += threadWaits == null ? 0 : threadWaits.length;
+        }
+        long[] allWaits = new long[total];
+        double[] throughput = new double[threads];
+        long totalFailed = 0;
+        int offset = 0;
+        for (int t = 0; t < threads; t++) {
+            long[] threadWaits = waits[t] == null ? new long[0] : waits[t];
+            System.arraycopy(threadWaits, 0, allWaits, offset, threadWaits.length);
+            offset += threadWaits.length;
+            throughput[t] = elapsed[t] == 0 ? 0 : threadWaits.length * 1e9 / elapsed[t];
+            totalFailed += failed[t];
+        }
+        return new ReplayReport(strategy.name(), threads, totalFailed, totalElapsed, allWaits, throughput);
+    }
+
+    /**
+     * 按释放时间顺序释放 until 之前到期的事件，返回推进后的时间线位置
+     */
+    private long closeUntil(List<OpenEvent> open, long now, long until) {
+        while (!open.isEmpty()) {
+            int next = 0;
+            for (int i = 1; i < open.size(); i++) {
+                if (open.get(i).endNanos < open.get(next).endNanos) {
+                    next = i;
+                }
+            }
+            OpenEvent event = open.get(next);
+            if (event.endNanos > until) {
+                break;
+            }
+            pause((long) ((event.endNanos - now) * timeScale));
+            now = Math.max(now, event.endNanos);
+            open.remove(next);
+            try {
+                event.lock.close();
+            } catch (Exception e) {
+                log.error("回放释放锁失败", e);
+            }
+        }
+        return now;
+    }
+
+    private static final class OpenEvent {
+        private final LockStat lock;
+        private final long endNanos;
+
+        OpenEvent(LockStat lock, long endNanos) {
+            this.lock = lock;
+            this.endNanos = endNanos;
+        }
+    }
+
+    private static void pause(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        if (nanos >= SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(nanos);
+            return;
+        }
+        long deadline = System.nanoTime() + nanos;
+        while (System.nanoTime() - deadline < 0) {
+            Thread.onSpinWait();
+        }
+    }
+}